@@ -0,0 +1,29 @@
+package in.gov.manipur.rccms.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Encryption Keyring Configuration
+ * Binds app.encryption.keys.<version> - AES keys for data at rest, one per key version
+ * (see EncryptionService and KeyRotationService)
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.encryption")
+public class EncryptionProperties {
+
+    /**
+     * Key per version; version 1 is app.encryption.key (startup fails if keys.1 is set to anything else)
+     */
+    private Map<Integer, String> keys = new TreeMap<>();
+
+    // Version new values are encrypted with; 0 uses the highest configured version
+    private int activeKeyVersion = 0;
+}
@@ -0,0 +1,87 @@
+package in.gov.manipur.rccms.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Auth Rate Limit Configuration
+ * Binds app.rate-limit.* - per-IP token buckets for /api/auth/** (see AuthRateLimitFilter)
+ * and route budgets shared by all clients (see RouteLimiter)
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    // Bucket size: tokens an idle IP can spend in a burst
+    private int capacity = 60;
+
+    // Tokens added back per second; must be greater than 0
+    private double refillPerSecond = 1.0;
+
+    // Cost of paths not listed in costs
+    private int defaultCost = 1;
+
+    /**
+     * Tokens charged per request path, e.g. "[/api/auth/password/login]": 5
+     */
+    private Map<String, Integer> costs = new LinkedHashMap<>();
+
+    // Distinct IPs tracked at once; idle buckets are evicted first
+    private int maxBuckets = 1_000_000;
+
+    // Lock stripes (rounded up to a power of two)
+    private int stripes = 64;
+
+    /**
+     * local (budgets counted per node) or cluster (shared through the rate_limit_budget table)
+     */
+    private String mode = "local";
+
+    /**
+     * Budgets across all clients, e.g. login: {paths: [...], limit: 6000, window-seconds: 60}
+     */
+    private Map<String, Budget> budgets = new LinkedHashMap<>();
+
+    private Cluster cluster = new Cluster();
+
+    @Getter
+    @Setter
+    public static class Budget {
+
+        // Request paths (as in costs) that spend this budget
+        private List<String> paths = new ArrayList<>();
+
+        // Requests allowed per window
+        private int limit = 1000;
+
+        private int windowSeconds = 60;
+    }
+
+    @Getter
+    @Setter
+    public static class Cluster {
+
+        // Budget that may sit unused in other nodes' leases, as a fraction of the limit
+        private double maxError = 0.05;
+
+        // Expected number of nodes; the lease size is limit * max-error / nodes
+        private int nodes = 4;
+
+        // Unspent leases idle for this long are handed back
+        private long returnAfterMs = 2000;
+
+        // Longest a request waits for a lease from the database before it is let through
+        private long leaseWaitMs = 50;
+    }
+}
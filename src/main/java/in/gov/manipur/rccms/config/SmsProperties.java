@@ -0,0 +1,81 @@
+package in.gov.manipur.rccms.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SMS Provider Configuration
+ * Binds app.sms.providers.<name>.* - one entry per SMS provider
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.sms")
+public class SmsProperties {
+
+    /**
+     * Provider used for sending (defaults to the first configured provider)
+     */
+    private String provider;
+
+    /**
+     * primary (always use provider) or latency (pick per request, see SmsRouter)
+     */
+    private String routing = "primary";
+
+    private Hedge hedge = new Hedge();
+
+    private Map<String, Provider> providers = new LinkedHashMap<>();
+
+    @Getter
+    @Setter
+    public static class Hedge {
+
+        // Also send via the next-best provider if the first has not accepted in time (latency routing only)
+        private boolean enabled = false;
+
+        // Hedge deadline; 0 uses the first provider's live p99
+        private long afterMs = 0;
+
+        // Threads for hedged sends; beyond that sends go out unhedged on the caller's thread
+        private int maxThreads = 32;
+    }
+
+    @Getter
+    @Setter
+    public static class Provider {
+
+        /**
+         * console (log only), stub (simulated latency/failures) or http
+         */
+        private String type = "console";
+
+        // http: endpoint and credentials
+        private String url;
+        private String apiKey;
+        private String senderId = "RCCMS";
+        private long connectTimeoutMs = 2000;
+        private long timeoutMs = 5000;
+
+        // Messages per provider request (1 if the provider has no multi-recipient API)
+        private int batchSize = 1;
+
+        // Concurrent requests to the provider; senders wait up to acquireTimeoutMs for a slot
+        private int maxConcurrency = 16;
+        private long acquireTimeoutMs = 1000;
+
+        // Circuit breaker: open after this many consecutive failures, probe again after openSeconds
+        private int failureThreshold = 5;
+        private long openSeconds = 30;
+
+        // stub: simulated latency and failure rate
+        private long latencyMs = 50;
+        private long latencyJitterMs = 0;
+        private double failureRate = 0;
+    }
+}
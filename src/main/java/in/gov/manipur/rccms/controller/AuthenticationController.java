@@ -3,7 +3,8 @@ package in.gov.manipur.rccms.controller;
 import in.gov.manipur.rccms.dto.*;
 import in.gov.manipur.rccms.entity.User;
 import in.gov.manipur.rccms.service.AuthService;
-import in.gov.manipur.rccms.service.OtpService;
+import in.gov.manipur.rccms.service.OtpSendCoalescer;
+import in.gov.manipur.rccms.service.RequestRateMonitor;
 import in.gov.manipur.rccms.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -32,7 +33,8 @@ public class AuthenticationController {
 
     private final AuthService authService;
     private final UserService userService;
-    private final OtpService otpService;
+    private final OtpSendCoalescer otpSendCoalescer;
+    private final RequestRateMonitor requestRateMonitor;
 
     /**
      * Citizen Registration
@@ -130,7 +132,7 @@ public class AuthenticationController {
         // For registration verification, allow OTP generation even if user lookup fails
         // (user might be in registration process or transaction not committed yet)
         // OtpService will handle this gracefully with allowInactive=true
-        otpService.generateOtp(trimmedMobile, userType, true);
+        otpSendCoalescer.send(trimmedMobile, userType, true);
         
         Map<String, Object> response = Map.of(
                 "message", "OTP sent successfully for registration verification",
@@ -170,11 +172,12 @@ public class AuthenticationController {
     public ResponseEntity<ApiResponse<Map<String, Object>>> sendLoginOtp(
             @Valid @RequestBody OtpRequestDTO request) {
         log.info("Login OTP request received for mobile: {}", maskMobile(request.getMobileNumber()));
+        requestRateMonitor.record();
         
         String trimmedMobile = request.getMobileNumber().trim();
         
         // For login, require active user (allowInactive=false)
-        otpService.generateOtp(trimmedMobile, request.getUserType(), false);
+        otpSendCoalescer.send(trimmedMobile, request.getUserType(), false);
         
         Map<String, Object> response = Map.of(
                 "message", "OTP sent successfully for login",
@@ -248,6 +251,7 @@ public class AuthenticationController {
     public ResponseEntity<ApiResponse<AuthResponseDTO>> loginWithPassword(
             @Valid @RequestBody LoginRequestDTO request) {
         log.info("Password login request received for username: {}", maskUsername(request.getUsername()));
+        requestRateMonitor.record();
         
         AuthResponseDTO response = authService.loginWithPassword(request);
         
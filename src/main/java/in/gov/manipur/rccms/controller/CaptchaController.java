@@ -2,6 +2,8 @@ package in.gov.manipur.rccms.controller;
 
 import in.gov.manipur.rccms.dto.ApiResponse;
 import in.gov.manipur.rccms.dto.CaptchaDTO;
+import in.gov.manipur.rccms.dto.ProofOfWorkChallengeDTO;
+import in.gov.manipur.rccms.security.ClientIpResolver;
 import in.gov.manipur.rccms.service.CaptchaService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -28,6 +30,7 @@ import java.util.Map;
 public class CaptchaController {
 
     private final CaptchaService captchaService;
+    private final ClientIpResolver clientIpResolver;
 
     /**
      * Generate CAPTCHA
@@ -35,7 +38,7 @@ public class CaptchaController {
      */
     @Operation(
             summary = "Generate CAPTCHA",
-            description = "Generate a new CAPTCHA code. Returns CAPTCHA ID and text."
+            description = "Generate a new CAPTCHA code. Returns CAPTCHA ID and a Base64-encoded PNG image."
     )
     @ApiResponses(value = {
             @io.swagger.v3.oas.annotations.responses.ApiResponse(
@@ -46,7 +49,7 @@ public class CaptchaController {
     })
     @GetMapping("/generate")
     public ResponseEntity<ApiResponse<CaptchaDTO>> generateCaptcha(HttpServletRequest request) {
-        String ipAddress = getClientIpAddress(request);
+        String ipAddress = clientIpResolver.resolve(request);
         log.debug("CAPTCHA generation request from IP: {}", ipAddress);
         
         CaptchaDTO captcha = captchaService.generateCaptcha(ipAddress);
@@ -54,6 +57,29 @@ public class CaptchaController {
         return ResponseEntity.ok(ApiResponse.success("CAPTCHA generated successfully", captcha));
     }
 
+    /**
+     * Generate proof-of-work challenge
+     * GET /api/auth/captcha/pow
+     */
+    @Operation(
+            summary = "Generate proof-of-work challenge",
+            description = "Alternative to the image CAPTCHA (when enabled). Find a numeric solution (4-10 digits) such that " +
+                    "SHA-256(challenge + \":\" + solution) starts with 'difficulty' zero bits, then send the challenge as " +
+                    "captchaId and the solution as captcha. Difficulty rises with login/send-OTP traffic."
+    )
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "Challenge generated successfully",
+                    content = @Content(schema = @Schema(implementation = ProofOfWorkChallengeDTO.class))
+            )
+    })
+    @GetMapping("/pow")
+    public ResponseEntity<ApiResponse<ProofOfWorkChallengeDTO>> generateProofOfWork() {
+        ProofOfWorkChallengeDTO challenge = captchaService.generateProofOfWork();
+        return ResponseEntity.ok(ApiResponse.success("Challenge generated successfully", challenge));
+    }
+
     /**
      * Validate CAPTCHA (Internal endpoint - can be used for testing)
      * POST /api/auth/captcha/validate
@@ -88,20 +114,4 @@ public class CaptchaController {
         
         return ResponseEntity.ok(ApiResponse.success("CAPTCHA validation completed", response));
     }
-
-    /**
-     * Get client IP address
-     */
-    private String getClientIpAddress(HttpServletRequest request) {
-        String xForwardedFor = request.getHeader("X-Forwarded-For");
-        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            return xForwardedFor.split(",")[0].trim();
-        }
-        String xRealIp = request.getHeader("X-Real-IP");
-        if (xRealIp != null && !xRealIp.isEmpty()) {
-            return xRealIp;
-        }
-        return request.getRemoteAddr();
-    }
 }
-
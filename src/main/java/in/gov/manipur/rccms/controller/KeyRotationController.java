@@ -0,0 +1,83 @@
+package in.gov.manipur.rccms.controller;
+
+import in.gov.manipur.rccms.dto.ApiResponse;
+import in.gov.manipur.rccms.exception.InvalidCredentialsException;
+import in.gov.manipur.rccms.service.KeyRotationService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
+
+/**
+ * Key Rotation Controller
+ * Progress and pause/resume of the background Aadhar re-encryption.
+ * Every call needs the X-Admin-Token header to match app.encryption.rotation.admin-token;
+ * with no token configured the endpoints are refused.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/key-rotation")
+@Tag(name = "Administration", description = "Operational controls")
+public class KeyRotationController {
+
+    private final KeyRotationService keyRotationService;
+    private final byte[] token;
+
+    public KeyRotationController(KeyRotationService keyRotationService,
+                                 @Value("${app.encryption.rotation.admin-token:}") String token) {
+        this.keyRotationService = keyRotationService;
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get rotation progress
+     * GET /api/admin/key-rotation
+     */
+    @Operation(summary = "Get key rotation progress")
+    @GetMapping
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getStatus(
+            @RequestHeader(value = "X-Admin-Token", required = false) String requestToken) {
+        checkToken(requestToken);
+        return ResponseEntity.ok(ApiResponse.success(keyRotationService.status()));
+    }
+
+    /**
+     * Pause rotation after the current batch
+     * POST /api/admin/key-rotation/pause
+     */
+    @Operation(summary = "Pause key rotation")
+    @PostMapping("/pause")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> pause(
+            @RequestHeader(value = "X-Admin-Token", required = false) String requestToken) {
+        checkToken(requestToken);
+        keyRotationService.pause();
+        return ResponseEntity.ok(ApiResponse.success("Key rotation paused", keyRotationService.status()));
+    }
+
+    /**
+     * Resume rotation with the next scheduled run
+     * POST /api/admin/key-rotation/resume
+     */
+    @Operation(summary = "Resume key rotation")
+    @PostMapping("/resume")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> resume(
+            @RequestHeader(value = "X-Admin-Token", required = false) String requestToken) {
+        checkToken(requestToken);
+        keyRotationService.resume();
+        return ResponseEntity.ok(ApiResponse.success("Key rotation resumed", keyRotationService.status()));
+    }
+
+    private void checkToken(String requestToken) {
+        if (token.length == 0 || requestToken == null
+                || !MessageDigest.isEqual(token, requestToken.getBytes(StandardCharsets.UTF_8))) {
+            log.warn("Key rotation request refused: invalid admin token");
+            throw new InvalidCredentialsException("Invalid admin token");
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package in.gov.manipur.rccms.controller;
+
+import in.gov.manipur.rccms.dto.ApiResponse;
+import in.gov.manipur.rccms.dto.DeliveryReportDTO;
+import in.gov.manipur.rccms.exception.InvalidCredentialsException;
+import in.gov.manipur.rccms.service.DeliveryReportIngestor;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SMS Delivery Report Controller
+ * Webhook for provider delivery reports (DLRs)
+ * Disabled (every request refused) until app.sms.dlr.token is set
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/sms")
+@Tag(name = "SMS", description = "SMS provider callbacks")
+public class SmsDeliveryReportController {
+
+    private final DeliveryReportIngestor deliveryReportIngestor;
+    private final byte[] token;
+
+    public SmsDeliveryReportController(DeliveryReportIngestor deliveryReportIngestor,
+                                       @Value("${app.sms.dlr.token:}") String token) {
+        this.deliveryReportIngestor = deliveryReportIngestor;
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Receive delivery reports
+     * POST /api/sms/dlr
+     */
+    @Operation(
+            summary = "Receive SMS delivery reports",
+            description = "Accepts a JSON array of delivery reports. Reports are queued and written in batches; " +
+                    "202 means queued, 429 means the queue is full and the provider should retry (nothing of " +
+                    "the request was queued). The X-DLR-Token header must match app.sms.dlr.token; while no " +
+                    "token is configured every request is refused."
+    )
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "202", description = "Reports queued"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "429", description = "Queue full, retry later")
+    })
+    @PostMapping("/dlr")
+    public ResponseEntity<ApiResponse<Map<String, Integer>>> receiveDeliveryReports(
+            @RequestHeader(value = "X-DLR-Token", required = false) String requestToken,
+            @RequestBody List<DeliveryReportDTO> reports) {
+        if (token.length == 0 || requestToken == null
+                || !MessageDigest.isEqual(token, requestToken.getBytes(StandardCharsets.UTF_8))) {
+            log.warn("Delivery report request refused: invalid token");
+            throw new InvalidCredentialsException("Invalid delivery report token");
+        }
+
+        int accepted = deliveryReportIngestor.submit(reports);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success("Delivery reports queued", Map.of("accepted", accepted)));
+    }
+}
@@ -15,7 +15,7 @@ import lombok.NoArgsConstructor;
 public class CaptchaDTO {
 
     private String captchaId;
-    private String captchaText;
-    private String imageBase64; // Optional: for future image CAPTCHA
+    private String captchaText; // Only populated when app.captcha.include-text=true (development)
+    private String imageBase64; // PNG image of the CAPTCHA text
 }
 
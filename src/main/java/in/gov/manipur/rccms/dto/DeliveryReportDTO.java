@@ -0,0 +1,31 @@
+package in.gov.manipur.rccms.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for an SMS delivery report (DLR) posted by a provider
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeliveryReportDTO {
+
+    /**
+     * Provider message id returned when the SMS was accepted
+     */
+    private String messageId;
+
+    /**
+     * Delivery status, e.g. DELIVERED, UNDELIVERED, EXPIRED
+     */
+    private String status;
+
+    /**
+     * Time of delivery (defaults to the time the report was received)
+     */
+    private LocalDateTime deliveredAt;
+}
@@ -0,0 +1,24 @@
+package in.gov.manipur.rccms.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for Proof-of-Work Challenge Response
+ * The client finds a numeric solution of 4-10 digits (e.g. a counter
+ * zero-padded to 4 digits) such that
+ * SHA-256(challenge + ":" + solution) starts with {@code difficulty} zero bits,
+ * then sends challenge as captchaId and solution as captcha.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProofOfWorkChallengeDTO {
+
+    private String challenge;
+    private Integer difficulty; // Leading zero bits required
+    private Long expiresInSeconds;
+}
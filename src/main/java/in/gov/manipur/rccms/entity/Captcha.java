@@ -30,7 +30,10 @@ public class Captcha {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(name = "captcha_id", nullable = false, unique = true, length = 36)
+    // Not declared unique: the partitioned layout (PartitionMaintenanceService) cannot have a unique
+    // constraint without expires_at, and ddl-auto=update would retry adding it on every start.
+    // Ids are random UUIDs generated here, so uniqueness holds by construction.
+    @Column(name = "captcha_id", nullable = false, length = 36)
     private String captchaId; // UUID
 
     @Column(name = "captcha_text", nullable = false, length = 10)
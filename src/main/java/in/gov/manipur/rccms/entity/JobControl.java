@@ -0,0 +1,34 @@
+package in.gov.manipur.rccms.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Job Control Entity
+ * Runtime switches of background jobs shared by all nodes, one row per job
+ * (e.g. key-rotation, see KeyRotationService). A job without a row uses its
+ * configured default.
+ */
+@Entity
+@Table(name = "job_control")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobControl {
+
+    @Id
+    @Column(name = "job_name", length = 50)
+    private String jobName;
+
+    @Column(name = "paused", nullable = false)
+    private Boolean paused = false;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
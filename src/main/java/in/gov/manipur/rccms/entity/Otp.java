@@ -12,13 +12,11 @@ import java.time.LocalDateTime;
 
 /**
  * OTP Entity
- * Stores OTP codes for citizen authentication
+ * Stores keyed hashes of OTP codes for citizen authentication
+ * Its indexes are created concurrently by OtpSchemaInitializer (not by ddl-auto, which would lock the table)
  */
 @Entity
-@Table(name = "otps", indexes = {
-        @Index(name = "idx_mobile_otp", columnList = "mobile_number,otp_code"),
-        @Index(name = "idx_email_otp", columnList = "email_id,otp_code")
-})
+@Table(name = "otps")
 @EntityListeners(AuditingEntityListener.class)
 @Getter
 @Setter
@@ -37,8 +35,8 @@ public class Otp {
     @Column(name = "user_type", nullable = false, length = 20)
     private UserType userType;
 
-    @Column(name = "otp_code", nullable = false, length = 6)
-    private String otpCode;
+    @Column(name = "otp_code", nullable = false, length = 64) // Column name kept for existing schemas
+    private String otpCodeHash; // HMAC-SHA256 hex, see OtpHasher
 
     @Column(name = "is_used", nullable = false)
     private Boolean isUsed = false;
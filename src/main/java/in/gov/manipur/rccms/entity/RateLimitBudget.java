@@ -0,0 +1,37 @@
+package in.gov.manipur.rccms.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Rate Limit Budget Entity
+ * Requests handed out per budget and window in cluster mode. Nodes lease slices
+ * of the limit by raising used, and hand back what they did not spend
+ * (see ClusterRouteLimiter). Rows of past windows are deleted.
+ */
+@Entity
+@Table(name = "rate_limit_budget", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_rate_limit_budget_window", columnNames = {"budget_name", "window_start"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RateLimitBudget {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "budget_name", nullable = false, length = 50)
+    private String budgetName;
+
+    @Column(name = "window_start", nullable = false)
+    private Long windowStart; // Epoch seconds
+
+    @Column(name = "used", nullable = false)
+    private Integer used = 0;
+}
@@ -0,0 +1,90 @@
+package in.gov.manipur.rccms.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * SMS Outbox Entity
+ * Outgoing SMS written in the same transaction as the business change (e.g. a new OTP)
+ * and delivered asynchronously by SmsDispatcher. Delivery reports from the provider
+ * are matched on provider_message_id (see DeliveryReportIngestor).
+ * The message body is stored AES-GCM encrypted (see EncryptionService) and is
+ * cleared once the row reaches a final status, so OTP codes are never in the
+ * table in plain text and their ciphertext only until sent, failed or expired
+ * (at most the message validity, 5 minutes for OTPs, plus one lease-seconds).
+ * The plain text exists only in the dispatcher's memory and at the provider.
+ */
+@Entity
+@Table(name = "sms_outbox", indexes = {
+        @Index(name = "idx_sms_outbox_due", columnList = "status,next_attempt_at"),
+        @Index(name = "idx_sms_outbox_provider_message", columnList = "provider_message_id")
+})
+@EntityListeners(AuditingEntityListener.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SmsOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "send_id", nullable = false, unique = true, length = 36)
+    private String sendId; // Idempotency key passed to the gateway on every attempt
+
+    @Column(name = "mobile_number", nullable = false, length = 10)
+    private String mobileNumber;
+
+    @Column(name = "message", length = 500)
+    private String message; // Base64 AES-GCM ciphertext; null once final
+
+    @Column(name = "message_key_version")
+    private Integer messageKeyVersion; // Encryption key version of message; null for rows queued in plain text
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private Status status = Status.PENDING;
+
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt; // Not worth sending after this (e.g. the OTP has expired)
+
+    @Column(name = "provider_message_id", length = 100)
+    private String providerMessageId;
+
+    @Column(name = "last_error", length = 255)
+    private String lastError;
+
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    @Column(name = "delivery_status", length = 20)
+    private String deliveryStatus; // From the provider's delivery report, e.g. DELIVERED
+
+    @Column(name = "delivered_at")
+    private LocalDateTime deliveredAt;
+
+    /**
+     * Delivery status of an outbox row
+     */
+    public enum Status {
+        PENDING, SENT, FAILED
+    }
+}
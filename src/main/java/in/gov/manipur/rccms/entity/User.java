@@ -23,14 +23,13 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "users", 
        uniqueConstraints = {
-           @UniqueConstraint(columnNames = "email"),
-           @UniqueConstraint(columnNames = "mobile_number"),
-           @UniqueConstraint(columnNames = "aadhar_number")
+           @UniqueConstraint(name = User.UK_EMAIL, columnNames = "email"),
+           @UniqueConstraint(name = User.UK_MOBILE_NUMBER, columnNames = "mobile_number"),
+           @UniqueConstraint(name = User.UK_AADHAR_HASH, columnNames = "aadhar_hash")
        },
        indexes = {
            @Index(name = "idx_email", columnList = "email"),
-           @Index(name = "idx_mobile", columnList = "mobile_number"),
-           @Index(name = "idx_aadhar", columnList = "aadhar_number")
+           @Index(name = "idx_mobile", columnList = "mobile_number")
        })
 @EntityListeners(AuditingEntityListener.class)
 @Getter
@@ -39,6 +38,11 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class User {
 
+    // Unique constraint names, used to report which field a duplicate registration hit
+    public static final String UK_EMAIL = "uk_users_email";
+    public static final String UK_MOBILE_NUMBER = "uk_users_mobile_number";
+    public static final String UK_AADHAR_HASH = "uk_users_aadhar_hash";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -87,8 +91,15 @@ public class User {
     @Column(name = "pincode", nullable = false, length = 6)
     private String pincode;
 
-    @Column(name = "aadhar_number", nullable = false, unique = true, length = 500) // Length 500 for encrypted value
-    private String aadharNumber; // Will be encrypted at rest - validation done at DTO level
+    @Column(name = "aadhar_number", nullable = false, length = 500) // Length 500 for encrypted value
+    private String aadharNumber; // AES-GCM with a random IV - validation done at DTO level
+
+    @Column(name = "aadhar_key_version") // Encryption key version of aadhar_number; null means version 1,
+    // 0 a legacy value the Aadhar migration could not decrypt (see AadharMigrationService)
+    private Integer aadharKeyVersion;
+
+    @Column(name = "aadhar_hash", length = 32) // Blind index (HMAC-SHA256); null until migrated
+    private byte[] aadharHash; // Unique; used instead of the ciphertext for lookups
 
     @Column(name = "password", nullable = false, length = 255) // Length 255 for BCrypt hash
     private String password; // Will be hashed with BCrypt
@@ -0,0 +1,14 @@
+package in.gov.manipur.rccms.exception;
+
+/**
+ * Exception thrown when an SMS provider cannot accept a send
+ */
+public class SmsGatewayException extends RuntimeException {
+    public SmsGatewayException(String message) {
+        super(message);
+    }
+
+    public SmsGatewayException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
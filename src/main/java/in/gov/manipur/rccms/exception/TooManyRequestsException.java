@@ -4,8 +4,20 @@ package in.gov.manipur.rccms.exception;
  * Exception thrown when rate limit is exceeded
  */
 public class TooManyRequestsException extends RuntimeException {
+
+    // Seconds the client should wait (sent as Retry-After); 0 if unknown
+    private final long retryAfterSeconds;
+
     public TooManyRequestsException(String message) {
+        this(message, 0);
+    }
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
         super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
     }
-}
 
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -8,6 +8,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -29,17 +30,34 @@ public interface CaptchaRepository extends JpaRepository<Captcha, Long> {
             @Param("now") LocalDateTime now);
 
     /**
-     * Mark CAPTCHA as used
+     * Atomically validate and consume a CAPTCHA in a single conditional UPDATE
+     * @return number of rows marked as used (1 if the CAPTCHA was valid, 0 otherwise)
      */
     @Modifying
-    @Query("UPDATE Captcha c SET c.isUsed = true WHERE c.id = :id")
-    void markAsUsed(@Param("id") Long id);
+    @Query("UPDATE Captcha c SET c.isUsed = true WHERE c.captchaId = :captchaId " +
+           "AND c.captchaText = :captchaText AND c.isUsed = false " +
+           "AND c.expiresAt > :now")
+    int consume(
+            @Param("captchaId") String captchaId,
+            @Param("captchaText") String captchaText,
+            @Param("now") LocalDateTime now);
 
     /**
-     * Delete expired CAPTCHAs
+     * Lock the next keyset batch of expired or used CAPTCHAs for deletion
+     * Rows locked by a concurrent cleanup are skipped
      */
-    @Modifying
-    @Query("DELETE FROM Captcha c WHERE c.expiresAt < :now")
-    void deleteExpiredCaptchas(@Param("now") LocalDateTime now);
+    @Query(value = "SELECT id FROM captchas WHERE id > :afterId " +
+                   "AND (expires_at < :now OR is_used = true) " +
+                   "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockExpiredBatch(
+            @Param("afterId") long afterId,
+            @Param("now") LocalDateTime now,
+            @Param("limit") int limit);
+
+    /**
+     * Count expired or used CAPTCHAs still waiting for cleanup
+     */
+    @Query("SELECT COUNT(c) FROM Captcha c WHERE c.expiresAt < :now OR c.isUsed = true")
+    long countExpired(@Param("now") LocalDateTime now);
 }
 
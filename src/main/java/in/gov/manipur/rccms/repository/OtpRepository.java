@@ -8,7 +8,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
-import java.util.Optional;
+import java.util.List;
 
 /**
  * OTP Repository interface
@@ -18,19 +18,15 @@ import java.util.Optional;
 public interface OtpRepository extends JpaRepository<Otp, Long> {
 
     /**
-     * Find valid OTP by mobile number, OTP code, and user type
+     * Check for a valid OTP by mobile number, user type and OTP hash
+     * Served by the partial index idx_otp_unused_lookup; stops at the first match
      */
-    @Query("SELECT o FROM Otp o WHERE o.mobileNumber = :mobileNumber " +
-           "AND o.otpCode = :otpCode AND o.userType = :userType " +
-           "AND o.isUsed = false AND o.expiresAt > :now ORDER BY o.createdAt DESC")
-    Optional<Otp> findValidOtpByMobileNumber(
-            @Param("mobileNumber") String mobileNumber,
-            @Param("otpCode") String otpCode,
-            @Param("userType") Otp.UserType userType,
-            @Param("now") LocalDateTime now);
+    boolean existsByMobileNumberAndUserTypeAndOtpCodeHashAndIsUsedFalseAndExpiresAtAfter(
+            String mobileNumber, Otp.UserType userType, String otpCodeHash, LocalDateTime now);
 
     /**
      * Count OTP requests in last 15 minutes for rate limiting
+     * Served by idx_otp_mobile_created
      */
     @Query("SELECT COUNT(o) FROM Otp o WHERE o.mobileNumber = :mobileNumber " +
            "AND o.userType = :userType AND o.createdAt > :since")
@@ -40,17 +36,42 @@ public interface OtpRepository extends JpaRepository<Otp, Long> {
             @Param("since") LocalDateTime since);
 
     /**
-     * Mark OTP as used
+     * Check for an unused, unexpired OTP issued since the given time (resend coalescing)
+     * Served by idx_otp_mobile_created; stops at the first match
      */
-    @Modifying
-    @Query("UPDATE Otp o SET o.isUsed = true WHERE o.id = :id")
-    void markAsUsed(@Param("id") Long id);
+    boolean existsByMobileNumberAndUserTypeAndCreatedAtAfterAndIsUsedFalseAndExpiresAtAfter(
+            String mobileNumber, Otp.UserType userType, LocalDateTime since, LocalDateTime now);
 
     /**
-     * Delete expired OTPs
+     * Atomically validate and consume an OTP in a single conditional UPDATE
+     * @return number of rows marked as used (0 if no valid OTP matched)
      */
     @Modifying
-    @Query("DELETE FROM Otp o WHERE o.expiresAt < :now")
-    void deleteExpiredOtps(@Param("now") LocalDateTime now);
+    @Query("UPDATE Otp o SET o.isUsed = true WHERE o.mobileNumber = :mobileNumber " +
+           "AND o.userType = :userType AND o.otpCodeHash = :otpCodeHash " +
+           "AND o.isUsed = false AND o.expiresAt > :now")
+    int consume(
+            @Param("mobileNumber") String mobileNumber,
+            @Param("otpCodeHash") String otpCodeHash,
+            @Param("userType") Otp.UserType userType,
+            @Param("now") LocalDateTime now);
+
+    /**
+     * Lock the next keyset batch of expired or used OTPs for deletion
+     * Rows locked by a concurrent cleanup are skipped
+     */
+    @Query(value = "SELECT id FROM otps WHERE id > :afterId " +
+                   "AND (expires_at < :now OR is_used = true) " +
+                   "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockExpiredBatch(
+            @Param("afterId") long afterId,
+            @Param("now") LocalDateTime now,
+            @Param("limit") int limit);
+
+    /**
+     * Count expired or used OTPs still waiting for cleanup
+     */
+    @Query("SELECT COUNT(o) FROM Otp o WHERE o.expiresAt < :now OR o.isUsed = true")
+    long countExpired(@Param("now") LocalDateTime now);
 }
 
@@ -0,0 +1,76 @@
+package in.gov.manipur.rccms.repository;
+
+import in.gov.manipur.rccms.entity.SmsOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * SMS Outbox Repository interface
+ * Provides data access operations for SmsOutbox entities
+ */
+@Repository
+public interface SmsOutboxRepository extends JpaRepository<SmsOutbox, Long> {
+
+    /**
+     * Lock the next batch of pending messages that are due for an attempt
+     * Rows locked by another dispatcher are skipped
+     */
+    @Query(value = "SELECT * FROM sms_outbox WHERE status = 'PENDING' AND next_attempt_at <= :now " +
+                   "ORDER BY next_attempt_at, id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<SmsOutbox> lockDueBatch(
+            @Param("now") LocalDateTime now,
+            @Param("limit") int limit);
+
+    /**
+     * Mark a message as accepted by the gateway
+     */
+    @Modifying
+    @Query("UPDATE SmsOutbox s SET s.status = 'SENT', s.providerMessageId = :providerMessageId, " +
+           "s.sentAt = :sentAt, s.message = null, s.lastError = null WHERE s.id = :id")
+    int markSent(
+            @Param("id") Long id,
+            @Param("providerMessageId") String providerMessageId,
+            @Param("sentAt") LocalDateTime sentAt);
+
+    /**
+     * Schedule another attempt after a failed send
+     */
+    @Modifying
+    @Query("UPDATE SmsOutbox s SET s.nextAttemptAt = :nextAttemptAt, s.lastError = :error WHERE s.id = :id")
+    int markRetry(
+            @Param("id") Long id,
+            @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+            @Param("error") String error);
+
+    /**
+     * Give up on a message
+     */
+    @Modifying
+    @Query("UPDATE SmsOutbox s SET s.status = 'FAILED', s.message = null, s.lastError = :error WHERE s.id = :id")
+    int markFailed(
+            @Param("id") Long id,
+            @Param("error") String error);
+
+    /**
+     * Lock the next keyset batch of finished messages older than the retention period
+     */
+    @Query(value = "SELECT id FROM sms_outbox WHERE id > :afterId " +
+                   "AND status <> 'PENDING' AND created_at < :before " +
+                   "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockFinishedBatch(
+            @Param("afterId") long afterId,
+            @Param("before") LocalDateTime before,
+            @Param("limit") int limit);
+
+    /**
+     * Count finished messages older than the retention period
+     */
+    @Query("SELECT COUNT(s) FROM SmsOutbox s WHERE s.status <> 'PENDING' AND s.createdAt < :before")
+    long countFinished(@Param("before") LocalDateTime before);
+}
@@ -24,9 +24,14 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByMobileNumber(String mobileNumber);
 
     /**
-     * Find user by Aadhar number
+     * Find the login fields of a user by email (selects only the projected columns)
      */
-    Optional<User> findByAadharNumber(String aadharNumber);
+    Optional<Credentials> findCredentialsByEmail(String email);
+
+    /**
+     * Find the login fields of a user by mobile number (selects only the projected columns)
+     */
+    Optional<Credentials> findCredentialsByMobileNumber(String mobileNumber);
 
     /**
      * Find user by email or mobile number
@@ -44,13 +49,24 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByMobileNumber(String mobileNumber);
 
     /**
-     * Check if Aadhar number exists
+     * Check if a legacy (AES/ECB) Aadhar ciphertext exists on a row not yet migrated
      */
-    boolean existsByAadharNumber(String aadharNumber);
+    boolean existsByAadharNumberAndAadharHashIsNull(String aadharNumber);
 
     /**
      * Find active user by email or mobile number
      */
     Optional<User> findByEmailOrMobileNumberAndIsActiveTrue(String email, String mobileNumber);
-}
 
+    /**
+     * Columns needed to authenticate a user, without address or encrypted Aadhar
+     */
+    interface Credentials {
+        Long getId();
+        String getPassword();
+        User.UserType getUserType();
+        Boolean getIsActive();
+        String getEmail();
+        String getMobileNumber();
+    }
+}
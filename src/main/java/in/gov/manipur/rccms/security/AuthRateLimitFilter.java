@@ -0,0 +1,344 @@
+package in.gov.manipur.rccms.security;
+
+import in.gov.manipur.rccms.config.RateLimitProperties;
+import in.gov.manipur.rccms.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Auth Rate Limit Filter
+ *
+ * Per-IP token buckets in front of /api/auth/**, so CAPTCHA, login and
+ * registration floods are refused before they reach Postgres or BCrypt.
+ * Every request spends the cost of its path (app.rate-limit.costs); buckets
+ * refill at refill-per-second up to capacity. Refused requests get 429 with
+ * Retry-After through GlobalExceptionHandler. Requests that pass their IP's
+ * bucket then spend the route budget their path belongs to, if any (RouteLimiter,
+ * shared by all clients and, in cluster mode, by all nodes).
+ *
+ * Buckets live in lock-striped open-addressing tables keyed by a 64-bit hash
+ * of the IP: 20 bytes per slot, so max-buckets = 1M costs at most ~42 MB.
+ * A bucket that has refilled completely carries no state and is evicted by the
+ * sweep (every minute, and early when a stripe is full). If a stripe is still
+ * full of active IPs, new IPs are let through and counted as overflow.
+ * Limits are per node. Registered in the security filter chain after CORS
+ * (see SecurityConfig), so browsers can read the 429.
+ */
+@Slf4j
+@Component
+public class AuthRateLimitFilter extends OncePerRequestFilter {
+
+    private static final String PATH_PREFIX = "/api/auth/";
+    private static final int INITIAL_TABLE_LENGTH = 64;
+    private static final long FULL_SWEEP_INTERVAL_MS = 1000;
+
+    private final RateLimitProperties properties;
+    private final ClientIpResolver clientIpResolver;
+    private final RouteLimiter routeLimiter;
+    private final HandlerExceptionResolver handlerExceptionResolver;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final int capacityMilli;
+    private final double refillPerMilli; // Milli-tokens per millisecond
+    private final Map<String, Counter> limitedByPath = new HashMap<>();
+    private final Counter limitedOther;
+    private final Map<String, String> budgetByPath = new HashMap<>();
+    private final Map<String, Counter> budgetLimited = new HashMap<>();
+    private final Counter overflow;
+
+    public AuthRateLimitFilter(RateLimitProperties properties,
+                               ClientIpResolver clientIpResolver,
+                               RouteLimiter routeLimiter,
+                               @Qualifier("handlerExceptionResolver") HandlerExceptionResolver handlerExceptionResolver,
+                               MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.clientIpResolver = clientIpResolver;
+        this.routeLimiter = routeLimiter;
+        this.handlerExceptionResolver = handlerExceptionResolver;
+        if (properties.isEnabled() && !(properties.getRefillPerSecond() > 0)) {
+            // A bucket that never refills would refuse an IP forever (and Retry-After would be infinite)
+            throw new IllegalStateException("app.rate-limit.refill-per-second must be greater than 0, was "
+                    + properties.getRefillPerSecond() + "; set app.rate-limit.enabled=false to turn the limit off");
+        }
+        this.capacityMilli = Math.multiplyExact(properties.getCapacity(), 1000);
+        this.refillPerMilli = properties.getRefillPerSecond();
+
+        int size = 1;
+        while (size < properties.getStripes()) {
+            size <<= 1; // Round up to a power of two for mask-based stripe selection
+        }
+        this.stripes = new Stripe[size];
+        this.stripeMask = size - 1;
+        int perStripe = Math.max(1, (properties.getMaxBuckets() + size - 1) / size);
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+
+        for (String path : properties.getCosts().keySet()) {
+            limitedByPath.put(path, limitedCounter(path, meterRegistry));
+        }
+        this.limitedOther = limitedCounter("other", meterRegistry);
+        properties.getBudgets().forEach((name, budget) -> {
+            budget.getPaths().forEach(path -> budgetByPath.put(path, name));
+            budgetLimited.put(name, Counter.builder("rccms.auth.rate.budget.limited")
+                    .description("Auth requests refused because the route budget was spent")
+                    .tag("budget", name)
+                    .register(meterRegistry));
+        });
+        this.overflow = Counter.builder("rccms.auth.rate.overflow")
+                .description("Requests let through untracked because the bucket table was full")
+                .register(meterRegistry);
+        Gauge.builder("rccms.auth.rate.buckets", this, AuthRateLimitFilter::size)
+                .description("Client IPs with a partly spent token bucket")
+                .register(meterRegistry);
+
+        log.info("Auth rate limit: {} tokens per IP, {}/s refill, {} stripes of {} buckets",
+                properties.getCapacity(), properties.getRefillPerSecond(), size, perStripe);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !properties.isEnabled()
+                || "OPTIONS".equals(request.getMethod())
+                || !path(request).startsWith(PATH_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = path(request);
+        int cost = properties.getCosts().getOrDefault(path, properties.getDefaultCost());
+        long waitMillis = cost > 0 ? tryConsume(clientIpResolver.resolve(request), cost) : 0;
+
+        if (waitMillis > 0) {
+            limitedByPath.getOrDefault(path, limitedOther).increment();
+            handlerExceptionResolver.resolveException(request, response, null, new TooManyRequestsException(
+                    "Too many requests. Please try again later.", (waitMillis + 999) / 1000));
+            return;
+        }
+
+        String budget = budgetByPath.get(path);
+        if (budget != null && (waitMillis = routeLimiter.tryAcquire(budget)) > 0) {
+            budgetLimited.get(budget).increment();
+            handlerExceptionResolver.resolveException(request, response, null, new TooManyRequestsException(
+                    "Service is busy. Please try again shortly.", (waitMillis + 999) / 1000));
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * Take cost tokens from the IP's bucket
+     *
+     * @return 0 if allowed, otherwise milliseconds until the bucket holds enough tokens
+     */
+    long tryConsume(String ipAddress, int cost) {
+        long key = hash(ipAddress);
+        int costMilli = Math.min(cost * 1000, capacityMilli);
+        long now = System.currentTimeMillis();
+        Stripe stripe = stripes[(int) (key >>> 32) & stripeMask];
+        synchronized (stripe) {
+            int slot = stripe.indexOf(key);
+            if (stripe.keys[slot] == 0) {
+                slot = stripe.insert(key, now);
+                if (slot < 0) {
+                    overflow.increment();
+                    return 0;
+                }
+            }
+            int tokens = stripe.refill(slot, now);
+            if (tokens >= costMilli) {
+                stripe.tokens[slot] = tokens - costMilli;
+                return 0;
+            }
+            return (long) Math.ceil((costMilli - tokens) / refillPerMilli);
+        }
+    }
+
+    /**
+     * Drop buckets that have refilled completely
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                removed += stripe.evictIdle(now);
+            }
+        }
+        log.debug("Auth rate limit evicted {} idle buckets", removed);
+    }
+
+    /**
+     * Number of buckets currently held
+     */
+    public int size() {
+        int total = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                total += stripe.size;
+            }
+        }
+        return total;
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    /**
+     * FNV-1a over the address, then a 64-bit finalizer; 0 marks an empty slot
+     */
+    private static long hash(String ipAddress) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < ipAddress.length(); i++) {
+            h = (h ^ ipAddress.charAt(i)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h != 0 ? h : 1;
+    }
+
+    private static Counter limitedCounter(String path, MeterRegistry meterRegistry) {
+        return Counter.builder("rccms.auth.rate.limited")
+                .description("Auth requests refused by the per-IP token bucket")
+                .tag("path", path)
+                .register(meterRegistry);
+    }
+
+    /**
+     * One lock stripe: linear-probing table of key, last refill time and milli-tokens
+     * that grows by doubling up to a load of 0.75 at maxSize
+     */
+    private final class Stripe {
+        private final int maxSize;
+        private final int maxLength;
+        private long[] keys;
+        private long[] stamps;
+        private int[] tokens;
+        private int size;
+        private long nextFullSweepAt;
+
+        private Stripe(int maxSize) {
+            this.maxSize = maxSize;
+            int length = INITIAL_TABLE_LENGTH;
+            while (length * 3L < maxSize * 4L) {
+                length <<= 1;
+            }
+            this.maxLength = length;
+            allocate(Math.min(INITIAL_TABLE_LENGTH, maxLength));
+        }
+
+        private int indexOf(long key) {
+            int mask = keys.length - 1;
+            int slot = (int) key & mask;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Add a full bucket for key
+         * @return its slot, or -1 if the stripe is full of active buckets
+         */
+        private int insert(long key, long now) {
+            if (size >= maxSize) {
+                if (now >= nextFullSweepAt) {
+                    evictIdle(now);
+                    nextFullSweepAt = now + FULL_SWEEP_INTERVAL_MS; // A full scan per new IP would be a DoS lever
+                }
+                if (size >= maxSize) {
+                    return -1;
+                }
+            }
+            if ((size + 1) * 4L > keys.length * 3L && keys.length < maxLength) {
+                rebuild(keys.length << 1, now, false);
+            }
+            int slot = indexOf(key);
+            keys[slot] = key;
+            stamps[slot] = now;
+            tokens[slot] = capacityMilli;
+            size++;
+            return slot;
+        }
+
+        private int refill(int slot, long now) {
+            long added = (long) ((now - stamps[slot]) * refillPerMilli);
+            if (added > 0) {
+                tokens[slot] = (int) Math.min(capacityMilli, tokens[slot] + added);
+                stamps[slot] = now;
+            }
+            return tokens[slot];
+        }
+
+        private int evictIdle(long now) {
+            int before = size;
+            int live = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0 && !isIdle(tokens[i], stamps[i], now)) {
+                    live++;
+                }
+            }
+            if (live == before) {
+                return 0;
+            }
+            int length = Math.min(INITIAL_TABLE_LENGTH, maxLength);
+            while (length < maxLength && live * 4L > length * 3L) {
+                length <<= 1;
+            }
+            rebuild(length, now, true);
+            return before - size;
+        }
+
+        private boolean isIdle(int tokens, long stamp, long now) {
+            return tokens + (now - stamp) * refillPerMilli >= capacityMilli;
+        }
+
+        private void rebuild(int length, long now, boolean dropIdle) {
+            long[] oldKeys = keys;
+            long[] oldStamps = stamps;
+            int[] oldTokens = tokens;
+            allocate(length);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == 0) {
+                    continue;
+                }
+                if (dropIdle && isIdle(oldTokens[i], oldStamps[i], now)) {
+                    continue;
+                }
+                int slot = indexOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                stamps[slot] = oldStamps[i];
+                tokens[slot] = oldTokens[i];
+                size++;
+            }
+        }
+
+        private void allocate(int length) {
+            keys = new long[length];
+            stamps = new long[length];
+            tokens = new int[length];
+            size = 0;
+        }
+    }
+}
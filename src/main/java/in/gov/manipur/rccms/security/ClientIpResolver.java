@@ -0,0 +1,23 @@
+package in.gov.manipur.rccms.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.stereotype.Component;
+
+/**
+ * Client IP Resolver
+ * Resolves the caller's IP address behind the reverse proxy.
+ * With server.forward-headers-strategy=native, Tomcat's RemoteIpValve has already
+ * replaced the remote address: it reads X-Forwarded-For from the right and stops at
+ * the first hop that is not a trusted proxy (server.tomcat.remoteip.internal-proxies),
+ * so entries a client prepends to the header are never used as its IP.
+ */
+@Component
+public class ClientIpResolver {
+
+    /**
+     * Get client IP address
+     */
+    public String resolve(HttpServletRequest request) {
+        return request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,301 @@
+package in.gov.manipur.rccms.security;
+
+import in.gov.manipur.rccms.config.RateLimitProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Cluster route limiter (app.rate-limit.mode=cluster)
+ *
+ * Budgets are shared by all nodes through the rate_limit_budget table without a
+ * database write per request: a node leases a slice of the current window
+ * (limit * max-error / nodes requests) in one short transaction, spends it from
+ * memory, and hands back what it has not spent after return-after-ms of idleness.
+ * The cluster never admits more than the limit; at most max-error of it can sit
+ * unspent in other nodes' leases.
+ *
+ * Leases are taken on a single leaser thread, never on a request thread: a
+ * request that finds its node's slice spent starts a lease (one per budget at
+ * a time) and waits for it at most lease-wait-ms. If the lease is slower, the
+ * request is let through and counted in rccms.auth.rate.cluster.timeouts; the
+ * lease still lands for the requests after it. No lock is held while the
+ * database is busy. If the database cannot be reached, requests are let
+ * through (checked again after a second) and counted in
+ * rccms.auth.rate.cluster.errors.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.rate-limit.mode", havingValue = "cluster")
+public class ClusterRouteLimiter implements RouteLimiter {
+
+    private static final long RECHECK_MS = 1000;
+    private static final String INSERT_SQL =
+            "INSERT INTO rate_limit_budget (budget_name, window_start, used) VALUES (?, ?, 0)";
+    private static final String LOCK_SQL =
+            "SELECT used FROM rate_limit_budget WHERE budget_name = ? AND window_start = ? FOR UPDATE";
+    private static final String ADD_SQL =
+            "UPDATE rate_limit_budget SET used = used + ? WHERE budget_name = ? AND window_start = ?";
+    private static final String PURGE_SQL =
+            "DELETE FROM rate_limit_budget WHERE window_start < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, Lease> leases = new HashMap<>();
+    private final ExecutorService leaser;
+    private final long returnAfterMs;
+    private final long leaseWaitMs;
+    private final int maxWindowSeconds;
+    private final Timer leaseLatency;
+    private final Counter leased;
+    private final Counter returned;
+    private final Counter errors;
+    private final Counter timeouts;
+
+    public ClusterRouteLimiter(RateLimitProperties properties,
+                               JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.returnAfterMs = properties.getCluster().getReturnAfterMs();
+        this.leaseWaitMs = properties.getCluster().getLeaseWaitMs();
+        this.leaser = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "rate-limit-leaser");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        RateLimitProperties.Cluster cluster = properties.getCluster();
+        int maxWindow = 1;
+        for (Map.Entry<String, RateLimitProperties.Budget> entry : properties.getBudgets().entrySet()) {
+            RateLimitProperties.Budget budget = entry.getValue();
+            int size = Math.max(1, (int) (budget.getLimit() * cluster.getMaxError() / Math.max(1, cluster.getNodes())));
+            leases.put(entry.getKey(), new Lease(entry.getKey(), budget, size));
+            maxWindow = Math.max(maxWindow, budget.getWindowSeconds());
+            log.info("Cluster rate limit budget {}: {} per {}s, leased {} at a time",
+                    entry.getKey(), budget.getLimit(), budget.getWindowSeconds(), size);
+        }
+        this.maxWindowSeconds = maxWindow;
+
+        this.leaseLatency = Timer.builder("rccms.auth.rate.cluster.lease")
+                .description("Time to lease a slice of a budget from the database")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.leased = tokenCounter("leased", meterRegistry);
+        this.returned = tokenCounter("returned", meterRegistry);
+        this.errors = Counter.builder("rccms.auth.rate.cluster.errors")
+                .description("Budget leases that failed; requests were let through")
+                .register(meterRegistry);
+        this.timeouts = Counter.builder("rccms.auth.rate.cluster.timeouts")
+                .description("Requests let through because their lease took longer than lease-wait-ms")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public long tryAcquire(String budget) {
+        Lease lease = leases.get(budget);
+        if (lease == null) {
+            return 0;
+        }
+        int windowSeconds = lease.budget.getWindowSeconds();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(leaseWaitMs);
+        while (true) {
+            long now = System.currentTimeMillis();
+            long window = RouteLimiter.windowStart(now, windowSeconds);
+            CompletableFuture<Void> pending;
+            synchronized (lease) {
+                if (lease.window != window) {
+                    lease.window = window; // Tokens of a past window are worthless, nothing to hand back
+                    lease.tokens = 0;
+                    lease.rowReady = false;
+                    lease.exhausted = false;
+                    lease.nextLeaseAt = 0;
+                }
+                if (lease.tokens > 0) {
+                    lease.tokens--;
+                    lease.lastUsedAt = now;
+                    return 0;
+                }
+                if (lease.pending == null) {
+                    if (now < lease.nextLeaseAt) {
+                        return lease.exhausted ? RouteLimiter.untilWindowEnd(now, windowSeconds) : 0;
+                    }
+                    lease.pending = CompletableFuture.runAsync(() -> lease(lease, window), leaser);
+                }
+                pending = lease.pending;
+            }
+
+            // Wait for the lease without holding the lock, then take a token of it (or start the next one)
+            long waitNanos = deadline - System.nanoTime();
+            try {
+                if (waitNanos <= 0) {
+                    throw new TimeoutException();
+                }
+                pending.get(waitNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                timeouts.increment();
+                return 0;
+            } catch (ExecutionException e) {
+                return 0; // Counted and logged by lease()
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Hand back leases that have not been spent for return-after-ms
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void returnIdleLeases() {
+        returnLeases(System.currentTimeMillis() - returnAfterMs);
+    }
+
+    @PreDestroy
+    void returnAllLeases() {
+        leaser.shutdownNow();
+        returnLeases(Long.MAX_VALUE);
+    }
+
+    /**
+     * Delete rows of windows that have ended
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void purgeOldWindows() {
+        long before = System.currentTimeMillis() / 1000 - 2L * maxWindowSeconds;
+        try {
+            int deleted = jdbcTemplate.update(PURGE_SQL, before);
+            log.debug("Purged {} old rate limit budget rows", deleted);
+        } catch (DataAccessException e) {
+            log.warn("Failed to purge old rate limit budget rows: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Take up to lease.size requests of the window from the database (on the leaser thread)
+     * and add them to the node's slice; marks the budget exhausted if none are left
+     */
+    private void lease(Lease lease, long window) {
+        boolean rowReady;
+        synchronized (lease) {
+            rowReady = lease.rowReady && lease.window == window;
+        }
+        int tokens;
+        try {
+            if (!rowReady) {
+                try {
+                    jdbcTemplate.update(INSERT_SQL, lease.name, window);
+                } catch (DuplicateKeyException e) {
+                    // Another node opened this window first
+                }
+            }
+            Integer granted = leaseLatency.record(() -> transactionTemplate.execute(status -> {
+                Integer used = jdbcTemplate.queryForObject(LOCK_SQL, Integer.class, lease.name, window);
+                int grant = Math.min(lease.size, lease.budget.getLimit() - (used != null ? used : 0));
+                if (grant <= 0) {
+                    return 0;
+                }
+                jdbcTemplate.update(ADD_SQL, grant, lease.name, window);
+                return grant;
+            }));
+            tokens = granted != null ? granted : 0;
+            leased.increment(tokens);
+        } catch (DataAccessException e) {
+            errors.increment();
+            log.warn("Could not lease {} budget, letting requests through: {}", lease.name, e.getMessage());
+            synchronized (lease) {
+                lease.pending = null;
+                if (lease.window == window) {
+                    lease.rowReady = false;
+                    lease.exhausted = false;
+                    lease.nextLeaseAt = System.currentTimeMillis() + RECHECK_MS;
+                }
+            }
+            throw e;
+        }
+
+        synchronized (lease) {
+            lease.pending = null;
+            if (lease.window != window) {
+                return; // The window ended meanwhile; its requests are spent in the database, nothing to hand back
+            }
+            lease.rowReady = true;
+            lease.tokens += tokens;
+            lease.exhausted = tokens == 0;
+            if (lease.exhausted) {
+                lease.nextLeaseAt = System.currentTimeMillis() + RECHECK_MS; // Others may hand budget back; ask again later
+            }
+        }
+    }
+
+    private void returnLeases(long idleSince) {
+        for (Lease lease : leases.values()) {
+            int tokens;
+            long window;
+            synchronized (lease) {
+                if (lease.tokens == 0 || lease.lastUsedAt > idleSince) {
+                    continue;
+                }
+                tokens = lease.tokens;
+                window = lease.window;
+                lease.tokens = 0;
+            }
+            try {
+                jdbcTemplate.update(ADD_SQL, -tokens, lease.name, window);
+                returned.increment(tokens);
+            } catch (DataAccessException e) {
+                log.warn("Failed to hand back {} {} requests: {}", tokens, lease.name, e.getMessage());
+            }
+        }
+    }
+
+    private static Counter tokenCounter(String action, MeterRegistry meterRegistry) {
+        return Counter.builder("rccms.auth.rate.cluster.tokens")
+                .description("Budget requests leased from or handed back to the database")
+                .tag("action", action)
+                .register(meterRegistry);
+    }
+
+    /**
+     * This node's unspent slice of one budget in the current window
+     */
+    private static final class Lease {
+        private final String name;
+        private final RateLimitProperties.Budget budget;
+        private final int size;
+        private long window;
+        private int tokens;
+        private long lastUsedAt;
+        private long nextLeaseAt;
+        private boolean exhausted;
+        private boolean rowReady;
+        private CompletableFuture<Void> pending; // Lease in progress on the leaser thread
+
+        private Lease(String name, RateLimitProperties.Budget budget, int size) {
+            this.name = name;
+            this.budget = budget;
+            this.size = size;
+        }
+    }
+}
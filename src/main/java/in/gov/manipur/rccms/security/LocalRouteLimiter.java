@@ -0,0 +1,54 @@
+package in.gov.manipur.rccms.security;
+
+import in.gov.manipur.rccms.config.RateLimitProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Local route limiter (default)
+ * Counts each budget in memory, so every node allows the full limit
+ */
+@Component
+@ConditionalOnProperty(name = "app.rate-limit.mode", havingValue = "local", matchIfMissing = true)
+public class LocalRouteLimiter implements RouteLimiter {
+
+    private final Map<String, Window> windows = new HashMap<>();
+
+    public LocalRouteLimiter(RateLimitProperties properties) {
+        properties.getBudgets().forEach((name, budget) -> windows.put(name, new Window(budget)));
+    }
+
+    @Override
+    public long tryAcquire(String budget) {
+        Window window = windows.get(budget);
+        if (window == null) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        long start = RouteLimiter.windowStart(now, window.budget.getWindowSeconds());
+        synchronized (window) {
+            if (window.start != start) {
+                window.start = start;
+                window.used = 0;
+            }
+            if (window.used >= window.budget.getLimit()) {
+                return RouteLimiter.untilWindowEnd(now, window.budget.getWindowSeconds());
+            }
+            window.used++;
+            return 0;
+        }
+    }
+
+    private static final class Window {
+        private final RateLimitProperties.Budget budget;
+        private long start;
+        private int used;
+
+        private Window(RateLimitProperties.Budget budget) {
+            this.budget = budget;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package in.gov.manipur.rccms.security;
+
+/**
+ * Route Limiter
+ * Fixed-window budgets shared by all clients of a group of routes
+ * (app.rate-limit.budgets), checked by AuthRateLimitFilter after the per-IP bucket.
+ * Implementations are selected with the app.rate-limit.mode property.
+ */
+public interface RouteLimiter {
+
+    /**
+     * Spend one request from a budget
+     * @param budget budget name from app.rate-limit.budgets
+     * @return 0 if allowed, otherwise milliseconds until the budget's next window
+     */
+    long tryAcquire(String budget);
+
+    /**
+     * Start of the window containing nowMillis, in epoch seconds
+     */
+    static long windowStart(long nowMillis, int windowSeconds) {
+        long second = nowMillis / 1000;
+        return second - second % windowSeconds;
+    }
+
+    /**
+     * Milliseconds from nowMillis to the end of the window
+     */
+    static long untilWindowEnd(long nowMillis, int windowSeconds) {
+        return (windowStart(nowMillis, windowSeconds) + windowSeconds) * 1000 - nowMillis;
+    }
+}
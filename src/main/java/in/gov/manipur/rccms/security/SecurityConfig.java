@@ -1,32 +1,54 @@
 package in.gov.manipur.rccms.security;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
 import org.springframework.web.cors.CorsConfigurationSource;
+import org.springframework.web.filter.CorsFilter;
+
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Spring Security Configuration
  * 
  * Configuration:
- * - Permits all requests (public endpoints)
+ * - Permits all requests (public endpoints), except actuator endpoints other than
+ *   health and info, which only answer callers from app.management.allowed-ips
  * - Disables CSRF (stateless JWT authentication)
  * - Enables CORS for Angular frontend
  * - Stateless session management for JWT
+ * - Per-IP rate limits on /api/auth/** (AuthRateLimitFilter)
  */
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
     private final CorsConfigurationSource corsConfigurationSource;
+    private final AuthRateLimitFilter authRateLimitFilter;
+    private final List<IpAddressMatcher> managementNetworks;
 
-    public SecurityConfig(CorsConfigurationSource corsConfigurationSource) {
+    public SecurityConfig(CorsConfigurationSource corsConfigurationSource, AuthRateLimitFilter authRateLimitFilter,
+                          @Value("${app.management.allowed-ips:127.0.0.1/32,::1/128}") String[] managementAllowedIps) {
         this.corsConfigurationSource = corsConfigurationSource;
+        this.authRateLimitFilter = authRateLimitFilter;
+        this.managementNetworks = Arrays.stream(managementAllowedIps)
+                .map(String::trim)
+                .filter(network -> !network.isEmpty())
+                .map(IpAddressMatcher::new)
+                .toList();
     }
 
     @Bean
@@ -34,7 +56,10 @@ public class SecurityConfig {
         http
                 .csrf(csrf -> csrf.disable())
                 .cors(cors -> cors.configurationSource(corsConfigurationSource))
+                .addFilterAfter(authRateLimitFilter, CorsFilter.class)
                 .authorizeHttpRequests(auth -> auth
+                        .requestMatchers(EndpointRequest.to("health", "info")).permitAll()
+                        .requestMatchers(EndpointRequest.toAnyEndpoint()).access(fromManagementNetworks())
                         .requestMatchers("/api/**").permitAll()
                         .requestMatchers("/swagger-ui/**", "/swagger-ui.html", "/swagger-ui/index.html").permitAll()
                         .requestMatchers("/v3/api-docs/**", "/swagger-resources/**", "/webjars/**").permitAll()
@@ -47,6 +72,25 @@ public class SecurityConfig {
         return http.build();
     }
 
+    /**
+     * Allow callers whose address (as resolved by RemoteIpValve) is in a management network
+     */
+    private AuthorizationManager<RequestAuthorizationContext> fromManagementNetworks() {
+        return (authentication, context) -> new AuthorizationDecision(
+                managementNetworks.stream().anyMatch(network -> network.matches(context.getRequest())));
+    }
+
+    /**
+     * Keep the rate limit filter out of the servlet container's chain;
+     * it runs inside the security chain only
+     */
+    @Bean
+    public FilterRegistrationBean<AuthRateLimitFilter> authRateLimitFilterRegistration() {
+        FilterRegistrationBean<AuthRateLimitFilter> registration = new FilterRegistrationBean<>(authRateLimitFilter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
     /**
      * Password Encoder Bean
      * Uses BCrypt for password hashing
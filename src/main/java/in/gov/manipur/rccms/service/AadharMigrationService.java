@@ -0,0 +1,227 @@
+package in.gov.manipur.rccms.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aadhar Migration Service
+ *
+ * Converts users rows written before the blind index: decrypts the legacy
+ * AES/ECB Aadhar, re-encrypts it with AES-GCM and fills aadhar_hash. Rows are
+ * taken in keyset batches with FOR UPDATE SKIP LOCKED, each batch in its own
+ * short transaction written as one JDBC batch, under the same rows-per-second
+ * and run-time budget style as the expired-row cleanup, so several nodes can
+ * run it at once without blocking registrations.
+ *
+ * A row whose legacy value cannot be decrypted is logged, counted and marked
+ * with aadhar_key_version = UNREADABLE_KEY_VERSION; it keeps its ciphertext
+ * and no blind index, and later runs pass over it.
+ *
+ * Until a run finds no legacy rows left, registration also checks the legacy
+ * ciphertext for duplicates (see isComplete). Once done, the index and unique
+ * constraint on the old ciphertext column are dropped (PostgreSQL only).
+ */
+@Slf4j
+@Service
+public class AadharMigrationService {
+
+    /**
+     * aadhar_key_version of legacy rows whose value cannot be decrypted; they keep their ciphertext
+     */
+    public static final int UNREADABLE_KEY_VERSION = 0;
+
+    private static final String LEGACY_WHERE =
+            "aadhar_hash IS NULL AND COALESCE(aadhar_key_version, 1) <> " + UNREADABLE_KEY_VERSION;
+    private static final String SELECT_SQL =
+            "SELECT id, aadhar_number FROM users WHERE " + LEGACY_WHERE + " AND id > ? " +
+            "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String UPDATE_SQL =
+            "UPDATE users SET aadhar_number = ?, aadhar_key_version = ?, aadhar_hash = ? WHERE id = ?";
+    private static final String MARK_UNREADABLE_SQL =
+            "UPDATE users SET aadhar_key_version = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EncryptionService encryptionService;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter rowsMigrated;
+    private final Counter rowsSkipped;
+    private final Timer batchLatency;
+    private volatile boolean complete;
+
+    @Value("${app.encryption.migration.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.encryption.migration.rows-per-second:2000}")
+    private int rowsPerSecond;
+
+    @Value("${app.encryption.migration.max-run-seconds:50}")
+    private int maxRunSeconds;
+
+    public AadharMigrationService(JdbcTemplate jdbcTemplate,
+                                  EncryptionService encryptionService,
+                                  PlatformTransactionManager transactionManager,
+                                  MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.encryptionService = encryptionService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.rowsMigrated = Counter.builder("rccms.aadhar.migration.rows")
+                .description("Users rows converted to AES-GCM with a blind index")
+                .register(meterRegistry);
+        this.rowsSkipped = Counter.builder("rccms.aadhar.migration.skipped")
+                .description("Legacy users rows that cannot be decrypted, marked and left as they are")
+                .register(meterRegistry);
+        this.batchLatency = Timer.builder("rccms.aadhar.migration.batch.latency")
+                .description("Time to convert one batch of users rows")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("rccms.aadhar.migration.complete", this, m -> m.complete ? 1 : 0)
+                .description("1 once no users rows without a blind index remain")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Check if every row has a blind index (legacy duplicate checks can stop)
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Convert legacy rows within the run's time and rate budget
+     * @return rows converted
+     */
+    @Scheduled(fixedDelayString = "${app.encryption.migration.interval-ms:60000}")
+    public long migrate() {
+        if (complete) {
+            return 0;
+        }
+        long deadline = System.nanoTime() + maxRunSeconds * 1_000_000_000L;
+        long nanosPerBatch = 1_000_000_000L * batchSize / Math.max(1, rowsPerSecond);
+        long afterId = 0;
+        long total = 0;
+
+        while (System.nanoTime() < deadline) {
+            long batchStart = System.nanoTime();
+            long keyset = afterId;
+            Batch batch = batchLatency.record(() -> transactionTemplate.execute(status -> convertBatch(keyset)));
+
+            if (batch == null) {
+                // Rows skipped because another node held them are picked up by a later run
+                if (!hasLegacyRows()) {
+                    finish();
+                }
+                break;
+            }
+            afterId = batch.lastId();
+            total += batch.converted();
+            rowsMigrated.increment(batch.converted());
+            throttle(batchStart, nanosPerBatch);
+        }
+
+        if (total > 0) {
+            log.info("Converted {} users rows to AES-GCM with a blind index", total);
+        }
+        return total;
+    }
+
+    /**
+     * Lock, convert and write one batch
+     * @return last id of the batch and rows converted, or null if no rows were left
+     */
+    private Batch convertBatch(long afterId) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(SELECT_SQL, afterId, batchSize);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        List<Long> ids = new ArrayList<>(rows.size());
+        List<String> aadhars = new ArrayList<>(rows.size());
+        List<Object[]> unreadable = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            long id = ((Number) row.get("id")).longValue();
+            try {
+                aadhars.add(encryptionService.decryptLegacy((String) row.get("aadhar_number")));
+                ids.add(id);
+            } catch (RuntimeException e) {
+                log.error("Aadhar migration skipped users row {}: legacy value cannot be decrypted ({})", id, e.getMessage());
+                unreadable.add(new Object[] {UNREADABLE_KEY_VERSION, id});
+            }
+        }
+        List<String> encrypted = encryptionService.encryptAll(aadhars);
+        int keyVersion = encryptionService.activeKeyVersion();
+        List<Object[]> updates = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            updates.add(new Object[] {encrypted.get(i), keyVersion, encryptionService.blindIndex(aadhars.get(i)), ids.get(i)});
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+        }
+        if (!unreadable.isEmpty()) {
+            jdbcTemplate.batchUpdate(MARK_UNREADABLE_SQL, unreadable);
+            rowsSkipped.increment(unreadable.size());
+        }
+        long lastId = ((Number) rows.get(rows.size() - 1).get("id")).longValue();
+        return new Batch(lastId, ids.size());
+    }
+
+    private boolean hasLegacyRows() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM users WHERE " + LEGACY_WHERE + ")", Boolean.class));
+    }
+
+    /**
+     * Mark the migration done and drop the index and unique constraint on the ciphertext column
+     */
+    private void finish() {
+        complete = true;
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equals(product)) {
+            return;
+        }
+
+        List<String> constraints = jdbcTemplate.queryForList(
+                "SELECT c.conname FROM pg_constraint c JOIN pg_class t ON t.oid = c.conrelid " +
+                "JOIN pg_attribute a ON a.attrelid = t.oid AND a.attnum = ANY (c.conkey) " +
+                "WHERE t.relname = 'users' AND c.contype = 'u' AND a.attname = 'aadhar_number' " +
+                "AND pg_table_is_visible(t.oid)", String.class);
+        for (String constraint : constraints) {
+            log.info("Dropping unique constraint {} on users.aadhar_number (replaced by aadhar_hash)", constraint);
+            jdbcTemplate.execute("ALTER TABLE users DROP CONSTRAINT IF EXISTS \"" + constraint + "\"");
+        }
+        jdbcTemplate.execute("DROP INDEX IF EXISTS idx_aadhar");
+        log.info("Aadhar migration complete; all users rows have a blind index");
+    }
+
+    /**
+     * Sleep for the rest of the batch's share of the rows-per-second budget
+     */
+    private void throttle(long batchStart, long nanosPerBatch) {
+        long remaining = nanosPerBatch - (System.nanoTime() - batchStart);
+        if (remaining <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(remaining / 1_000_000, (int) (remaining % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Batch(long lastId, int converted) {
+    }
+}
@@ -5,9 +5,12 @@ import in.gov.manipur.rccms.dto.LoginRequestDTO;
 import in.gov.manipur.rccms.dto.OtpVerificationDTO;
 import in.gov.manipur.rccms.entity.User;
 import in.gov.manipur.rccms.exception.InvalidCredentialsException;
+import in.gov.manipur.rccms.exception.TooManyRequestsException;
+import in.gov.manipur.rccms.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -24,27 +27,34 @@ public class AuthService {
     private final OtpService otpService;
     private final CaptchaService captchaService;
     private final JwtService jwtService;
+    private final LoginAttemptTracker loginAttemptTracker;
 
     /**
      * Login with password
+     * Not transactional: nothing is written, and BCrypt must not hold a database connection
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public AuthResponseDTO loginWithPassword(LoginRequestDTO request) {
         if (request == null) {
             throw new IllegalArgumentException("Login request cannot be null");
         }
 
-        // Validate CAPTCHA
-        boolean isValidCaptcha = captchaService.validateCaptcha(request.getCaptchaId(), request.getCaptcha());
+        // Refuse locked accounts before any CAPTCHA, database or BCrypt work
+        String username = request.getUsername().trim();
+        refuseIfLocked(username);
+
+        // Validate and consume CAPTCHA
+        boolean isValidCaptcha = captchaService.consumeCaptcha(request.getCaptchaId(), request.getCaptcha());
         if (!isValidCaptcha) {
             log.warn("Login failed: Invalid CAPTCHA");
             throw new InvalidCredentialsException("Invalid CAPTCHA");
         }
 
-        // Mark CAPTCHA as used
-        captchaService.markCaptchaAsUsed(request.getCaptchaId(), request.getCaptcha());
+        // Only attempts that passed the CAPTCHA count towards the account's lockout
+        startLoginAttempt(username);
 
-        // Find and verify user
-        User user = userService.findByEmailOrMobile(request.getUsername().trim());
+        // Find the user's login fields (one SELECT, reused for the password check)
+        UserRepository.Credentials user = userService.findCredentials(username);
         
         // Verify user type matches
         if (!user.getUserType().equals(request.getUserType())) {
@@ -58,11 +68,15 @@ public class AuthService {
             throw new InvalidCredentialsException("Account is not active. Please verify your mobile number.");
         }
 
+        // The account can also be locked under its other identifier (email vs mobile number)
+        startLoginAttempt(username.equalsIgnoreCase(user.getEmail()) ? user.getMobileNumber() : user.getEmail());
+
         // Verify password
-        if (!userService.verifyUserCredentials(request.getUsername().trim(), request.getPassword()).equals(user)) {
+        if (!userService.verifyPassword(user, request.getPassword())) {
             log.warn("Login failed: Invalid password for user ID: {}", user.getId());
             throw new InvalidCredentialsException("Invalid username or password");
         }
+        loginAttemptTracker.accountSucceeded(username, user.getEmail(), user.getMobileNumber());
 
         // Generate tokens
         String accessToken = jwtService.generateToken(user.getId(), user.getEmail(), user.getUserType().name());
@@ -90,18 +104,15 @@ public class AuthService {
             throw new IllegalArgumentException("OTP verification request cannot be null");
         }
 
-        // Validate CAPTCHA
-        boolean isValidCaptcha = captchaService.validateCaptcha(request.getCaptchaId(), request.getCaptcha());
+        // Validate and consume CAPTCHA
+        boolean isValidCaptcha = captchaService.consumeCaptcha(request.getCaptchaId(), request.getCaptcha());
         if (!isValidCaptcha) {
             log.warn("OTP login failed: Invalid CAPTCHA");
             throw new InvalidCredentialsException("Invalid CAPTCHA");
         }
 
-        // Mark CAPTCHA as used
-        captchaService.markCaptchaAsUsed(request.getCaptchaId(), request.getCaptcha());
-
-        // Verify OTP
-        boolean isValidOtp = otpService.verifyOtp(
+        // Verify and consume OTP
+        boolean isValidOtp = otpService.consumeOtp(
                 request.getMobileNumber().trim(), 
                 request.getOtp().trim(), 
                 request.getUserType()
@@ -127,9 +138,6 @@ public class AuthService {
             throw new InvalidCredentialsException("Account is not active. Please contact support.");
         }
 
-        // Mark OTP as used
-        otpService.markOtpAsUsed(request.getMobileNumber().trim(), request.getOtp().trim(), request.getUserType());
-
         // Generate tokens
         String accessToken = jwtService.generateToken(user.getId(), user.getEmail(), user.getUserType().name());
         String refreshToken = jwtService.generateRefreshToken(user.getId(), user.getEmail());
@@ -182,6 +190,32 @@ public class AuthService {
                 .build();
     }
 
+    /**
+     * Refuse a login while the identifier is locked, without counting an attempt
+     */
+    private void refuseIfLocked(String identifier) {
+        refuseLocked(loginAttemptTracker.accountLockedFor(identifier));
+    }
+
+    /**
+     * Count a login attempt against an identifier, refusing it while the identifier is locked
+     */
+    private void startLoginAttempt(String identifier) {
+        if (identifier == null) {
+            return;
+        }
+        refuseLocked(loginAttemptTracker.tryAccountAttempt(identifier));
+    }
+
+    private void refuseLocked(long waitMillis) {
+        if (waitMillis > 0) {
+            long waitSeconds = (waitMillis + 999) / 1000;
+            log.warn("Login refused: too many failed attempts, locked for {}s", waitSeconds);
+            throw new TooManyRequestsException(
+                    "Too many failed login attempts. Please try again after " + waitSeconds + " seconds.", waitSeconds);
+        }
+    }
+
     /**
      * Mask mobile for logging
      */
@@ -0,0 +1,123 @@
+package in.gov.manipur.rccms.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * CAPTCHA Challenge Pool
+ *
+ * A background thread keeps a bounded queue of ready-made challenges
+ * (text + rendered image), so /api/auth/captcha/generate only dequeues one
+ * and request latency does not depend on image rendering. When the pool runs
+ * dry the challenge is rendered inline and counted as a pool miss.
+ * A failed render is logged and retried after a growing pause (up to
+ * MAX_BACKOFF_MS), so one bad render does not stop the refiller.
+ */
+@Slf4j
+@Component
+public class CaptchaChallengePool {
+
+    private static final long MIN_BACKOFF_MS = 100;
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    private final CaptchaImageRenderer renderer;
+    private final BlockingQueue<Challenge> pool;
+    private final Timer generationTimer;
+    private final DistributionSummary imageBytes;
+    private final Counter poolMisses;
+    private final Counter refillErrors;
+    private Thread refiller;
+
+    public CaptchaChallengePool(CaptchaImageRenderer renderer,
+                                @Value("${app.captcha.image.pool-size:500}") int poolSize,
+                                MeterRegistry meterRegistry) {
+        this.renderer = renderer;
+        this.pool = new ArrayBlockingQueue<>(poolSize);
+        this.generationTimer = Timer.builder("rccms.captcha.image.generation")
+                .description("Time to render one CAPTCHA image")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.imageBytes = DistributionSummary.builder("rccms.captcha.image.bytes")
+                .description("Size of rendered CAPTCHA images")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.poolMisses = Counter.builder("rccms.captcha.image.pool.misses")
+                .description("Challenges rendered inline because the pool was empty")
+                .register(meterRegistry);
+        this.refillErrors = Counter.builder("rccms.captcha.image.pool.errors")
+                .description("Background renders that failed; the refiller retries after a pause")
+                .register(meterRegistry);
+        Gauge.builder("rccms.captcha.image.pool.size", pool, BlockingQueue::size)
+                .description("Ready-made challenges in the pool")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        refiller = new Thread(this::refill, "captcha-pool-refiller");
+        refiller.setDaemon(true);
+        refiller.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        refiller.interrupt();
+    }
+
+    /**
+     * Take a ready-made challenge, rendering one inline if the pool is empty
+     */
+    public Challenge take() {
+        Challenge challenge = pool.poll();
+        if (challenge == null) {
+            poolMisses.increment();
+            challenge = newChallenge();
+        }
+        return challenge;
+    }
+
+    private void refill() {
+        long backoffMs = MIN_BACKOFF_MS;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                pool.put(newChallenge()); // Blocks while the pool is full
+                backoffMs = MIN_BACKOFF_MS;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                refillErrors.increment();
+                log.error("CAPTCHA pool refill failed, retrying in {} ms", backoffMs, e);
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+                backoffMs = Math.min(MAX_BACKOFF_MS, backoffMs * 2);
+            }
+        }
+    }
+
+    private Challenge newChallenge() {
+        String text = CaptchaService.generateCaptchaText();
+        byte[] png = generationTimer.record(() -> renderer.render(text));
+        imageBytes.record(png.length);
+        return new Challenge(text, png);
+    }
+
+    /**
+     * CAPTCHA text and its rendered PNG image
+     */
+    public record Challenge(String text, byte[] png) {
+    }
+}
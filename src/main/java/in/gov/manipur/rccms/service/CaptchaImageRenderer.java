@@ -0,0 +1,147 @@
+package in.gov.manipur.rccms.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * CAPTCHA Image Renderer
+ *
+ * Every character of the CAPTCHA alphabet is rasterised once at startup in a
+ * few fonts and rotations (the glyph atlas). Rendering a challenge only blits
+ * pre-rasterised glyphs, adds noise and applies a wave distortion, which is far
+ * cheaper than laying out text with Java2D on every request.
+ */
+@Slf4j
+@Component
+public class CaptchaImageRenderer {
+
+    private static final int WIDTH = 180;
+    private static final int HEIGHT = 60;
+    private static final int GLYPH_SIZE = 44;
+    private static final int[] ROTATIONS = {-25, -15, -5, 5, 15, 25}; // Degrees
+    private static final String[] FONTS = {Font.SANS_SERIF, Font.SERIF, Font.MONOSPACED};
+
+    private final String alphabet;
+    private final BufferedImage[][] atlas; // [alphabet index][font x rotation variant]
+
+    public CaptchaImageRenderer() {
+        this.alphabet = CaptchaService.ALPHANUMERIC;
+        ImageIO.setUseCache(false); // Encode in memory, no temp files
+        long start = System.nanoTime();
+        this.atlas = new BufferedImage[alphabet.length()][FONTS.length * ROTATIONS.length];
+        for (int c = 0; c < alphabet.length(); c++) {
+            int variant = 0;
+            for (String fontName : FONTS) {
+                Font font = new Font(fontName, Font.BOLD, 32);
+                for (int rotation : ROTATIONS) {
+                    atlas[c][variant++] = rasterise(alphabet.charAt(c), font, rotation);
+                }
+            }
+        }
+        log.info("CAPTCHA glyph atlas built: {} glyphs in {} ms",
+                alphabet.length() * FONTS.length * ROTATIONS.length, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Render CAPTCHA text as a distorted PNG image
+     * @param text CAPTCHA text (characters from CaptchaService.ALPHANUMERIC)
+     * @return PNG bytes
+     */
+    public byte[] render(String text) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        BufferedImage canvas = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = canvas.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(new Color(235 + random.nextInt(20), 235 + random.nextInt(20), 235 + random.nextInt(20)));
+            g.fillRect(0, 0, WIDTH, HEIGHT);
+
+            // Background noise lines
+            for (int i = 0; i < 6; i++) {
+                g.setColor(randomColor(random, 120, 200));
+                g.drawLine(random.nextInt(WIDTH), random.nextInt(HEIGHT), random.nextInt(WIDTH), random.nextInt(HEIGHT));
+            }
+
+            // Glyphs from the atlas
+            int step = (WIDTH - 16) / text.length();
+            for (int i = 0; i < text.length(); i++) {
+                BufferedImage[] variants = atlas[alphabet.indexOf(text.charAt(i))];
+                BufferedImage glyph = variants[random.nextInt(variants.length)];
+                int x = 8 + i * step + random.nextInt(-3, 4) - (GLYPH_SIZE - step) / 2;
+                int y = (HEIGHT - GLYPH_SIZE) / 2 + random.nextInt(-5, 6);
+                g.drawImage(glyph, x, y, null);
+            }
+
+            // Foreground noise dots
+            for (int i = 0; i < 120; i++) {
+                canvas.setRGB(random.nextInt(WIDTH), random.nextInt(HEIGHT), randomColor(random, 0, 160).getRGB());
+            }
+        } finally {
+            g.dispose();
+        }
+
+        return encodePng(distort(canvas, random));
+    }
+
+    /**
+     * Shift every row along a random sine wave
+     */
+    private BufferedImage distort(BufferedImage source, ThreadLocalRandom random) {
+        int[] src = source.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH);
+        int[] dst = new int[src.length];
+        double amplitude = 2.5 + random.nextDouble() * 2.5;
+        double period = 18 + random.nextDouble() * 14;
+        double phase = random.nextDouble() * Math.PI * 2;
+        for (int y = 0; y < HEIGHT; y++) {
+            int shift = (int) Math.round(amplitude * Math.sin(y / period * Math.PI * 2 + phase));
+            for (int x = 0; x < WIDTH; x++) {
+                int sx = Math.min(WIDTH - 1, Math.max(0, x + shift));
+                dst[y * WIDTH + x] = src[y * WIDTH + sx];
+            }
+        }
+        BufferedImage result = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        result.setRGB(0, 0, WIDTH, HEIGHT, dst, 0, WIDTH);
+        return result;
+    }
+
+    private BufferedImage rasterise(char c, Font font, int rotation) {
+        BufferedImage glyph = new BufferedImage(GLYPH_SIZE, GLYPH_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = glyph.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setFont(font);
+            g.setColor(new Color(40, 50, 110));
+            FontMetrics metrics = g.getFontMetrics();
+            String s = String.valueOf(c);
+            g.rotate(Math.toRadians(rotation), GLYPH_SIZE / 2.0, GLYPH_SIZE / 2.0);
+            g.drawString(s, (GLYPH_SIZE - metrics.stringWidth(s)) / 2,
+                    (GLYPH_SIZE - metrics.getHeight()) / 2 + metrics.getAscent());
+        } finally {
+            g.dispose();
+        }
+        return glyph;
+    }
+
+    private Color randomColor(ThreadLocalRandom random, int min, int max) {
+        return new Color(random.nextInt(min, max), random.nextInt(min, max), random.nextInt(min, max));
+    }
+
+    private byte[] encodePng(BufferedImage image) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error encoding CAPTCHA image", e);
+        }
+    }
+}
@@ -1,98 +1,107 @@
 package in.gov.manipur.rccms.service;
 
 import in.gov.manipur.rccms.dto.CaptchaDTO;
-import in.gov.manipur.rccms.entity.Captcha;
-import in.gov.manipur.rccms.repository.CaptchaRepository;
+import in.gov.manipur.rccms.dto.ProofOfWorkChallengeDTO;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
-import java.util.Optional;
-import java.util.Random;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
 
 /**
  * CAPTCHA Service
  * Handles CAPTCHA generation and validation
+ * Storage is delegated to the configured CaptchaStore (app.captcha.store)
+ * Images are taken from the pre-rendered CaptchaChallengePool
+ * Proof-of-work challenges (captchaId starting with "pow.") are verified by ProofOfWorkService
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
-@Transactional
 public class CaptchaService {
 
-    private final CaptchaRepository captchaRepository;
-    private static final String ALPHANUMERIC = "ABCDEFGHJKLMNPQRSTUVWXYZ23456789"; // Excluding confusing characters
-    private static final int CAPTCHA_LENGTH = 6;
-    private static final Random random = new Random();
+    private final CaptchaStore captchaStore;
+    private final CaptchaChallengePool challengePool;
+    private final ProofOfWorkService proofOfWorkService;
+    static final String ALPHANUMERIC = "ABCDEFGHJKLMNPQRSTUVWXYZ23456789"; // Excluding confusing characters
+    static final int CAPTCHA_LENGTH = 6;
+    private static final Duration CAPTCHA_TTL = Duration.ofMinutes(10);
+    private static final SecureRandom random = new SecureRandom(); // CAPTCHA text must not be predictable
+
+    // Only for local development - the image is the challenge
+    @Value("${app.captcha.include-text:false}")
+    private boolean includeText;
 
     /**
      * Generate CAPTCHA
      * @param ipAddress IP address of the requester (for tracking)
-     * @return CaptchaDTO with captchaId and captchaText
+     * @return CaptchaDTO with captchaId and Base64 PNG image
      */
     public CaptchaDTO generateCaptcha(String ipAddress) {
-        String captchaText = generateCaptchaText();
-        Captcha captcha = new Captcha();
-        captcha.setCaptchaText(captchaText);
-        captcha.setIpAddress(ipAddress);
-        captcha.setExpiresAt(LocalDateTime.now().plusMinutes(10));
-        captcha.setIsUsed(false);
-
-        Captcha savedCaptcha = captchaRepository.save(captcha);
-        log.debug("CAPTCHA generated with ID: {}", savedCaptcha.getCaptchaId());
+        CaptchaChallengePool.Challenge challenge = challengePool.take();
+        String captchaId = captchaStore.save(challenge.text(), ipAddress, CAPTCHA_TTL);
+        log.debug("CAPTCHA generated with ID: {}", captchaId);
 
         return CaptchaDTO.builder()
-                .captchaId(savedCaptcha.getCaptchaId())
-                .captchaText(savedCaptcha.getCaptchaText())
+                .captchaId(captchaId)
+                .captchaText(includeText ? challenge.text() : null)
+                .imageBase64(Base64.getEncoder().encodeToString(challenge.png()))
                 .build();
     }
 
+    /**
+     * Generate proof-of-work challenge (alternative to the image CAPTCHA)
+     */
+    public ProofOfWorkChallengeDTO generateProofOfWork() {
+        return proofOfWorkService.issueChallenge();
+    }
+
     /**
      * Validate CAPTCHA
      * @param captchaId CAPTCHA ID
      * @param captchaText CAPTCHA text (case-insensitive)
      * @return true if valid, false otherwise
      */
-    @Transactional(readOnly = true)
     public boolean validateCaptcha(String captchaId, String captchaText) {
         if (captchaId == null || captchaText == null) {
             return false;
         }
 
-        LocalDateTime now = LocalDateTime.now();
-        Optional<Captcha> captchaOpt = captchaRepository.findValidCaptcha(
-                captchaId, 
-                captchaText.toUpperCase(), // Case-insensitive comparison
-                now
-        );
-
-        return captchaOpt.isPresent();
+        if (proofOfWorkService.isChallenge(captchaId)) {
+            return proofOfWorkService.isValid(captchaId, captchaText);
+        }
+        return captchaStore.isValid(captchaId, captchaText.toUpperCase()); // Case-insensitive comparison
     }
 
     /**
-     * Mark CAPTCHA as used after successful validation
+     * Validate and consume CAPTCHA in one atomic step
+     * A CAPTCHA can be redeemed exactly once, even under concurrent logins
+     * @param captchaId CAPTCHA ID
+     * @param captchaText CAPTCHA text (case-insensitive)
+     * @return true if the CAPTCHA was valid and is now used
      */
-    public void markCaptchaAsUsed(String captchaId, String captchaText) {
-        LocalDateTime now = LocalDateTime.now();
-        Optional<Captcha> captchaOpt = captchaRepository.findValidCaptcha(
-                captchaId,
-                captchaText.toUpperCase(),
-                now
-        );
+    public boolean consumeCaptcha(String captchaId, String captchaText) {
+        if (captchaId == null || captchaText == null) {
+            return false;
+        }
 
-        if (captchaOpt.isPresent()) {
-            captchaRepository.markAsUsed(captchaOpt.get().getId());
-            log.debug("CAPTCHA marked as used: {}", captchaId);
+        boolean consumed = proofOfWorkService.isChallenge(captchaId)
+                ? proofOfWorkService.consume(captchaId, captchaText)
+                : captchaStore.consume(captchaId, captchaText.toUpperCase());
+        if (consumed) {
+            log.debug("CAPTCHA consumed: {}", captchaId);
         }
+        return consumed;
     }
 
     /**
      * Generate random alphanumeric CAPTCHA text
      */
-    private String generateCaptchaText() {
+    static String generateCaptchaText() {
         StringBuilder captcha = new StringBuilder();
         for (int i = 0; i < CAPTCHA_LENGTH; i++) {
             captcha.append(ALPHANUMERIC.charAt(random.nextInt(ALPHANUMERIC.length())));
@@ -101,14 +110,11 @@ public class CaptchaService {
     }
 
     /**
-     * Clean up expired CAPTCHAs (runs every hour)
+     * Clean up expired CAPTCHAs (runs every minute by default, in bounded batches)
      */
-    @Scheduled(fixedRate = 3600000) // 1 hour in milliseconds
-    @Transactional
+    @Scheduled(fixedDelayString = "${app.cleanup.interval-ms:60000}")
     public void cleanupExpiredCaptchas() {
-        LocalDateTime now = LocalDateTime.now();
-        captchaRepository.deleteExpiredCaptchas(now);
+        captchaStore.purgeExpired();
         log.debug("Cleaned up expired CAPTCHAs");
     }
 }
-
@@ -0,0 +1,37 @@
+package in.gov.manipur.rccms.service;
+
+import java.time.Duration;
+
+/**
+ * CAPTCHA Store
+ * Storage abstraction behind CaptchaService.
+ * Implementations are selected with the app.captcha.store property.
+ */
+public interface CaptchaStore {
+
+    /**
+     * Store a new CAPTCHA
+     * @param captchaText expected answer (upper case)
+     * @param ipAddress IP address of the requester (for tracking)
+     * @param ttl time to live
+     * @return CAPTCHA ID handed to the client
+     */
+    String save(String captchaText, String ipAddress, Duration ttl);
+
+    /**
+     * Check whether an unused, unexpired CAPTCHA matches the given text
+     * without consuming it
+     */
+    boolean isValid(String captchaId, String captchaText);
+
+    /**
+     * Atomically check and consume a CAPTCHA
+     * @return true if the CAPTCHA was valid and is now used
+     */
+    boolean consume(String captchaId, String captchaText);
+
+    /**
+     * Remove expired CAPTCHAs
+     */
+    void purgeExpired();
+}
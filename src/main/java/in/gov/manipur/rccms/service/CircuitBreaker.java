@@ -0,0 +1,67 @@
+package in.gov.manipur.rccms.service;
+
+/**
+ * Circuit Breaker
+ * Opens after a run of consecutive failures and rejects calls until the open
+ * period has passed; then lets a single trial call through (half-open), which
+ * closes the circuit on success or re-opens it on failure.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openMillis * 1_000_000L;
+    }
+
+    /**
+     * Whether a call may proceed; a true result must be followed by recordSuccess or recordFailure
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt >= openNanos) {
+                    state = State.HALF_OPEN;
+                    return true;
+                }
+                return false;
+            default:
+                return false; // Trial call already in flight
+        }
+    }
+
+    /**
+     * Whether tryAcquire would currently let a call through (without claiming the trial call)
+     */
+    public synchronized boolean isCallPermitted() {
+        return state == State.CLOSED || (state == State.OPEN && System.nanoTime() - openedAt >= openNanos);
+    }
+
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+}
@@ -0,0 +1,40 @@
+package in.gov.manipur.rccms.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Console SMS Gateway (type: console)
+ * Mock implementation - logs SMS to console
+ */
+@Slf4j
+public class ConsoleSmsGateway implements SmsGateway {
+
+    @Override
+    public int maxBatchSize() {
+        return 1;
+    }
+
+    @Override
+    public List<Result> send(List<Message> messages) {
+        List<Result> results = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            log.info("");
+            log.info("╔════════════════════════════════════════════════════════════╗");
+            log.info("║                    DUMMY SMS (CONSOLE)                     ║");
+            log.info("╠════════════════════════════════════════════════════════════╣");
+            log.info("║ SEND ID: {}", String.format("%-47s", message.sendId()) + "║");
+            log.info("║ TO: {}", String.format("%-52s", message.mobileNumber()) + "║");
+            log.info("║ MESSAGE: {}", String.format("%-47s", message.text()) + "║");
+            log.info("╠════════════════════════════════════════════════════════════╣");
+            log.info("║ NOTE: This is a DUMMY SMS logged to console.              ║");
+            log.info("║       SMS API will be integrated later.                    ║");
+            log.info("╚════════════════════════════════════════════════════════════╝");
+            log.info("");
+            results.add(Result.accepted(message.sendId(), message.sendId()));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,165 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Crypto Executor
+ *
+ * Runs CPU-heavy crypto (BCrypt hashing and verification) on a dedicated pool
+ * sized to the cores, so a login burst cannot occupy every Tomcat thread with
+ * hashing while CAPTCHA, health and other calls starve. The pool has a bounded
+ * wait queue: when it is full, or a task has waited longer than max-wait-ms by
+ * the time a worker picks it up, the request is refused with 429 instead of
+ * queueing more work than the cores can finish.
+ *
+ * Callers block on their task, so every running or queued task holds a Tomcat
+ * thread. Threads plus queue may use at most half of server.tomcat.threads.max
+ * (checked at startup); the defaults are one thread per core and a queue of
+ * twice that, within the same bound.
+ *
+ * Exports queue depth, wait time, run time per operation and rejections.
+ */
+@Slf4j
+@Service
+public class CryptoExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final long maxWaitNanos;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> runTimes = new ConcurrentHashMap<>();
+    private final Timer waitTime;
+    private final Counter rejected;
+    private final Counter expired;
+
+    public CryptoExecutor(@Value("${app.crypto.threads:0}") int threads,
+                          @Value("${app.crypto.queue-capacity:0}") int queueCapacity,
+                          @Value("${app.crypto.max-wait-ms:2000}") long maxWaitMs,
+                          @Value("${server.tomcat.threads.max:200}") int requestThreads,
+                          MeterRegistry meterRegistry) {
+        int maxHeld = requestThreads / 2; // Request threads that may wait on crypto at once
+        int poolSize = threads > 0 ? threads : Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), maxHeld / 3));
+        if (queueCapacity <= 0) {
+            queueCapacity = Math.max(1, Math.min(2 * poolSize, maxHeld - poolSize));
+        }
+        if (poolSize + queueCapacity > maxHeld) {
+            throw new IllegalStateException("app.crypto.threads (" + poolSize + ") plus app.crypto.queue-capacity ("
+                    + queueCapacity + ") must not exceed half of server.tomcat.threads.max (" + requestThreads
+                    + "): callers wait on their task, so the rest of the API would run out of request threads");
+        }
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), task -> {
+                    Thread thread = new Thread(task, "crypto-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.meterRegistry = meterRegistry;
+
+        this.waitTime = Timer.builder("rccms.crypto.wait")
+                .description("Time crypto tasks spent queued before a worker picked them up")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("rccms.crypto.rejected")
+                .description("Crypto tasks refused because the queue was full")
+                .register(meterRegistry);
+        this.expired = Counter.builder("rccms.crypto.expired")
+                .description("Crypto tasks dropped because they waited longer than max-wait-ms")
+                .register(meterRegistry);
+        Gauge.builder("rccms.crypto.queue.depth", executor.getQueue(), BlockingQueue::size)
+                .description("Crypto tasks waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("rccms.crypto.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Crypto workers currently busy")
+                .register(meterRegistry);
+
+        log.info("Crypto executor initialised with {} threads and a queue of {}", poolSize, queueCapacity);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdown(); // Queued tasks still complete their callers
+    }
+
+    /**
+     * Run a crypto operation on the pool and wait for its result
+     * @param operation metric tag, e.g. bcrypt.matches
+     * @throws TooManyRequestsException if the pool is saturated
+     */
+    public <T> T call(String operation, Supplier<T> task) {
+        return await(submit(operation, task));
+    }
+
+    /**
+     * Wait for a submitted crypto operation, rethrowing its failure unwrapped
+     */
+    public <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Queue a crypto operation on the pool
+     * @param operation metric tag, e.g. bcrypt.encode
+     * @throws TooManyRequestsException if the queue is full
+     */
+    public <T> CompletableFuture<T> submit(String operation, Supplier<T> task) {
+        Timer runTime = runTimes.computeIfAbsent(operation, op -> Timer.builder("rccms.crypto.run")
+                .description("Time spent running crypto tasks")
+                .tag("operation", op)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry));
+        long queuedAt = System.nanoTime();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                long waited = System.nanoTime() - queuedAt;
+                waitTime.record(waited, TimeUnit.NANOSECONDS);
+                if (waited > maxWaitNanos) {
+                    expired.increment();
+                    future.completeExceptionally(busy());
+                    return;
+                }
+                try {
+                    future.complete(runTime.record(task));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw busy();
+        }
+        return future;
+    }
+
+    private static TooManyRequestsException busy() {
+        return new TooManyRequestsException("Server is busy. Please try again shortly.", 1);
+    }
+}
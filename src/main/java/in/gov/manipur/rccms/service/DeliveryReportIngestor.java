@@ -0,0 +1,181 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.dto.DeliveryReportDTO;
+import in.gov.manipur.rccms.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivery Report Ingestor
+ *
+ * SMS delivery reports (DLRs) arrive as many small webhook calls. They are
+ * acknowledged immediately and parked in a bounded queue; a background thread
+ * drains it and writes each batch to sms_outbox as one JDBC batch update
+ * (matched on provider_message_id). Within a batch only the latest report per
+ * message is written. A request is queued as a whole or not at all: when its
+ * reports do not fit, the webhook answers 429 and the provider retries the
+ * whole request later, so reports are neither lost silently nor queued twice.
+ *
+ * Queued reports are lost on a crash (they were already acknowledged); that only
+ * leaves a gap in delivery statistics, which is accepted.
+ */
+@Slf4j
+@Service
+public class DeliveryReportIngestor {
+
+    private static final int MAX_STATUS_LENGTH = 20;
+    private static final String UPDATE_SQL =
+            "UPDATE sms_outbox SET delivery_status = ?, delivered_at = ? WHERE provider_message_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingQueue<DeliveryReportDTO> queue;
+    private final Semaphore freeSlots; // Reserved for a whole request before any of it is queued
+    private final int flushSize;
+    private final long flushIntervalMs;
+    private final DistributionSummary flushSizes;
+    private final Timer flushLatency;
+    private final Counter rejected;
+    private final Counter unmatched;
+    private Thread flusher;
+
+    public DeliveryReportIngestor(JdbcTemplate jdbcTemplate,
+                                  @Value("${app.sms.dlr.queue-capacity:100000}") int queueCapacity,
+                                  @Value("${app.sms.dlr.flush-size:1000}") int flushSize,
+                                  @Value("${app.sms.dlr.flush-interval-ms:500}") long flushIntervalMs,
+                                  MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.freeSlots = new Semaphore(queueCapacity);
+        this.flushSize = flushSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.flushSizes = DistributionSummary.builder("rccms.sms.dlr.flush.size")
+                .description("Delivery reports written per flush")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.flushLatency = Timer.builder("rccms.sms.dlr.flush.latency")
+                .description("Time to write one batch of delivery reports")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("rccms.sms.dlr.rejected")
+                .description("Delivery reports refused because the queue was full")
+                .register(meterRegistry);
+        this.unmatched = Counter.builder("rccms.sms.dlr.unmatched")
+                .description("Delivery reports with no matching sent message")
+                .register(meterRegistry);
+        Gauge.builder("rccms.sms.dlr.queue.depth", queue, BlockingQueue::size)
+                .description("Delivery reports waiting to be written")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        flusher = new Thread(this::run, "sms-dlr-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        flusher.interrupt();
+    }
+
+    /**
+     * Queue delivery reports for the next flush, all or none
+     * Reports without a message id or status are skipped.
+     * @return number of reports accepted
+     * @throws TooManyRequestsException if the reports do not fit in the queue; none of them were queued
+     */
+    public int submit(List<DeliveryReportDTO> reports) {
+        List<DeliveryReportDTO> valid = new ArrayList<>(reports.size());
+        for (DeliveryReportDTO report : reports) {
+            if (report != null && !isBlank(report.getMessageId()) && !isBlank(report.getStatus())) {
+                valid.add(report);
+            }
+        }
+        if (valid.isEmpty()) {
+            return 0;
+        }
+        if (!freeSlots.tryAcquire(valid.size())) {
+            rejected.increment(valid.size());
+            throw new TooManyRequestsException("Delivery report queue is full. Please retry later.");
+        }
+        queue.addAll(valid); // Fits: the slots are reserved
+        return valid.size();
+    }
+
+    private void run() {
+        List<DeliveryReportDTO> batch = new ArrayList<>(flushSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                DeliveryReportDTO first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, flushSize - 1);
+                freeSlots.release(batch.size());
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("Failed to write {} delivery reports", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<DeliveryReportDTO> batch) {
+        // Latest report per message wins
+        Map<String, DeliveryReportDTO> latest = new LinkedHashMap<>();
+        for (DeliveryReportDTO report : batch) {
+            latest.put(report.getMessageId(), report);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> args = new ArrayList<>(latest.size());
+        for (DeliveryReportDTO report : latest.values()) {
+            String status = report.getStatus().trim().toUpperCase(Locale.ROOT);
+            args.add(new Object[]{
+                    status.length() > MAX_STATUS_LENGTH ? status.substring(0, MAX_STATUS_LENGTH) : status,
+                    Timestamp.valueOf(report.getDeliveredAt() != null ? report.getDeliveredAt() : now),
+                    report.getMessageId()
+            });
+        }
+
+        int[] counts = flushLatency.record(() -> jdbcTemplate.batchUpdate(UPDATE_SQL, args));
+        long matched = 0;
+        for (int count : counts) {
+            matched += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+        }
+        flushSizes.record(args.size());
+        unmatched.increment(Math.max(0, args.size() - matched));
+        log.debug("Wrote {} delivery reports ({} matched)", args.size(), matched);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
@@ -1,49 +1,142 @@
 package in.gov.manipur.rccms.service;
 
+import in.gov.manipur.rccms.config.EncryptionProperties;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
 
 /**
  * Encryption Service for sensitive data (Aadhaar numbers)
- * Uses AES encryption for data at rest
- * 
+ * Uses AES-GCM with a random IV per value for data at rest, so equal
+ * plaintexts never produce equal ciphertexts. Equality lookups and uniqueness
+ * use a separate blind index: HMAC-SHA256 under its own key.
+ *
+ * Values written before the switch to GCM used AES/ECB; the legacy methods
+ * remain only for AadharMigrationService, which converts those rows.
+ *
+ * Keys are versioned (app.encryption.keys.<version>). New values use the
+ * active version, which the caller stores next to the ciphertext; decryption
+ * picks the key by that version from the keyring. After a new version is
+ * activated, KeyRotationService re-encrypts older rows in the background, and
+ * the old key can be removed once none remain.
+ *
+ * Keys are derived once at startup, and each thread keeps its own Cipher and
+ * Mac instances (they are not thread-safe), re-initialised per call. Bulk
+ * callers (reports, migrations) use encryptAll/decryptAll, which split the
+ * values into chunks processed in parallel on a small pool sized to the cores.
+ *
  * Note: In production, use a proper key management system (KMS) or environment-based keys
  */
 @Service
 public class EncryptionService {
 
     private static final String ALGORITHM = "AES";
-    private static final String TRANSFORMATION = "AES";
-    
-    // Default key - In production, this should be from environment variable or KMS
-    @Value("${app.encryption.key:MySecretKey12345}")
-    private String encryptionKey;
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final String LEGACY_TRANSFORMATION = "AES"; // AES/ECB/PKCS5Padding
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final int BULK_CHUNK_SIZE = 256;
+
+    private final SecureRandom random = new SecureRandom();
+    private final TreeMap<Integer, SecretKeySpec> keyring = new TreeMap<>();
+    private final int activeKeyVersion;
+    private final SecretKeySpec secretKey;
+    private final SecretKeySpec legacyKey;
+    private final SecretKeySpec blindIndexKey;
+    private final ThreadLocal<Cipher> cipher = ThreadLocal.withInitial(() -> newCipher(TRANSFORMATION));
+    private final ThreadLocal<Cipher> legacyCipher = ThreadLocal.withInitial(() -> newCipher(LEGACY_TRANSFORMATION));
+    private final ThreadLocal<Mac> mac;
+    private final ExecutorService bulkExecutor;
+
+    // Default keys - In production, these should be from environment variables or KMS
+    public EncryptionService(@Value("${app.encryption.key:MySecretKey12345}") String encryptionKey,
+                             @Value("${app.encryption.blind-index-key:MySecretKeyForAadharBlindIndex1234567890}")
+                             String blindIndexKey,
+                             EncryptionProperties properties) {
+        // Version 1 and the legacy AES/ECB rows share app.encryption.key; a different keys.1 would split them
+        String versionOneKey = properties.getKeys().get(1);
+        if (versionOneKey != null && !versionOneKey.equals(encryptionKey)) {
+            throw new IllegalStateException("app.encryption.keys.1 differs from app.encryption.key; "
+                    + "version 1 is always app.encryption.key, remove keys.1 or make them equal");
+        }
+        this.legacyKey = new SecretKeySpec(getKeyBytes(encryptionKey), ALGORITHM);
+        keyring.put(1, legacyKey);
+        properties.getKeys().forEach((version, key) -> keyring.put(version, new SecretKeySpec(getKeyBytes(key), ALGORITHM)));
+        this.activeKeyVersion = properties.getActiveKeyVersion() > 0
+                ? properties.getActiveKeyVersion() : keyring.lastKey();
+        this.secretKey = keyring.get(activeKeyVersion);
+        if (secretKey == null) {
+            throw new IllegalStateException("app.encryption.active-key-version " + activeKeyVersion + " has no key");
+        }
+        this.blindIndexKey = new SecretKeySpec(blindIndexKey.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance(HMAC_ALGORITHM);
+                instance.init(this.blindIndexKey);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC-SHA256 not available", e);
+            }
+        });
+        AtomicInteger counter = new AtomicInteger();
+        this.bulkExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+            Thread thread = new Thread(task, "encryption-bulk-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        bulkExecutor.shutdown();
+    }
 
     /**
-     * Encrypt sensitive data (Aadhaar number)
+     * Key version used by encrypt/encryptAll (store it with the ciphertext)
+     */
+    public int activeKeyVersion() {
+        return activeKeyVersion;
+    }
+
+    /**
+     * Encrypt sensitive data (Aadhaar number) with the active key version
      * @param plainText the text to encrypt
-     * @return encrypted Base64 string
+     * @return encrypted Base64 string (IV followed by ciphertext and tag)
      */
     public String encrypt(String plainText) {
         if (plainText == null || plainText.isEmpty()) {
             return null;
         }
-        
+
         try {
-            // Ensure key is 16 bytes for AES-128
-            byte[] keyBytes = getKeyBytes();
-            SecretKeySpec secretKey = new SecretKeySpec(keyBytes, ALGORITHM);
-            
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-            
-            byte[] encryptedBytes = cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(encryptedBytes);
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            Cipher instance = cipher.get();
+            instance.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(TAG_BITS, iv));
+
+            byte[] encryptedBytes = instance.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(ByteBuffer.allocate(IV_LENGTH + encryptedBytes.length)
+                    .put(iv).put(encryptedBytes).array());
         } catch (Exception e) {
             throw new RuntimeException("Error encrypting data", e);
         }
@@ -52,36 +145,127 @@ public class EncryptionService {
     /**
      * Decrypt sensitive data (Aadhaar number)
      * @param encryptedText the encrypted Base64 string
+     * @param keyVersion version it was encrypted with (rows from before versioning are version 1)
      * @return decrypted plain text
      */
-    public String decrypt(String encryptedText) {
+    public String decrypt(String encryptedText, int keyVersion) {
         if (encryptedText == null || encryptedText.isEmpty()) {
             return null;
         }
-        
+        SecretKeySpec key = keyring.get(keyVersion);
+        if (key == null) {
+            throw new IllegalStateException("No encryption key configured for version " + keyVersion);
+        }
+
         try {
-            byte[] keyBytes = getKeyBytes();
-            SecretKeySpec secretKey = new SecretKeySpec(keyBytes, ALGORITHM);
-            
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey);
-            
-            byte[] decryptedBytes = cipher.doFinal(Base64.getDecoder().decode(encryptedText));
+            byte[] encrypted = Base64.getDecoder().decode(encryptedText);
+            Cipher instance = cipher.get();
+            instance.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, encrypted, 0, IV_LENGTH));
+
+            byte[] decryptedBytes = instance.doFinal(encrypted, IV_LENGTH, encrypted.length - IV_LENGTH);
             return new String(decryptedBytes, StandardCharsets.UTF_8);
         } catch (Exception e) {
             throw new RuntimeException("Error decrypting data", e);
         }
     }
 
+    /**
+     * Encrypt many values in parallel chunks
+     * @return ciphertexts in the order of the input (null for null or empty values)
+     */
+    public List<String> encryptAll(List<String> plainTexts) {
+        return processAll(plainTexts, this::encrypt);
+    }
+
+    /**
+     * Decrypt many values encrypted with one key version in parallel chunks
+     * @return plain texts in the order of the input (null for null or empty values)
+     */
+    public List<String> decryptAll(List<String> encryptedTexts, int keyVersion) {
+        return processAll(encryptedTexts, encryptedText -> decrypt(encryptedText, keyVersion));
+    }
+
+    /**
+     * Blind index of sensitive data, for equality lookups and unique constraints
+     * @return HMAC-SHA256 of the value (32 bytes)
+     */
+    public byte[] blindIndex(String plainText) {
+        return mac.get().doFinal(plainText.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Encrypt with the legacy deterministic AES/ECB scheme
+     * Only used to find not yet migrated rows holding the same value
+     */
+    String encryptLegacy(String plainText) {
+        try {
+            Cipher instance = legacyCipher.get();
+            instance.init(Cipher.ENCRYPT_MODE, legacyKey);
+            return Base64.getEncoder().encodeToString(instance.doFinal(plainText.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new RuntimeException("Error encrypting data", e);
+        }
+    }
+
+    /**
+     * Decrypt a value written with the legacy AES/ECB scheme
+     */
+    String decryptLegacy(String encryptedText) {
+        try {
+            Cipher instance = legacyCipher.get();
+            instance.init(Cipher.DECRYPT_MODE, legacyKey);
+            return new String(instance.doFinal(Base64.getDecoder().decode(encryptedText)), StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            throw new RuntimeException("Error decrypting data", e);
+        }
+    }
+
+    /**
+     * Apply an operation to every value; the last chunk runs on the calling thread
+     */
+    private List<String> processAll(List<String> values, UnaryOperator<String> operation) {
+        List<String> results = new ArrayList<>(values.size());
+        if (values.size() <= BULK_CHUNK_SIZE) {
+            values.forEach(value -> results.add(operation.apply(value)));
+            return results;
+        }
+
+        List<CompletableFuture<List<String>>> chunks = new ArrayList<>();
+        int last = (values.size() - 1) / BULK_CHUNK_SIZE * BULK_CHUNK_SIZE;
+        for (int from = 0; from < last; from += BULK_CHUNK_SIZE) {
+            List<String> chunk = values.subList(from, from + BULK_CHUNK_SIZE);
+            chunks.add(CompletableFuture.supplyAsync(() -> chunk.stream().map(operation).toList(), bulkExecutor));
+        }
+        List<String> tail = values.subList(last, values.size()).stream().map(operation).toList();
+
+        try {
+            chunks.forEach(chunk -> results.addAll(chunk.join()));
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        results.addAll(tail);
+        return results;
+    }
+
+    private static Cipher newCipher(String transformation) {
+        try {
+            return Cipher.getInstance(transformation);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(transformation + " not available", e);
+        }
+    }
+
     /**
      * Get key bytes (16 bytes for AES-128)
      * In production, this should use a proper key derivation function
      */
-    private byte[] getKeyBytes() {
+    private static byte[] getKeyBytes(String encryptionKey) {
         byte[] key = encryptionKey.getBytes(StandardCharsets.UTF_8);
         byte[] keyBytes = new byte[16];
         System.arraycopy(key, 0, keyBytes, 0, Math.min(key.length, 16));
         return keyBytes;
     }
 }
-
@@ -0,0 +1,209 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.repository.CaptchaRepository;
+import in.gov.manipur.rccms.repository.OtpRepository;
+import in.gov.manipur.rccms.repository.SmsOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
+
+/**
+ * Expired Row Cleanup Service
+ *
+ * Deletes expired and used rows from the captchas and otps tables, and sent or
+ * failed messages past their retention from sms_outbox, in small
+ * keyset batches, each in its own short transaction. Rows are locked with
+ * FOR UPDATE SKIP LOCKED, so concurrent cleanups on several nodes never wait
+ * on each other. A rows-per-second budget and a maximum run time keep the
+ * cleanup from competing with login traffic; anything left over is picked up
+ * by the next run and reported as backlog.
+ *
+ * With the partitioned layout (app.partitioning.enabled) expired captchas and
+ * otps go away with their partition, so their cleanup is skipped.
+ */
+@Slf4j
+@Service
+public class ExpiredRowCleanupService {
+
+    private final CaptchaRepository captchaRepository;
+    private final OtpRepository otpRepository;
+    private final SmsOutboxRepository smsOutboxRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final CleanupMetrics captchaMetrics;
+    private final CleanupMetrics otpMetrics;
+    private final CleanupMetrics smsOutboxMetrics;
+
+    @Value("${app.cleanup.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.cleanup.rows-per-second:5000}")
+    private int rowsPerSecond;
+
+    @Value("${app.cleanup.max-run-seconds:50}")
+    private int maxRunSeconds;
+
+    @Value("${app.partitioning.enabled:false}")
+    private boolean partitioned;
+
+    @Value("${app.sms.outbox.retention-hours:24}")
+    private int smsRetentionHours;
+
+    public ExpiredRowCleanupService(CaptchaRepository captchaRepository,
+                                    OtpRepository otpRepository,
+                                    SmsOutboxRepository smsOutboxRepository,
+                                    PlatformTransactionManager transactionManager,
+                                    MeterRegistry meterRegistry) {
+        this.captchaRepository = captchaRepository;
+        this.otpRepository = otpRepository;
+        this.smsOutboxRepository = smsOutboxRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.captchaMetrics = new CleanupMetrics("captchas", meterRegistry);
+        this.otpMetrics = new CleanupMetrics("otps", meterRegistry);
+        this.smsOutboxMetrics = new CleanupMetrics("sms_outbox", meterRegistry);
+    }
+
+    /**
+     * Delete expired and used CAPTCHAs
+     * @return rows deleted
+     */
+    public long cleanupCaptchas() {
+        if (skipPartitioned("captchas")) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        return cleanup("captchas", captchaMetrics,
+                afterId -> captchaRepository.lockExpiredBatch(afterId, now, batchSize),
+                captchaRepository::deleteAllByIdInBatch,
+                () -> captchaRepository.countExpired(now));
+    }
+
+    /**
+     * Delete expired and used OTPs
+     * @return rows deleted
+     */
+    public long cleanupOtps() {
+        if (skipPartitioned("otps")) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        return cleanup("otps", otpMetrics,
+                afterId -> otpRepository.lockExpiredBatch(afterId, now, batchSize),
+                otpRepository::deleteAllByIdInBatch,
+                () -> otpRepository.countExpired(now));
+    }
+
+    /**
+     * Delete sent and failed SMS outbox rows past the retention period
+     * @return rows deleted
+     */
+    public long cleanupSmsOutbox() {
+        LocalDateTime before = LocalDateTime.now().minusHours(smsRetentionHours);
+        return cleanup("sms_outbox", smsOutboxMetrics,
+                afterId -> smsOutboxRepository.lockFinishedBatch(afterId, before, batchSize),
+                smsOutboxRepository::deleteAllByIdInBatch,
+                () -> smsOutboxRepository.countFinished(before));
+    }
+
+    private boolean skipPartitioned(String table) {
+        if (partitioned) {
+            log.debug("Skipping cleanup of {}: expired partitions are dropped by PartitionMaintenanceService", table);
+        }
+        return partitioned;
+    }
+
+    private long cleanup(String table,
+                         CleanupMetrics metrics,
+                         LongFunction<List<Long>> lockBatch,
+                         Consumer<List<Long>> deleteBatch,
+                         LongSupplier countBacklog) {
+        long deadline = System.nanoTime() + maxRunSeconds * 1_000_000_000L;
+        long nanosPerBatch = 1_000_000_000L * batchSize / Math.max(1, rowsPerSecond);
+        long afterId = 0;
+        long total = 0;
+        boolean drained = false;
+
+        while (System.nanoTime() < deadline) {
+            long batchStart = System.nanoTime();
+            long keyset = afterId;
+            List<Long> ids = metrics.batchLatency.record(() -> transactionTemplate.execute(status -> {
+                List<Long> locked = lockBatch.apply(keyset);
+                if (!locked.isEmpty()) {
+                    deleteBatch.accept(locked);
+                }
+                return locked;
+            }));
+
+            if (ids == null || ids.isEmpty()) {
+                drained = true;
+                break;
+            }
+            afterId = ids.get(ids.size() - 1);
+            total += ids.size();
+            metrics.rowsDeleted.increment(ids.size());
+            if (ids.size() < batchSize) {
+                drained = true;
+                break;
+            }
+            throttle(batchStart, nanosPerBatch);
+        }
+
+        // Only pay for a COUNT when the run stopped on its time budget
+        metrics.backlog = drained ? 0 : countBacklog.getAsLong();
+        log.debug("Cleanup of {} deleted {} rows (backlog: {})", table, total, metrics.backlog);
+        return total;
+    }
+
+    /**
+     * Sleep for the rest of the batch's share of the rows-per-second budget
+     */
+    private void throttle(long batchStart, long nanosPerBatch) {
+        long remaining = nanosPerBatch - (System.nanoTime() - batchStart);
+        if (remaining <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(remaining / 1_000_000, (int) (remaining % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Per-table cleanup meters
+     */
+    private static final class CleanupMetrics {
+        private final Counter rowsDeleted;
+        private final Timer batchLatency;
+        private volatile long backlog;
+
+        private CleanupMetrics(String table, MeterRegistry meterRegistry) {
+            this.rowsDeleted = Counter.builder("rccms.cleanup.rows.deleted")
+                    .description("Expired or used rows deleted by the batched cleanup")
+                    .tag("table", table)
+                    .register(meterRegistry);
+            this.batchLatency = Timer.builder("rccms.cleanup.batch.latency")
+                    .description("Time to lock and delete one cleanup batch")
+                    .tag("table", table)
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+            Gauge.builder("rccms.cleanup.backlog", this, m -> m.backlog)
+                    .description("Expired or used rows left after the last cleanup run")
+                    .tag("table", table)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package in.gov.manipur.rccms.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import in.gov.manipur.rccms.exception.SmsGatewayException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HTTP SMS Gateway (type: http)
+ *
+ * Posts to a JSON bulk-send endpoint:
+ *   request:  {"sender": "...", "messages": [{"id": sendId, "to": mobile, "text": "..."}]}
+ *   response: {"results": [{"id": sendId, "status": "accepted|rejected", "messageId": "...", "error": "..."}]}
+ * Provider-specific payloads are mapped by the provider's own adapter in front of
+ * this contract or by a dedicated SmsGateway implementation.
+ *
+ * One HttpClient per provider: it keeps connections alive and pools them, and
+ * negotiates HTTP/2 so concurrent sends are multiplexed over a few connections
+ * instead of opening a TLS connection per OTP.
+ */
+public class HttpSmsGateway implements SmsGateway {
+
+    private final String name;
+    private final URI uri;
+    private final String apiKey;
+    private final String senderId;
+    private final int batchSize;
+    private final Duration timeout;
+    private final HttpClient client;
+    private final ObjectMapper objectMapper;
+
+    public HttpSmsGateway(String name, String url, String apiKey, String senderId, int batchSize,
+                          Duration connectTimeout, Duration timeout, ObjectMapper objectMapper) {
+        if (url == null || url.isBlank()) {
+            throw new IllegalStateException("SMS provider " + name + " has no url configured");
+        }
+        this.name = name;
+        this.uri = URI.create(url);
+        this.apiKey = apiKey;
+        this.senderId = senderId;
+        this.batchSize = batchSize;
+        this.timeout = timeout;
+        this.objectMapper = objectMapper;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    @Override
+    public int maxBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public List<Result> send(List<Message> messages) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(requestBody(messages)));
+        if (apiKey != null && !apiKey.isBlank()) {
+            request.header("Authorization", "Bearer " + apiKey);
+        }
+        if (messages.size() == 1) {
+            request.header("Idempotency-Key", messages.get(0).sendId());
+        }
+
+        HttpResponse<String> response;
+        try {
+            response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            throw new SmsGatewayException(name + ": " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SmsGatewayException(name + ": interrupted", e);
+        }
+        if (response.statusCode() / 100 != 2) {
+            throw new SmsGatewayException(name + ": HTTP " + response.statusCode());
+        }
+        return parseResults(messages, response.body());
+    }
+
+    private String requestBody(List<Message> messages) {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("sender", senderId);
+        ArrayNode items = body.putArray("messages");
+        for (Message message : messages) {
+            items.addObject()
+                    .put("id", message.sendId())
+                    .put("to", message.mobileNumber())
+                    .put("text", message.text());
+        }
+        return body.toString();
+    }
+
+    private List<Result> parseResults(List<Message> messages, String body) {
+        Map<String, JsonNode> bySendId = new HashMap<>();
+        try {
+            for (JsonNode result : objectMapper.readTree(body).path("results")) {
+                bySendId.put(result.path("id").asText(), result);
+            }
+        } catch (IOException e) {
+            throw new SmsGatewayException(name + ": unreadable response", e);
+        }
+
+        List<Result> results = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            JsonNode result = bySendId.get(message.sendId());
+            if (result == null) {
+                results.add(Result.rejected(message.sendId(), name + ": no result for message"));
+            } else if ("accepted".equalsIgnoreCase(result.path("status").asText())) {
+                results.add(Result.accepted(message.sendId(), result.path("messageId").asText(null)));
+            } else {
+                results.add(Result.rejected(message.sendId(), name + ": " + result.path("error").asText("rejected")));
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,187 @@
+package in.gov.manipur.rccms.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * In-memory CAPTCHA store (default on a single node)
+ *
+ * CAPTCHAs live for a few minutes only, so they are kept in a fixed number of
+ * lock-striped shards instead of the captchas table:
+ * - O(1) lookup by captchaId
+ * - atomic consume (check and remove under the shard lock)
+ * - size-based eviction of the oldest entries when a shard is full
+ * - hit/miss/eviction counters exported through Micrometer
+ *
+ * Every shard is insertion ordered and all CAPTCHAs share the same TTL,
+ * so expired entries are always at the head of a shard.
+ *
+ * A CAPTCHA only exists on the node that issued it, so behind a load balancer
+ * this store needs sticky sessions. With app.rate-limit.mode=cluster the jpa
+ * store is the default instead; choosing memory explicitly there logs a warning.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("'${app.captcha.store:}' == 'memory' or "
+        + "('${app.captcha.store:}' == '' and '${app.rate-limit.mode:local}' != 'cluster')")
+public class InMemoryCaptchaStore implements CaptchaStore {
+
+    private final Shard[] shards;
+    private final int shardMask;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public InMemoryCaptchaStore(@Value("${app.captcha.memory.shards:16}") int shardCount,
+                                @Value("${app.captcha.memory.max-entries:200000}") int maxEntries,
+                                @Value("${app.rate-limit.mode:local}") String rateLimitMode,
+                                MeterRegistry meterRegistry) {
+        if ("cluster".equals(rateLimitMode)) {
+            log.warn("app.captcha.store=memory with app.rate-limit.mode=cluster: a CAPTCHA can only be redeemed on "
+                    + "the node that issued it, so the load balancer must keep each client on one node");
+        }
+        int size = 1;
+        while (size < shardCount) {
+            size <<= 1; // Round up to a power of two for mask-based shard selection
+        }
+        this.shards = new Shard[size];
+        this.shardMask = size - 1;
+        int perShard = Math.max(1, maxEntries / size);
+        for (int i = 0; i < size; i++) {
+            shards[i] = new Shard(perShard);
+        }
+
+        this.hits = Counter.builder("rccms.captcha.store.hits")
+                .description("CAPTCHA lookups that found a valid entry")
+                .register(meterRegistry);
+        this.misses = Counter.builder("rccms.captcha.store.misses")
+                .description("CAPTCHA lookups that found no valid entry")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("rccms.captcha.store.evictions")
+                .description("CAPTCHAs evicted before expiry because the store was full")
+                .register(meterRegistry);
+        Gauge.builder("rccms.captcha.store.size", this, InMemoryCaptchaStore::size)
+                .description("CAPTCHAs currently held in memory")
+                .register(meterRegistry);
+
+        log.info("In-memory CAPTCHA store initialised with {} shards of {} entries", size, perShard);
+    }
+
+    @Override
+    public String save(String captchaText, String ipAddress, Duration ttl) {
+        String captchaId = UUID.randomUUID().toString();
+        long expiresAt = System.currentTimeMillis() + ttl.toMillis();
+        Shard shard = shardFor(captchaId);
+        synchronized (shard) {
+            shard.entries.put(captchaId, new Entry(captchaText, expiresAt));
+        }
+        return captchaId;
+    }
+
+    @Override
+    public boolean isValid(String captchaId, String captchaText) {
+        Shard shard = shardFor(captchaId);
+        boolean valid;
+        synchronized (shard) {
+            valid = matches(shard.entries.get(captchaId), captchaText);
+        }
+        record(valid);
+        return valid;
+    }
+
+    @Override
+    public boolean consume(String captchaId, String captchaText) {
+        Shard shard = shardFor(captchaId);
+        boolean valid;
+        synchronized (shard) {
+            valid = matches(shard.entries.get(captchaId), captchaText);
+            if (valid) {
+                shard.entries.remove(captchaId);
+            }
+        }
+        record(valid);
+        return valid;
+    }
+
+    @Override
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                Iterator<Entry> it = shard.entries.values().iterator();
+                while (it.hasNext() && it.next().expiresAt <= now) {
+                    it.remove();
+                    removed++;
+                }
+            }
+        }
+        log.debug("Purged {} expired CAPTCHAs from memory", removed);
+    }
+
+    /**
+     * Number of CAPTCHAs currently held (including expired ones not yet purged)
+     */
+    public int size() {
+        int total = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                total += shard.entries.size();
+            }
+        }
+        return total;
+    }
+
+    private boolean matches(Entry entry, String captchaText) {
+        return entry != null
+                && entry.expiresAt > System.currentTimeMillis()
+                && entry.captchaText.equals(captchaText);
+    }
+
+    private void record(boolean hit) {
+        if (hit) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+    }
+
+    private Shard shardFor(String captchaId) {
+        int h = captchaId.hashCode();
+        return shards[(h ^ (h >>> 16)) & shardMask];
+    }
+
+    private record Entry(String captchaText, long expiresAt) {
+    }
+
+    /**
+     * One lock stripe: an insertion-ordered map capped at maxEntries
+     */
+    private final class Shard {
+        private final LinkedHashMap<String, Entry> entries;
+
+        private Shard(int maxEntries) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    if (size() > maxEntries) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.entity.Otp;
+import in.gov.manipur.rccms.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * In-memory OTP store (app.otp.store=memory, single node only)
+ *
+ * Keeps outstanding OTPs off the database:
+ * - open-addressing table keyed by the mobile number as a primitive long,
+ *   with parallel primitive arrays (no per-entry objects, 34 bytes per slot)
+ * - one OTP per mobile number; a new OTP replaces the previous one
+ * - only the first 64 bits of the keyed hash are kept
+ * - wrong codes count against the OTP, which is discarded after max-attempts
+ * - expiry is driven by a hierarchical timing wheel ticking once per second
+ *
+ * Capacity is fixed at start-up (max-entries at a load factor of 0.5), so the
+ * table never resizes; when it is full new OTPs are rejected.
+ * Entries are lost on restart, which only means users request a new OTP.
+ * For the same reason OtpService sends their SMS without an sms_outbox row
+ * (see SmsDispatcher.sendUnqueued), so issuing an OTP writes nothing to the
+ * database. The registered-user check in OtpService.generateOtp still reads
+ * the users table (after the membership filter); it guards who may receive
+ * an OTP and is independent of where the OTP is kept.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.otp.store", havingValue = "memory")
+public class InMemoryOtpStore implements OtpStore {
+
+    private static final long EMPTY = 0L; // Mobile numbers never parse to 0
+
+    private final long[] keys;
+    private final long[] codeHashes;
+    private final long[] expiresAt;
+    private final long[] issuedAt;
+    private final byte[] userTypes;
+    private final byte[] attempts;
+    private final int mask;
+    private final int maxEntries;
+    private final int maxAttempts;
+    private final TimingWheel timingWheel;
+    private int size;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter rejected;
+
+    @Override
+    public boolean isDurable() {
+        return false;
+    }
+
+    public InMemoryOtpStore(@Value("${app.otp.memory.max-entries:100000}") int maxEntries,
+                            @Value("${app.otp.memory.max-attempts:5}") int maxAttempts,
+                            MeterRegistry meterRegistry) {
+        int capacity = 2;
+        while (capacity < maxEntries * 2) {
+            capacity <<= 1; // Power of two, at most half full
+        }
+        this.keys = new long[capacity];
+        this.codeHashes = new long[capacity];
+        this.expiresAt = new long[capacity];
+        this.issuedAt = new long[capacity];
+        this.userTypes = new byte[capacity];
+        this.attempts = new byte[capacity];
+        this.mask = capacity - 1;
+        this.maxEntries = maxEntries;
+        this.maxAttempts = maxAttempts;
+        this.timingWheel = new TimingWheel(1000, 3, System.currentTimeMillis());
+
+        this.hits = Counter.builder("rccms.otp.store.hits")
+                .description("OTP checks that matched a valid entry")
+                .register(meterRegistry);
+        this.misses = Counter.builder("rccms.otp.store.misses")
+                .description("OTP checks that matched no valid entry")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("rccms.otp.store.rejected")
+                .description("OTPs rejected because the store was full")
+                .register(meterRegistry);
+        Gauge.builder("rccms.otp.store.size", this, InMemoryOtpStore::size)
+                .description("OTPs currently held in memory")
+                .register(meterRegistry);
+        Gauge.builder("rccms.otp.store.memory", this, InMemoryOtpStore::sizeInBytes)
+                .description("Memory held by the OTP table and timing wheel")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        log.info("In-memory OTP store initialised: {} slots for {} OTPs, {} KB",
+                capacity, maxEntries, sizeInBytes() / 1024);
+    }
+
+    @Override
+    public synchronized void save(String mobileNumber, Otp.UserType userType, String otpCodeHash, Duration ttl) {
+        long key = toKey(mobileNumber);
+        int slot = find(key);
+        if (slot < 0) {
+            if (size >= maxEntries) {
+                rejected.increment();
+                log.warn("In-memory OTP store full ({} entries), rejecting OTP", size);
+                throw new TooManyRequestsException("OTP service is busy. Please try again shortly.");
+            }
+            slot = ~slot;
+            keys[slot] = key;
+            size++;
+        }
+        long now = System.currentTimeMillis();
+        long expiry = now + ttl.toMillis();
+        codeHashes[slot] = truncate(otpCodeHash);
+        expiresAt[slot] = expiry;
+        issuedAt[slot] = now;
+        userTypes[slot] = (byte) userType.ordinal();
+        attempts[slot] = 0;
+        timingWheel.schedule(key, expiry);
+    }
+
+    @Override
+    public synchronized boolean exists(String mobileNumber, Otp.UserType userType, String otpCodeHash) {
+        int slot = match(mobileNumber, userType, otpCodeHash);
+        return record(slot >= 0);
+    }
+
+    @Override
+    public synchronized boolean hasRecent(String mobileNumber, Otp.UserType userType, Duration window) {
+        int slot = find(toKey(mobileNumber));
+        long now = System.currentTimeMillis();
+        return slot >= 0
+                && userTypes[slot] == userType.ordinal()
+                && expiresAt[slot] > now
+                && issuedAt[slot] > now - window.toMillis();
+    }
+
+    @Override
+    public synchronized boolean consume(String mobileNumber, Otp.UserType userType, String otpCodeHash) {
+        int slot = match(mobileNumber, userType, otpCodeHash);
+        if (slot >= 0) {
+            remove(slot);
+        }
+        return record(slot >= 0);
+    }
+
+    /**
+     * Expiry runs off the timing wheel; nothing to scan here
+     */
+    @Override
+    public void purgeExpired() {
+    }
+
+    /**
+     * Advance the timing wheel and drop OTPs that have expired
+     */
+    @Scheduled(fixedRate = 1000)
+    public synchronized void tick() {
+        long now = System.currentTimeMillis();
+        timingWheel.advance(now, (key, scheduledExpiry) -> {
+            int slot = find(key);
+            // A replaced OTP leaves a stale wheel entry; only the live expiry counts
+            if (slot >= 0 && expiresAt[slot] <= now) {
+                remove(slot);
+            }
+        });
+    }
+
+    /**
+     * Number of OTPs currently held
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Memory held by the table and timing wheel in bytes
+     */
+    public synchronized long sizeInBytes() {
+        long perSlot = 4L * Long.BYTES + 2;
+        return keys.length * perSlot + timingWheel.sizeInBytes();
+    }
+
+    /**
+     * Slot of a valid OTP matching the given hash, or -1.
+     * A wrong code counts as an attempt against the outstanding OTP.
+     */
+    private int match(String mobileNumber, Otp.UserType userType, String otpCodeHash) {
+        int slot = find(toKey(mobileNumber));
+        if (slot < 0 || userTypes[slot] != userType.ordinal()) {
+            return -1;
+        }
+        if (expiresAt[slot] <= System.currentTimeMillis()) {
+            remove(slot);
+            return -1;
+        }
+        if (codeHashes[slot] != truncate(otpCodeHash)) {
+            if (++attempts[slot] >= maxAttempts) {
+                log.warn("OTP discarded after {} failed attempts", maxAttempts);
+                remove(slot);
+            }
+            return -1;
+        }
+        return slot;
+    }
+
+    /**
+     * Slot holding the key, or the bitwise complement of the free slot where it would go
+     */
+    private int find(long key) {
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return ~slot;
+    }
+
+    /**
+     * Remove by backward-shift deletion, so the table needs no tombstones
+     */
+    private void remove(int slot) {
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = mix(keys[next]) & mask;
+            // Move the entry into the hole unless its home lies cyclically in (hole, next]
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                codeHashes[hole] = codeHashes[next];
+                expiresAt[hole] = expiresAt[next];
+                issuedAt[hole] = issuedAt[next];
+                userTypes[hole] = userTypes[next];
+                attempts[hole] = attempts[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+        size--;
+    }
+
+    private boolean record(boolean hit) {
+        if (hit) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return hit;
+    }
+
+    private static long toKey(String mobileNumber) {
+        try {
+            long key = Long.parseLong(mobileNumber);
+            if (key > 0) {
+                return key;
+            }
+        } catch (NumberFormatException e) {
+            // Fall through
+        }
+        throw new IllegalArgumentException("Invalid mobile number format");
+    }
+
+    private static long truncate(String otpCodeHash) {
+        return Long.parseUnsignedLong(otpCodeHash.substring(0, 16), 16);
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L; // Fibonacci hashing spreads sequential numbers
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,58 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.entity.Captcha;
+import in.gov.manipur.rccms.repository.CaptchaRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Database-backed CAPTCHA store (captchas table)
+ * Enabled with app.captcha.store=jpa, and the default with app.rate-limit.mode=cluster,
+ * where a CAPTCHA issued by one node must be redeemable on any other
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnExpression("'${app.captcha.store:}' == 'jpa' or "
+        + "('${app.captcha.store:}' == '' and '${app.rate-limit.mode:local}' == 'cluster')")
+@Transactional
+public class JpaCaptchaStore implements CaptchaStore {
+
+    private final CaptchaRepository captchaRepository;
+    private final ExpiredRowCleanupService cleanupService;
+
+    @Override
+    public String save(String captchaText, String ipAddress, Duration ttl) {
+        Captcha captcha = new Captcha();
+        captcha.setCaptchaText(captchaText);
+        captcha.setIpAddress(ipAddress);
+        captcha.setExpiresAt(LocalDateTime.now().plus(ttl));
+        captcha.setIsUsed(false);
+
+        return captchaRepository.save(captcha).getCaptchaId();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean isValid(String captchaId, String captchaText) {
+        return captchaRepository.findValidCaptcha(captchaId, captchaText, LocalDateTime.now()).isPresent();
+    }
+
+    @Override
+    public boolean consume(String captchaId, String captchaText) {
+        return captchaRepository.consume(captchaId, captchaText, LocalDateTime.now()) > 0;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // Each cleanup batch runs in its own transaction
+    public void purgeExpired() {
+        cleanupService.cleanupCaptchas();
+    }
+}
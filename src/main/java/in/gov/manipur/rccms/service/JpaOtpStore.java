@@ -0,0 +1,63 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.entity.Otp;
+import in.gov.manipur.rccms.repository.OtpRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Database-backed OTP store (otps table, default)
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.otp.store", havingValue = "jpa", matchIfMissing = true)
+@Transactional
+public class JpaOtpStore implements OtpStore {
+
+    private final OtpRepository otpRepository;
+    private final ExpiredRowCleanupService cleanupService;
+
+    @Override
+    public void save(String mobileNumber, Otp.UserType userType, String otpCodeHash, Duration ttl) {
+        Otp otp = new Otp();
+        otp.setMobileNumber(mobileNumber);
+        otp.setUserType(userType);
+        otp.setOtpCodeHash(otpCodeHash);
+        otp.setExpiresAt(LocalDateTime.now().plus(ttl));
+        otp.setIsUsed(false);
+
+        otpRepository.save(otp);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean exists(String mobileNumber, Otp.UserType userType, String otpCodeHash) {
+        return otpRepository.existsByMobileNumberAndUserTypeAndOtpCodeHashAndIsUsedFalseAndExpiresAtAfter(
+                mobileNumber, userType, otpCodeHash, LocalDateTime.now());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean hasRecent(String mobileNumber, Otp.UserType userType, Duration window) {
+        LocalDateTime now = LocalDateTime.now();
+        return otpRepository.existsByMobileNumberAndUserTypeAndCreatedAtAfterAndIsUsedFalseAndExpiresAtAfter(
+                mobileNumber, userType, now.minus(window), now);
+    }
+
+    @Override
+    public boolean consume(String mobileNumber, Otp.UserType userType, String otpCodeHash) {
+        return otpRepository.consume(mobileNumber, otpCodeHash, userType, LocalDateTime.now()) > 0;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // Each cleanup batch runs in its own transaction
+    public void purgeExpired() {
+        cleanupService.cleanupOtps();
+    }
+}
@@ -0,0 +1,323 @@
+package in.gov.manipur.rccms.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Key Rotation Service
+ *
+ * Re-encrypts users.aadhar_number rows whose key version is not the active one
+ * (see EncryptionService). Rows are taken in keyset batches (by id) with
+ * FOR UPDATE SKIP LOCKED, each batch in its own short transaction, so only the
+ * rows of the current batch are locked and several nodes can share the work.
+ * Decryption and encryption of a batch run in parallel chunks on the
+ * EncryptionService bulk pool; writes go out as one JDBC batch. A
+ * rows-per-second budget and a maximum run time keep it from competing with
+ * registrations.
+ *
+ * The job can be paused and resumed at runtime (KeyRotationController). The
+ * flag is kept in the job_control table, so it holds for every node and across
+ * restarts (app.encryption.rotation.paused is the default until it is first
+ * set); a paused job stops after its current batch. Rows whose key version is
+ * not configured or that fail to decrypt are skipped, logged and counted, and
+ * the rest of the batch is rotated. Progress is exported as
+ * rccms.encryption.rotation.* metrics. Once a run finds nothing left but
+ * skipped rows, the job stops until the next restart; keep old keys until
+ * every node reports done with nothing skipped.
+ */
+@Slf4j
+@Service
+public class KeyRotationService {
+
+    private static final String SELECT_SQL =
+            "SELECT id, aadhar_number, COALESCE(aadhar_key_version, 1) AS key_version FROM users " +
+            "WHERE aadhar_hash IS NOT NULL AND COALESCE(aadhar_key_version, 1) <> ? AND id > ? " +
+            "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String PENDING_WHERE =
+            " FROM users WHERE aadhar_hash IS NOT NULL AND COALESCE(aadhar_key_version, 1) <> ?";
+    private static final String UPDATE_SQL =
+            "UPDATE users SET aadhar_number = ?, aadhar_key_version = ? WHERE id = ?";
+    private static final String JOB_NAME = "key-rotation";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EncryptionService encryptionService;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter rowsRotated;
+    private final Counter rowsSkipped;
+    private final Timer batchLatency;
+    private final boolean pausedByDefault;
+    private final Set<Long> skippedIds = ConcurrentHashMap.newKeySet();
+    private volatile boolean paused; // Last value read from job_control
+    private volatile boolean done;
+    private volatile long remaining = -1; // Unknown until the first run counts it
+    private volatile double rowsPerSecondLastRun;
+
+    @Value("${app.encryption.rotation.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.encryption.rotation.rows-per-second:2000}")
+    private int rowsPerSecond;
+
+    @Value("${app.encryption.rotation.max-run-seconds:50}")
+    private int maxRunSeconds;
+
+    public KeyRotationService(JdbcTemplate jdbcTemplate,
+                              EncryptionService encryptionService,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.encryption.rotation.paused:false}") boolean paused) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.encryptionService = encryptionService;
+        this.pausedByDefault = paused;
+        this.paused = paused;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.rowsRotated = Counter.builder("rccms.encryption.rotation.rows")
+                .description("Users rows re-encrypted with the active key version")
+                .register(meterRegistry);
+        this.rowsSkipped = Counter.builder("rccms.encryption.rotation.skipped")
+                .description("Users rows left on their old key version because they cannot be decrypted")
+                .register(meterRegistry);
+        this.batchLatency = Timer.builder("rccms.encryption.rotation.batch.latency")
+                .description("Time to lock, re-encrypt and write one rotation batch")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("rccms.encryption.rotation.remaining", this, r -> r.remaining)
+                .description("Users rows still on an old key version (-1 until counted)")
+                .register(meterRegistry);
+        Gauge.builder("rccms.encryption.rotation.throughput", this, r -> r.rowsPerSecondLastRun)
+                .description("Rows re-encrypted per second in the last run")
+                .register(meterRegistry);
+        Gauge.builder("rccms.encryption.rotation.paused", this, r -> r.paused ? 1 : 0)
+                .description("1 while the key rotation job is paused")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Stop after the current batch, on every node
+     */
+    public void pause() {
+        setPaused(true);
+        log.info("Key rotation paused");
+    }
+
+    /**
+     * Continue with the next scheduled run, on every node
+     */
+    public void resume() {
+        setPaused(false);
+        log.info("Key rotation resumed");
+    }
+
+    /**
+     * Current state for the admin endpoint
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("activeKeyVersion", encryptionService.activeKeyVersion());
+        status.put("paused", isPaused());
+        status.put("done", done);
+        status.put("remaining", remaining);
+        status.put("rotated", (long) rowsRotated.count());
+        status.put("skipped", skippedIds.size());
+        status.put("rowsPerSecondLastRun", rowsPerSecondLastRun);
+        return status;
+    }
+
+    /**
+     * Re-encrypt rows on old key versions within the run's time and rate budget
+     * @return rows re-encrypted
+     */
+    @Scheduled(fixedDelayString = "${app.encryption.rotation.interval-ms:60000}")
+    public long rotate() {
+        if (done || isPaused()) {
+            return 0;
+        }
+        int activeVersion = encryptionService.activeKeyVersion();
+        if (remaining < 0) {
+            remaining = pendingRows(activeVersion);
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + maxRunSeconds * 1_000_000_000L;
+        long nanosPerBatch = 1_000_000_000L * batchSize / Math.max(1, rowsPerSecond);
+        long afterId = 0;
+        long total = 0;
+
+        while (System.nanoTime() < deadline) {
+            long batchStart = System.nanoTime();
+            long keyset = afterId;
+            Batch batch = batchLatency.record(() -> transactionTemplate.execute(
+                    status -> rotateBatch(keyset, activeVersion)));
+
+            if (batch == null) {
+                // Rows held by another node are picked up by a later run
+                boolean finished = skippedIds.isEmpty()
+                        ? !hasPendingRows(activeVersion) : pendingRows(activeVersion) <= skippedIds.size();
+                if (finished) {
+                    done = true;
+                    remaining = skippedIds.size();
+                    log.info("Key rotation complete; all users rows use key version {} ({} skipped)",
+                            activeVersion, skippedIds.size());
+                }
+                break;
+            }
+            afterId = batch.lastId();
+            total += batch.rotated();
+            rowsRotated.increment(batch.rotated());
+            remaining = Math.max(0, remaining - batch.rotated());
+            if (isPaused()) {
+                break;
+            }
+            throttle(batchStart, nanosPerBatch);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        if (total > 0) {
+            rowsPerSecondLastRun = total * 1e9 / elapsed;
+            log.info("Re-encrypted {} users rows with key version {} in {} ms ({} left)",
+                    total, activeVersion, TimeUnit.NANOSECONDS.toMillis(elapsed), remaining);
+        }
+        return total;
+    }
+
+    /**
+     * Lock, re-encrypt and write one batch
+     * @return last id of the batch and rows re-encrypted, or null if no rows were left
+     */
+    private Batch rotateBatch(long afterId, int activeVersion) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(SELECT_SQL, activeVersion, afterId, batchSize);
+        if (rows.isEmpty()) {
+            return null;
+        }
+
+        // Decrypt per source key version, then encrypt everything with the active one
+        Map<Integer, List<Integer>> positionsByVersion = new TreeMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            int version = ((Number) rows.get(i).get("key_version")).intValue();
+            positionsByVersion.computeIfAbsent(version, v -> new ArrayList<>()).add(i);
+        }
+        String[] plainTexts = new String[rows.size()];
+        boolean[] skipped = new boolean[rows.size()];
+        positionsByVersion.forEach((version, positions) -> {
+            List<String> encrypted = positions.stream().map(i -> (String) rows.get(i).get("aadhar_number")).toList();
+            try {
+                List<String> decrypted = encryptionService.decryptAll(encrypted, version);
+                for (int j = 0; j < positions.size(); j++) {
+                    plainTexts[positions.get(j)] = decrypted.get(j);
+                }
+            } catch (RuntimeException e) {
+                // Find the rows at fault one by one, so the others are still rotated
+                for (int j = 0; j < positions.size(); j++) {
+                    int i = positions.get(j);
+                    try {
+                        plainTexts[i] = encryptionService.decrypt(encrypted.get(j), version);
+                    } catch (RuntimeException rowError) {
+                        skipped[i] = true;
+                        skip(((Number) rows.get(i).get("id")).longValue(), version, rowError);
+                    }
+                }
+            }
+        });
+
+        List<Long> ids = new ArrayList<>(rows.size());
+        List<String> toEncrypt = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            if (!skipped[i]) {
+                ids.add(((Number) rows.get(i).get("id")).longValue());
+                toEncrypt.add(plainTexts[i]);
+            }
+        }
+        List<String> reencrypted = encryptionService.encryptAll(toEncrypt);
+        List<Object[]> updates = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            updates.add(new Object[] {reencrypted.get(i), activeVersion, ids.get(i)});
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+        }
+        long lastId = ((Number) rows.get(rows.size() - 1).get("id")).longValue();
+        return new Batch(lastId, ids.size());
+    }
+
+    private void skip(long id, int version, RuntimeException error) {
+        if (skippedIds.add(id)) {
+            rowsSkipped.increment();
+            log.error("Key rotation skipped users row {} on key version {}: {}", id, version, error.getMessage());
+        }
+    }
+
+    private boolean hasPendingRows(int activeVersion) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1" + PENDING_WHERE + ")", Boolean.class, activeVersion));
+    }
+
+    private long pendingRows(int activeVersion) {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*)" + PENDING_WHERE, Long.class, activeVersion);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Pause flag from job_control, or the configured default while the job has no row
+     */
+    private boolean isPaused() {
+        List<Boolean> flags = jdbcTemplate.queryForList(
+                "SELECT paused FROM job_control WHERE job_name = ?", Boolean.class, JOB_NAME);
+        paused = flags.isEmpty() ? pausedByDefault : flags.get(0);
+        return paused;
+    }
+
+    private void setPaused(boolean value) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        String update = "UPDATE job_control SET paused = ?, updated_at = ? WHERE job_name = ?";
+        if (jdbcTemplate.update(update, value, now, JOB_NAME) == 0) {
+            try {
+                jdbcTemplate.update("INSERT INTO job_control (job_name, paused, updated_at) VALUES (?, ?, ?)",
+                        JOB_NAME, value, now);
+            } catch (DataIntegrityViolationException e) {
+                jdbcTemplate.update(update, value, now, JOB_NAME); // Inserted by another node meanwhile
+            }
+        }
+        paused = value;
+    }
+
+    /**
+     * Sleep for the rest of the batch's share of the rows-per-second budget
+     */
+    private void throttle(long batchStart, long nanosPerBatch) {
+        long remainingNanos = nanosPerBatch - (System.nanoTime() - batchStart);
+        if (remainingNanos <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(remainingNanos / 1_000_000, (int) (remainingNanos % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Batch(long lastId, int rotated) {
+    }
+}
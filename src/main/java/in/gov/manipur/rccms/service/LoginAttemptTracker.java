@@ -0,0 +1,289 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.entity.Otp;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Login Attempt Tracker
+ *
+ * Failed-attempt counters per account (login identifier) and per outstanding OTP
+ * (mobile number and user type), so brute force is refused before any BCrypt
+ * check or OTP query. An attempt counts as a failure when it starts and is
+ * cleared on success, which keeps parallel guesses from slipping past the check.
+ *
+ * After free-failures, each failure locks the key for base-backoff doubling up to
+ * max-backoff; at lockout-failures it is locked for lockout-minutes (for OTPs,
+ * until a new OTP is sent). Keys are forgotten forget-minutes after their last
+ * failure once any lock has passed.
+ *
+ * Each key is one map entry of two longs: a 64-bit hash of the key and its
+ * last failure time packed with the failure count. Expired keys are swept every
+ * minute, and early (at most once a second) once max-entries is reached;
+ * beyond that new keys are not tracked and are counted as overflow. Counters
+ * are per node.
+ */
+@Slf4j
+@Service
+public class LoginAttemptTracker {
+
+    private static final int USER_TYPES = Otp.UserType.values().length;
+    private static final long MAX_FAILURES = 0xFFFF;
+    private static final long FULL_SWEEP_INTERVAL_MS = 1000;
+
+    private final Policy accountPolicy;
+    private final Policy otpPolicy;
+    private final long baseBackoffMs;
+    private final long maxBackoffMs;
+    private final int freeFailures;
+    private final long forgetMs;
+    private final int maxEntries;
+    private final Counter accountLocked;
+    private final Counter otpLocked;
+    private final Counter accountLockouts;
+    private final Counter otpLockouts;
+
+    public LoginAttemptTracker(@Value("${app.auth.attempts.free-failures:3}") int freeFailures,
+                               @Value("${app.auth.attempts.base-backoff-ms:1000}") long baseBackoffMs,
+                               @Value("${app.auth.attempts.max-backoff-ms:60000}") long maxBackoffMs,
+                               @Value("${app.auth.attempts.lockout-failures:10}") int lockoutFailures,
+                               @Value("${app.auth.attempts.lockout-minutes:15}") long lockoutMinutes,
+                               @Value("${app.auth.attempts.otp-lockout-failures:5}") int otpLockoutFailures,
+                               @Value("${app.auth.attempts.forget-minutes:15}") long forgetMinutes,
+                               @Value("${app.auth.attempts.max-entries:1000000}") int maxEntries,
+                               MeterRegistry meterRegistry) {
+        this.freeFailures = freeFailures;
+        this.baseBackoffMs = baseBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.forgetMs = forgetMinutes * 60_000L;
+        this.maxEntries = maxEntries;
+        // OTPs expire after 5 minutes, so an OTP lockout lasts until a new OTP replaces it
+        this.accountPolicy = new Policy(lockoutFailures, lockoutMinutes * 60_000L,
+                overflowCounter("account", meterRegistry));
+        this.otpPolicy = new Policy(otpLockoutFailures, forgetMs, overflowCounter("otp", meterRegistry));
+
+        this.accountLocked = lockedCounter("account", meterRegistry);
+        this.otpLocked = lockedCounter("otp", meterRegistry);
+        this.accountLockouts = lockoutCounter("account", meterRegistry);
+        this.otpLockouts = lockoutCounter("otp", meterRegistry);
+        Gauge.builder("rccms.auth.attempts.tracked", accountPolicy.entries, ConcurrentHashMap::size)
+                .description("Keys with recent failed attempts")
+                .tag("kind", "account")
+                .register(meterRegistry);
+        Gauge.builder("rccms.auth.attempts.tracked", otpPolicy.entries, ConcurrentHashMap::size)
+                .description("Keys with recent failed attempts")
+                .tag("kind", "otp")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Start a login attempt for an identifier (email or mobile number)
+     * @return 0 if allowed (the attempt now counts as a failure), otherwise milliseconds until the lock ends
+     */
+    public long tryAccountAttempt(String identifier) {
+        long waitMillis = tryAttempt(accountPolicy, accountKey(identifier));
+        if (waitMillis > 0) {
+            accountLocked.increment();
+        }
+        return waitMillis;
+    }
+
+    /**
+     * Check if an identifier is locked, without counting an attempt
+     * @return 0 if not locked, otherwise milliseconds until the lock ends
+     */
+    public long accountLockedFor(String identifier) {
+        Long state = accountPolicy.entries.get(accountKey(identifier));
+        if (state == null) {
+            return 0;
+        }
+        long waitMillis = lastFailure(state) + delay(accountPolicy, failures(state)) - System.currentTimeMillis();
+        if (waitMillis <= 0) {
+            return 0;
+        }
+        accountLocked.increment();
+        return waitMillis;
+    }
+
+    /**
+     * Clear the account's failures after a successful login
+     */
+    public void accountSucceeded(String... identifiers) {
+        for (String identifier : identifiers) {
+            if (identifier != null) {
+                accountPolicy.entries.remove(accountKey(identifier));
+            }
+        }
+    }
+
+    /**
+     * Start an OTP check for the outstanding OTP of a mobile number
+     * @return 0 if allowed (the attempt now counts as a failure), otherwise milliseconds until the lock ends
+     */
+    public long tryOtpAttempt(String mobileNumber, Otp.UserType userType) {
+        long waitMillis = tryAttempt(otpPolicy, otpKey(mobileNumber, userType));
+        if (waitMillis > 0) {
+            otpLocked.increment();
+        }
+        return waitMillis;
+    }
+
+    /**
+     * Clear OTP failures after a successful check or when a new OTP is sent
+     */
+    public void otpReset(String mobileNumber, Otp.UserType userType) {
+        otpPolicy.entries.remove(otpKey(mobileNumber, userType));
+    }
+
+    /**
+     * Drop keys whose lock has passed and whose last failure is older than forget-minutes
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        int removed = evictExpired(accountPolicy, now) + evictExpired(otpPolicy, now);
+        log.debug("Login attempt tracker evicted {} expired keys", removed);
+    }
+
+    private long tryAttempt(Policy policy, long key) {
+        long now = System.currentTimeMillis();
+        if (policy.entries.size() >= maxEntries && now >= policy.nextFullSweepAt) {
+            policy.nextFullSweepAt = now + FULL_SWEEP_INTERVAL_MS; // A full scan per new key would be a DoS lever
+            evictExpired(policy, now);
+        }
+
+        long[] waitMillis = new long[1];
+        boolean[] lockedOut = new boolean[1];
+        boolean[] untracked = new boolean[1];
+        policy.entries.compute(key, (k, state) -> {
+            if (state == null && policy.entries.size() >= maxEntries) {
+                untracked[0] = true; // Full of recent failures; new keys go untracked
+                return null;
+            }
+            long failures = 0;
+            if (state != null) {
+                long lockedUntil = lastFailure(state) + delay(policy, failures(state));
+                if (lockedUntil > now) {
+                    waitMillis[0] = lockedUntil - now;
+                    return state;
+                }
+                if (!isExpired(policy, state, now)) {
+                    failures = failures(state);
+                }
+            }
+            failures = Math.min(MAX_FAILURES, failures + 1);
+            lockedOut[0] = failures == policy.lockoutFailures;
+            return (now << 16) | failures;
+        });
+
+        if (untracked[0]) {
+            policy.overflow.increment();
+        }
+        if (lockedOut[0]) {
+            (policy == accountPolicy ? accountLockouts : otpLockouts).increment();
+        }
+        return waitMillis[0];
+    }
+
+    /**
+     * Lock duration after the given number of failures
+     */
+    private long delay(Policy policy, long failures) {
+        if (failures >= policy.lockoutFailures) {
+            return policy.lockoutMs;
+        }
+        if (failures < freeFailures) {
+            return 0;
+        }
+        int doublings = (int) Math.min(30, failures - freeFailures);
+        return Math.min(maxBackoffMs, baseBackoffMs << doublings);
+    }
+
+    private boolean isExpired(Policy policy, long state, long now) {
+        long last = lastFailure(state);
+        return now >= last + Math.max(forgetMs, delay(policy, failures(state)));
+    }
+
+    private int evictExpired(Policy policy, long now) {
+        int before = policy.entries.size();
+        for (Long key : policy.entries.keySet()) {
+            // Re-checked under the bin lock, so a concurrent attempt is never lost
+            policy.entries.computeIfPresent(key, (k, state) -> isExpired(policy, state, now) ? null : state);
+        }
+        return before - policy.entries.size();
+    }
+
+    private static long lastFailure(long state) {
+        return state >>> 16;
+    }
+
+    private static long failures(long state) {
+        return state & MAX_FAILURES;
+    }
+
+    private static long otpKey(String mobileNumber, Otp.UserType userType) {
+        return Long.parseLong(mobileNumber) * USER_TYPES + userType.ordinal();
+    }
+
+    /**
+     * FNV-1a over the lower-cased identifier, then a 64-bit finalizer
+     */
+    private static long accountKey(String identifier) {
+        String normalized = identifier.trim().toLowerCase(Locale.ROOT);
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < normalized.length(); i++) {
+            h = (h ^ normalized.charAt(i)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    private static Counter lockedCounter(String kind, MeterRegistry meterRegistry) {
+        return Counter.builder("rccms.auth.attempts.locked")
+                .description("Login/OTP attempts refused because the key was locked")
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+
+    private static Counter overflowCounter(String kind, MeterRegistry meterRegistry) {
+        return Counter.builder("rccms.auth.attempts.overflow")
+                .description("Attempts let through untracked because the tracker was full")
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+
+    private static Counter lockoutCounter(String kind, MeterRegistry meterRegistry) {
+        return Counter.builder("rccms.auth.attempts.lockouts")
+                .description("Keys that reached the lockout threshold")
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Failure counters of one kind with their lockout threshold
+     */
+    private static final class Policy {
+        private final ConcurrentHashMap<Long, Long> entries = new ConcurrentHashMap<>();
+        private final int lockoutFailures;
+        private final long lockoutMs;
+        private final Counter overflow;
+        private volatile long nextFullSweepAt;
+
+        private Policy(int lockoutFailures, long lockoutMs, Counter overflow) {
+            this.lockoutFailures = lockoutFailures;
+            this.lockoutMs = lockoutMs;
+            this.overflow = overflow;
+        }
+    }
+}
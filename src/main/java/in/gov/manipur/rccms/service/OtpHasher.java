@@ -0,0 +1,46 @@
+package in.gov.manipur.rccms.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
+
+/**
+ * OTP Hasher
+ * OTP codes are stored as HMAC-SHA256(key, mobileNumber:userType:code) in hex,
+ * so the otps table never holds a usable code and the hash can be indexed.
+ * Binding the mobile number and user type into the hash means equal codes for
+ * different recipients never collide.
+ */
+@Component
+public class OtpHasher {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final ThreadLocal<Mac> mac;
+
+    public OtpHasher(@Value("${app.otp.hash-key:MySecretKeyForOtpHashing1234567890}") String hashKey) {
+        byte[] key = hashKey.getBytes(StandardCharsets.UTF_8);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance(HMAC_ALGORITHM);
+                instance.init(new SecretKeySpec(key, HMAC_ALGORITHM));
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC-SHA256 not available", e);
+            }
+        });
+    }
+
+    /**
+     * Keyed hash of an OTP code (64 hex characters)
+     */
+    public String hash(String mobileNumber, String userType, String otpCode) {
+        String input = mobileNumber + ":" + userType + ":" + otpCode;
+        return HexFormat.of().formatHex(mac.get().doFinal(input.getBytes(StandardCharsets.UTF_8)));
+    }
+}
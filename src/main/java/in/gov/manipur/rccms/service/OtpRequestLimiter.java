@@ -0,0 +1,141 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.entity.Otp;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * OTP Request Limiter
+ *
+ * Sliding-window limit on new OTPs per mobile number and user type
+ * (default: 3 per 15 minutes), kept in memory instead of a COUNT over otps.
+ * Each key holds a ring of its last max-requests send times in a long[];
+ * a send is allowed when the oldest of them has left the window. Updates run
+ * inside ConcurrentHashMap.compute, so contention is limited to one hash bin.
+ *
+ * Keys whose newest send has left the window are evicted every minute, and
+ * early (at most once a second) once max-keys is reached. While the map is
+ * still full of active numbers, new numbers are let through untracked and
+ * counted as overflow. Limits are per node.
+ */
+@Slf4j
+@Service
+public class OtpRequestLimiter {
+
+    private static final int USER_TYPES = Otp.UserType.values().length;
+    private static final long FULL_SWEEP_INTERVAL_MS = 1000;
+
+    private final ConcurrentHashMap<Long, long[]> windows = new ConcurrentHashMap<>();
+    private final int maxRequests;
+    private final long windowMillis;
+    private final int maxKeys;
+    private final Counter limited;
+    private final Counter overflow;
+    private volatile long nextFullSweepAt;
+
+    public OtpRequestLimiter(@Value("${app.otp.rate-limit.max-requests:3}") int maxRequests,
+                             @Value("${app.otp.rate-limit.window-minutes:15}") long windowMinutes,
+                             @Value("${app.otp.rate-limit.max-keys:1000000}") int maxKeys,
+                             MeterRegistry meterRegistry) {
+        this.maxRequests = maxRequests;
+        this.windowMillis = windowMinutes * 60_000L;
+        this.maxKeys = maxKeys;
+        this.limited = Counter.builder("rccms.otp.rate.limited")
+                .description("OTP requests rejected by the per-number sliding window")
+                .register(meterRegistry);
+        this.overflow = Counter.builder("rccms.otp.rate.overflow")
+                .description("OTP requests let through untracked because the limiter was full")
+                .register(meterRegistry);
+        Gauge.builder("rccms.otp.rate.keys", windows, ConcurrentHashMap::size)
+                .description("Mobile numbers tracked by the OTP limiter")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Record a new OTP send if the window allows it
+     *
+     * @return 0 if allowed, otherwise milliseconds until the next send is allowed
+     */
+    public long tryAcquire(String mobileNumber, Otp.UserType userType) {
+        if (maxRequests <= 0) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        if (windows.size() >= maxKeys && now >= nextFullSweepAt) {
+            nextFullSweepAt = now + FULL_SWEEP_INTERVAL_MS; // A full scan per new number would be a DoS lever
+            evictIdle();
+        }
+
+        long key = key(mobileNumber, userType);
+        long[] waitMillis = new long[1];
+        boolean[] untracked = new boolean[1];
+        windows.compute(key, (k, ring) -> {
+            if (ring == null) {
+                if (windows.size() >= maxKeys) {
+                    untracked[0] = true;
+                    return null;
+                }
+                ring = new long[maxRequests + 1]; // Send times, then the index of the oldest
+            }
+            int oldest = (int) ring[maxRequests];
+            if (ring[oldest] > now - windowMillis) {
+                waitMillis[0] = ring[oldest] + windowMillis - now;
+            } else {
+                ring[oldest] = now;
+                ring[maxRequests] = (oldest + 1) % maxRequests;
+            }
+            return ring;
+        });
+
+        if (untracked[0]) {
+            overflow.increment();
+        }
+        if (waitMillis[0] > 0) {
+            limited.increment();
+        }
+        return waitMillis[0];
+    }
+
+    /**
+     * Give back the newest send of a number, when no OTP was sent after all
+     */
+    public void release(String mobileNumber, Otp.UserType userType) {
+        if (maxRequests <= 0) {
+            return;
+        }
+        windows.computeIfPresent(key(mobileNumber, userType), (k, ring) -> {
+            int newest = (int) ((ring[maxRequests] + maxRequests - 1) % maxRequests);
+            ring[newest] = 0;
+            ring[maxRequests] = newest;
+            return ring;
+        });
+    }
+
+    /**
+     * Drop keys with no send inside the window
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - windowMillis;
+        int before = windows.size();
+        for (Long key : windows.keySet()) {
+            // Re-checked under the bin lock, so a concurrent send is never lost
+            windows.computeIfPresent(key, (k, ring) -> {
+                int newest = (int) ((ring[maxRequests] + maxRequests - 1) % maxRequests);
+                return ring[newest] <= cutoff ? null : ring;
+            });
+        }
+        log.debug("OTP limiter evicted {} idle numbers", before - windows.size());
+    }
+
+    private static long key(String mobileNumber, Otp.UserType userType) {
+        return Long.parseLong(mobileNumber) * USER_TYPES + userType.ordinal();
+    }
+}
@@ -0,0 +1,116 @@
+package in.gov.manipur.rccms.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * OTP Schema Initializer (PostgreSQL only)
+ *
+ * Brings the otps table in line with what Hibernate's ddl-auto=update cannot express:
+ * - widens otp_code to hold the 64-character keyed hash (see OtpHasher); outstanding
+ *   plaintext codes from before the upgrade are hashed in place, so they stay valid
+ * - creates a partial, covering index over unused OTPs for the verify/consume path
+ * - drops the superseded idx_mobile_otp index
+ *
+ * Each step checks the catalog first and only runs once. Indexes are built with
+ * CREATE INDEX CONCURRENTLY outside any transaction, so the table stays writable
+ * while they build; an invalid index left by an interrupted build is rebuilt.
+ * The partitioned layout (PartitionMaintenanceService) creates its own indexes.
+ *
+ * Access paths of the otps table:
+ * - verify/consume: mobile_number, user_type, otp_code, is_used = false, expires_at > now
+ *   -> idx_otp_unused_lookup (partial on is_used = false, expires_at included)
+ * - recent requests per number: mobile_number, user_type, created_at
+ *   -> idx_otp_mobile_created
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@DependsOn("entityManagerFactory") // Run after Hibernate has created/updated the schema
+public class OtpSchemaInitializer {
+
+    /**
+     * Indexes of the otps table (name to definition), shared with PartitionMaintenanceService
+     */
+    public static final Map<String, String> OTP_INDEXES = Map.of(
+            "idx_otp_unused_lookup", "ON otps (mobile_number, user_type, otp_code) INCLUDE (expires_at) WHERE is_used = false",
+            "idx_otp_mobile_created", "ON otps (mobile_number, user_type, created_at)");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OtpHasher otpHasher;
+
+    @PostConstruct
+    void initialise() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equals(product)) {
+            log.debug("Skipping OTP schema initialisation on {}", product);
+            return;
+        }
+        Boolean partitioned = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table p JOIN pg_class c ON c.oid = p.partrelid " +
+                "WHERE c.relname = 'otps' AND pg_table_is_visible(c.oid))", Boolean.class);
+        if (Boolean.TRUE.equals(partitioned)) {
+            return;
+        }
+
+        Integer length = jdbcTemplate.queryForObject(
+                "SELECT character_maximum_length FROM information_schema.columns " +
+                "WHERE table_name = 'otps' AND column_name = 'otp_code' AND table_schema = current_schema()",
+                Integer.class);
+        if (length != null && length < 64) {
+            log.info("Widening otps.otp_code to hold keyed OTP hashes");
+            jdbcTemplate.execute("ALTER TABLE otps ALTER COLUMN otp_code TYPE VARCHAR(64)"); // No rewrite for varchar
+            hashOutstandingCodes();
+        }
+
+        if (indexValid("idx_mobile_otp") != null) {
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS idx_mobile_otp");
+        }
+        OTP_INDEXES.forEach(this::createIndex);
+    }
+
+    /**
+     * Replace plaintext codes of unused, unexpired OTPs by their keyed hash
+     * Used and expired rows are removed by ExpiredRowCleanupService
+     */
+    private void hashOutstandingCodes() {
+        List<Object[]> updates = jdbcTemplate.query(
+                "SELECT id, mobile_number, user_type, otp_code FROM otps " +
+                "WHERE is_used = false AND expires_at > now() AND length(otp_code) < 64",
+                (rs, rowNum) -> new Object[]{
+                        otpHasher.hash(rs.getString(2), rs.getString(3), rs.getString(4)), rs.getLong(1), rs.getString(4)});
+        jdbcTemplate.batchUpdate("UPDATE otps SET otp_code = ? WHERE id = ? AND otp_code = ?", updates);
+        log.info("Hashed {} outstanding plaintext OTP codes", updates.size());
+    }
+
+    private void createIndex(String name, String definition) {
+        Boolean valid = indexValid(name);
+        if (Boolean.TRUE.equals(valid)) {
+            return;
+        }
+        if (valid != null) {
+            log.warn("Rebuilding index {} left invalid by an interrupted build", name);
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + name);
+        }
+        log.info("Creating index {} concurrently", name);
+        jdbcTemplate.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + name + " " + definition);
+    }
+
+    /**
+     * @return whether the index is valid, or null if it does not exist
+     */
+    private Boolean indexValid(String name) {
+        List<Boolean> valid = jdbcTemplate.queryForList(
+                "SELECT i.indisvalid FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid " +
+                "WHERE c.relname = ? AND pg_table_is_visible(c.oid)", Boolean.class, name);
+        return valid.isEmpty() ? null : valid.get(0);
+    }
+}
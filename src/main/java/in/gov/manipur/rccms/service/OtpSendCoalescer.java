@@ -0,0 +1,84 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.entity.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * OTP Send Coalescer
+ *
+ * Single-flight for send-OTP requests: while an OTP is being generated for a
+ * mobile number and user type, concurrent requests for the same number wait for
+ * that one instead of opening their own transaction, and share its outcome
+ * (including its exception). Together with the resend window in OtpService this
+ * turns a burst of "resend OTP" clicks into one OTP row and one SMS.
+ *
+ * Runs outside any transaction so waiting requests do not hold a connection.
+ * Coalescing is per node; the resend window covers requests spread over nodes.
+ */
+@Slf4j
+@Service
+public class OtpSendCoalescer {
+
+    private final OtpService otpService;
+    private final ConcurrentHashMap<String, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+    private final Counter sent;
+    private final Counter reused;
+    private final Counter coalesced;
+
+    public OtpSendCoalescer(OtpService otpService, MeterRegistry meterRegistry) {
+        this.otpService = otpService;
+        this.sent = outcomeCounter("sent", meterRegistry);
+        this.reused = outcomeCounter("reused", meterRegistry);
+        this.coalesced = outcomeCounter("coalesced", meterRegistry);
+    }
+
+    /**
+     * Send an OTP, joining an identical request already in progress
+     *
+     * @param mobileNumber Mobile number (trimmed)
+     * @param userType User type (CITIZEN or OPERATOR)
+     * @param allowInactive If true, allows OTP generation for inactive users (for registration flow)
+     */
+    public void send(String mobileNumber, User.UserType userType, boolean allowInactive) {
+        String key = mobileNumber + ":" + userType + ":" + allowInactive;
+        CompletableFuture<Boolean> mine = new CompletableFuture<>();
+        CompletableFuture<Boolean> leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            coalesced.increment();
+            try {
+                leader.join();
+                return;
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        try {
+            boolean newOtp = otpService.generateOtp(mobileNumber, userType, allowInactive);
+            (newOtp ? sent : reused).increment();
+            mine.complete(newOtp);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private static Counter outcomeCounter(String outcome, MeterRegistry meterRegistry) {
+        return Counter.builder("rccms.otp.send.requests")
+                .description("Send-OTP requests by outcome: sent, reused (recent OTP still valid) or coalesced")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
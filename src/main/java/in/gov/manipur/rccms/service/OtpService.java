@@ -3,17 +3,19 @@ package in.gov.manipur.rccms.service;
 import in.gov.manipur.rccms.entity.Otp;
 import in.gov.manipur.rccms.entity.User;
 import in.gov.manipur.rccms.exception.InvalidCredentialsException;
-import in.gov.manipur.rccms.repository.OtpRepository;
+import in.gov.manipur.rccms.exception.TooManyRequestsException;
 import in.gov.manipur.rccms.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
+import java.security.SecureRandom;
+import java.time.Duration;
 import java.util.Optional;
-import java.util.Random;
 
 /**
  * OTP Service
@@ -25,14 +27,19 @@ import java.util.Random;
 @Transactional
 public class OtpService {
 
-    private final OtpRepository otpRepository;
+    private final OtpStore otpStore;
     private final UserRepository userRepository;
-    private final SmsService smsService;
-    private static final Random random = new Random();
-    // Rate limiting disabled - OTP can be sent freely
-    // private static final int MAX_OTP_REQUESTS_PER_15_MIN = 3;
+    private final SmsOutboxService smsOutboxService;
+    private final OtpHasher otpHasher;
+    private final OtpRequestLimiter otpRequestLimiter;
+    private final LoginAttemptTracker loginAttemptTracker;
+    private final UserMembershipFilter membershipFilter;
+    private static final SecureRandom random = new SecureRandom(); // Codes must not be predictable from earlier ones
     private static final int OTP_EXPIRY_MINUTES = 5;
 
+    @Value("${app.otp.resend-window-seconds:60}")
+    private long resendWindowSeconds;
+
     /**
      * Generate and send OTP for mobile number
      * Includes rate limiting (max 3 requests per 15 minutes)
@@ -40,9 +47,10 @@ public class OtpService {
      * 
      * @param mobileNumber Mobile number
      * @param userType User type (CITIZEN or OPERATOR)
+     * @return true if a new OTP was sent, false if a recent unused OTP is still valid
      */
-    public void generateOtp(String mobileNumber, User.UserType userType) {
-        generateOtp(mobileNumber, userType, false);
+    public boolean generateOtp(String mobileNumber, User.UserType userType) {
+        return generateOtp(mobileNumber, userType, false);
     }
 
     /**
@@ -52,8 +60,9 @@ public class OtpService {
      * @param mobileNumber Mobile number
      * @param userType User type (CITIZEN or OPERATOR)
      * @param allowInactive If true, allows OTP generation for inactive users (for registration flow)
+     * @return true if a new OTP was sent, false if a recent unused OTP is still valid
      */
-    public void generateOtp(String mobileNumber, User.UserType userType, boolean allowInactive) {
+    public boolean generateOtp(String mobileNumber, User.UserType userType, boolean allowInactive) {
         if (mobileNumber == null || mobileNumber.trim().isEmpty()) {
             throw new IllegalArgumentException("Mobile number cannot be null or empty");
         }
@@ -61,14 +70,23 @@ public class OtpService {
         String trimmedMobile = mobileNumber.trim();
         Otp.UserType otpUserType = convertUserType(userType);
 
-        // Rate limiting disabled - OTP can be sent freely
-        // (Rate limiting can be enabled later if needed)
-        // LocalDateTime since = LocalDateTime.now().minusMinutes(15);
-        // long recentRequests = otpRepository.countRecentOtpRequests(trimmedMobile, otpUserType, since);
-        // if (recentRequests >= MAX_OTP_REQUESTS_PER_15_MIN) {
-        //     log.warn("Rate limit exceeded for mobile: {} (userType: {})", maskMobile(trimmedMobile), userType);
-        //     throw new TooManyRequestsException("Too many OTP requests. Please try again after 15 minutes.");
-        // }
+        // Numbers the membership filter has never seen are rejected without a query (login only;
+        // during registration the user row may not be committed yet)
+        if (!allowInactive && !membershipFilter.mightHaveMobile(trimmedMobile)) {
+            log.warn("OTP request failed: User not found with mobile: {}", maskMobile(trimmedMobile));
+            throw new InvalidCredentialsException("Mobile number not registered");
+        }
+
+        // Rate limiting (max 3 new OTPs per 15 minutes by default, see OtpRequestLimiter),
+        // ahead of any query, so a flooded number costs no database round trip
+        long waitMillis = otpRequestLimiter.tryAcquire(trimmedMobile, otpUserType);
+        if (waitMillis > 0) {
+            long waitSeconds = (waitMillis + 999) / 1000;
+            long waitMinutes = Math.max(1, (waitSeconds + 59) / 60);
+            log.warn("Rate limit exceeded for mobile: {} (userType: {})", maskMobile(trimmedMobile), userType);
+            throw new TooManyRequestsException(
+                    "Too many OTP requests. Please try again after " + waitMinutes + " minutes.", waitSeconds);
+        }
 
         // Verify user exists with this mobile number
         Optional<User> userOpt = userRepository.findByMobileNumber(trimmedMobile);
@@ -103,33 +121,43 @@ public class OtpService {
             }
         }
 
+        // Resend within the window: the OTP sent moments ago is still valid and its SMS is on its way.
+        // Codes are only stored as hashes, so the same code cannot be sent again.
+        if (resendWindowSeconds > 0
+                && otpStore.hasRecent(trimmedMobile, otpUserType, Duration.ofSeconds(resendWindowSeconds))) {
+            log.info("Recent OTP still valid for mobile: {}, not sending a new one", maskMobile(trimmedMobile));
+            otpRequestLimiter.release(trimmedMobile, otpUserType); // Nothing sent, so nothing counted
+            return false;
+        }
+
         // Generate OTP
         String otpCode = generateOtpCode();
-        Otp otp = new Otp();
-        otp.setMobileNumber(trimmedMobile);
-        otp.setUserType(otpUserType);
-        otp.setOtpCode(otpCode);
-        otp.setExpiresAt(LocalDateTime.now().plusMinutes(OTP_EXPIRY_MINUTES));
-        otp.setIsUsed(false);
-
-        otpRepository.save(otp);
+        String message = "Your RCCMS OTP is: " + otpCode + ". Valid for " + OTP_EXPIRY_MINUTES + " minutes.";
+
+        // OTPs kept only in memory are sent without an outbox row (a restart loses both anyway), and
+        // before they are stored: if the sender queue is full, nothing is left behind to block a retry
+        if (!otpStore.isDurable()) {
+            try {
+                smsOutboxService.sendUnqueued(trimmedMobile, message, Duration.ofMinutes(OTP_EXPIRY_MINUTES));
+            } catch (TooManyRequestsException e) {
+                otpRequestLimiter.release(trimmedMobile, otpUserType);
+                throw e;
+            }
+        }
+
+        otpStore.save(trimmedMobile, otpUserType,
+                otpHasher.hash(trimmedMobile, otpUserType.name(), otpCode),
+                Duration.ofMinutes(OTP_EXPIRY_MINUTES));
+        loginAttemptTracker.otpReset(trimmedMobile, otpUserType); // Fresh guesses for the new OTP
         
-        // Log OTP to console (DUMMY OTP - SMS API will be integrated later)
-        log.info("========================================");
-        log.info("=== OTP GENERATED (DUMMY) ===");
-        log.info("========================================");
-        log.info("MOBILE NUMBER: {}", trimmedMobile);
-        log.info("OTP CODE: {}", otpCode);
-        log.info("USER TYPE: {}", userType);
-        log.info("EXPIRY: {} minutes", OTP_EXPIRY_MINUTES);
-        log.info("STATUS: {}", allowInactive ? "Registration Verification" : "Login");
-        log.info("========================================");
-        log.info("NOTE: This is a DUMMY OTP logged to console.");
-        log.info("SMS API will be integrated later.");
-        log.info("========================================");
-
-        // Send OTP via SMS service (currently logs to console - DUMMY)
-        smsService.sendSms(trimmedMobile, "Your RCCMS OTP is: " + otpCode + ". Valid for " + OTP_EXPIRY_MINUTES + " minutes.");
+        log.info("OTP generated for mobile: {} ({})", maskMobile(trimmedMobile),
+                allowInactive ? "registration" : "login");
+
+        // Queue OTP SMS in this transaction; SmsDispatcher delivers it after commit
+        if (otpStore.isDurable()) {
+            smsOutboxService.enqueue(trimmedMobile, message, Duration.ofMinutes(OTP_EXPIRY_MINUTES));
+        }
+        return true;
     }
 
     /**
@@ -146,39 +174,53 @@ public class OtpService {
 
         String trimmedMobile = mobileNumber.trim();
         String trimmedOtp = otpCode.trim();
-        LocalDateTime now = LocalDateTime.now();
         Otp.UserType otpUserType = convertUserType(userType);
 
-        Optional<Otp> otpOpt = otpRepository.findValidOtpByMobileNumber(
-                trimmedMobile, 
-                trimmedOtp, 
-                otpUserType, 
-                now
+        return otpStore.exists(
+                trimmedMobile,
+                otpUserType,
+                otpHasher.hash(trimmedMobile, otpUserType.name(), trimmedOtp)
         );
-
-        return otpOpt.isPresent();
     }
 
     /**
-     * Mark OTP as used after successful verification
+     * Verify and consume OTP in one atomic step
+     * The store checks and consumes atomically, so an OTP can be redeemed exactly once
+     * @return true if the OTP was valid and is now used
      */
-    public void markOtpAsUsed(String mobileNumber, String otpCode, User.UserType userType) {
+    public boolean consumeOtp(String mobileNumber, String otpCode, User.UserType userType) {
+        if (mobileNumber == null || mobileNumber.trim().isEmpty()) {
+            throw new IllegalArgumentException("Mobile number cannot be null or empty");
+        }
+        if (otpCode == null || otpCode.trim().isEmpty()) {
+            throw new IllegalArgumentException("OTP code cannot be null or empty");
+        }
+
         String trimmedMobile = mobileNumber.trim();
-        String trimmedOtp = otpCode.trim();
-        LocalDateTime now = LocalDateTime.now();
         Otp.UserType otpUserType = convertUserType(userType);
 
-        Optional<Otp> otpOpt = otpRepository.findValidOtpByMobileNumber(
-                trimmedMobile, 
-                trimmedOtp, 
-                otpUserType, 
-                now
+        // Refuse guesses against a locked OTP before querying the store
+        long waitMillis = loginAttemptTracker.tryOtpAttempt(trimmedMobile, otpUserType);
+        if (waitMillis > 0) {
+            long waitSeconds = (waitMillis + 999) / 1000;
+            log.warn("OTP check refused: too many wrong attempts for mobile: {}", maskMobile(trimmedMobile));
+            throw new TooManyRequestsException(
+                    "Too many wrong OTP attempts. Please request a new OTP or try again after " + waitSeconds + " seconds.",
+                    waitSeconds);
+        }
+
+        boolean consumed = otpStore.consume(
+                trimmedMobile,
+                otpUserType,
+                otpHasher.hash(trimmedMobile, otpUserType.name(), otpCode.trim())
         );
 
-        if (otpOpt.isPresent()) {
-            otpRepository.markAsUsed(otpOpt.get().getId());
-            log.debug("OTP marked as used for mobile: {}", maskMobile(trimmedMobile));
+        if (consumed) {
+            loginAttemptTracker.otpReset(trimmedMobile, otpUserType);
+            log.debug("OTP consumed for mobile: {}", maskMobile(trimmedMobile));
+            return true;
         }
+        return false;
     }
 
     /**
@@ -207,13 +249,11 @@ public class OtpService {
     }
 
     /**
-     * Clean up expired OTPs (runs every hour)
+     * Clean up expired and used OTPs (runs every minute by default)
      */
-    @Scheduled(fixedRate = 3600000) // 1 hour in milliseconds
-    @Transactional
+    @Scheduled(fixedDelayString = "${app.cleanup.interval-ms:60000}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // Each cleanup batch runs in its own transaction
     public void cleanupExpiredOtps() {
-        LocalDateTime now = LocalDateTime.now();
-        otpRepository.deleteExpiredOtps(now);
-        log.debug("Cleaned up expired OTPs");
+        otpStore.purgeExpired();
     }
 }
@@ -0,0 +1,47 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.entity.Otp;
+
+import java.time.Duration;
+
+/**
+ * OTP Store
+ * Storage abstraction behind OtpService.
+ * Implementations are selected with the app.otp.store property.
+ * Codes are always passed as keyed hashes (see OtpHasher).
+ */
+public interface OtpStore {
+
+    /**
+     * Store a new OTP for a mobile number
+     */
+    void save(String mobileNumber, Otp.UserType userType, String otpCodeHash, Duration ttl);
+
+    /**
+     * Check for a valid OTP without consuming it
+     */
+    boolean exists(String mobileNumber, Otp.UserType userType, String otpCodeHash);
+
+    /**
+     * Whether an unused, unexpired OTP was issued within the given window
+     */
+    boolean hasRecent(String mobileNumber, Otp.UserType userType, Duration window);
+
+    /**
+     * Atomically check and consume an OTP
+     * @return true if the OTP was valid and is now used
+     */
+    boolean consume(String mobileNumber, Otp.UserType userType, String otpCodeHash);
+
+    /**
+     * Remove expired OTPs
+     */
+    void purgeExpired();
+
+    /**
+     * Whether stored OTPs survive a restart; if not, their SMS need not be queued durably either
+     */
+    default boolean isDurable() {
+        return true;
+    }
+}
@@ -0,0 +1,266 @@
+package in.gov.manipur.rccms.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Partition Maintenance Service
+ * Optional time-partitioned layout for the otps and captchas tables (PostgreSQL 14 or later)
+ * Enabled with app.partitioning.enabled=true
+ *
+ * Both tables are range-partitioned by expires_at into hourly partitions.
+ * Partitions are created hours-ahead in advance, so inserts keep working while
+ * maintenance is down for up to that long. Partitions whose whole range has
+ * expired are detached with DETACH PARTITION ... CONCURRENTLY and then dropped:
+ * the parent is only locked in SHARE UPDATE EXCLUSIVE mode, so inserts and
+ * lookups keep running while an hour of rows is discarded. PostgreSQL refuses
+ * concurrent detaches when the table has a DEFAULT partition, so there is none;
+ * a DEFAULT partition left by an earlier version is folded back in on start.
+ * Partitions can be UNLOGGED (app.partitioning.unlogged): losing an OTP or
+ * CAPTCHA on a crash only means the user requests a new one.
+ *
+ * Every lookup in OtpRepository and CaptchaRepository filters on
+ * expires_at > :now, so PostgreSQL prunes expired partitions at execution time.
+ *
+ * On first start an existing unpartitioned table is renamed to
+ * <table>_unpartitioned and its unexpired rows are copied into the new layout,
+ * in one transaction; the renamed table is kept for the operator to drop.
+ * The layout has no unique constraint on captcha_id (PostgreSQL requires the
+ * partition key in every unique constraint), which is why the Captcha entity
+ * does not declare one either.
+ */
+@Slf4j
+@Service
+@DependsOn("entityManagerFactory") // Run after Hibernate has created/updated the schema
+@ConditionalOnProperty(name = "app.partitioning.enabled", havingValue = "true")
+public class PartitionMaintenanceService {
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMddHH");
+    private static final Pattern HOURLY_PARTITION = Pattern.compile(".*_p\\d{10}");
+    private static final String UNPARTITIONED_SUFFIX = "_unpartitioned";
+    private static final int MAX_IDENTIFIER_LENGTH = 63;
+
+    private static final String OTPS_COLUMNS =
+            "id BIGSERIAL NOT NULL, " +
+            "mobile_number VARCHAR(10) NOT NULL, " +
+            "user_type VARCHAR(20) NOT NULL, " +
+            "otp_code VARCHAR(64) NOT NULL, " +
+            "is_used BOOLEAN NOT NULL, " +
+            "created_at TIMESTAMP(6) NOT NULL, " +
+            "expires_at TIMESTAMP(6) NOT NULL, " +
+            "PRIMARY KEY (id, expires_at)";
+
+    private static final String CAPTCHAS_COLUMNS =
+            "id BIGSERIAL NOT NULL, " +
+            "captcha_id VARCHAR(36) NOT NULL, " +
+            "captcha_text VARCHAR(10) NOT NULL, " +
+            "is_used BOOLEAN NOT NULL, " +
+            "ip_address VARCHAR(45), " +
+            "created_at TIMESTAMP(6) NOT NULL, " +
+            "expires_at TIMESTAMP(6) NOT NULL, " +
+            "PRIMARY KEY (id, expires_at)";
+
+    private static final String OTPS_COPY = "id, mobile_number, user_type, otp_code, is_used, created_at, expires_at";
+    private static final String CAPTCHAS_COPY = "id, captcha_id, captcha_text, is_used, ip_address, created_at, expires_at";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int hoursAhead;
+    private final boolean unlogged;
+
+    public PartitionMaintenanceService(JdbcTemplate jdbcTemplate,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${app.partitioning.hours-ahead:24}") int hoursAhead,
+                                       @Value("${app.partitioning.unlogged:false}") boolean unlogged) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.hoursAhead = hoursAhead;
+        this.unlogged = unlogged;
+    }
+
+    @PostConstruct
+    void initialise() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equals(product)) {
+            throw new IllegalStateException("app.partitioning.enabled requires PostgreSQL, found: " + product);
+        }
+
+        ensurePartitioned("otps", OTPS_COLUMNS, OTPS_COPY, OtpSchemaInitializer.OTP_INDEXES);
+        ensurePartitioned("captchas", CAPTCHAS_COLUMNS, CAPTCHAS_COPY, Map.of(
+                "idx_captcha_id", "ON captchas (captcha_id)"));
+        retireDefaultPartition("otps", OTPS_COPY);
+        retireDefaultPartition("captchas", CAPTCHAS_COPY);
+        maintainPartitions();
+    }
+
+    /**
+     * Create upcoming partitions and drop expired ones
+     */
+    @Scheduled(fixedDelayString = "${app.partitioning.maintenance-interval-ms:600000}")
+    public void maintainPartitions() {
+        LocalDateTime currentHour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        for (String table : List.of("otps", "captchas")) {
+            createPartitions(table, currentHour);
+            dropExpiredPartitions(table, currentHour);
+        }
+    }
+
+    private void ensurePartitioned(String table, String columns, String copyColumns, Map<String, String> indexes) {
+        Boolean partitioned = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table p JOIN pg_class c ON c.oid = p.partrelid " +
+                "WHERE c.relname = ? AND pg_table_is_visible(c.oid))", Boolean.class, table);
+        if (Boolean.TRUE.equals(partitioned)) {
+            return;
+        }
+
+        boolean exists = tableExists(table);
+        String unpartitioned = table + UNPARTITIONED_SUFFIX;
+        if (exists && tableExists(unpartitioned)) {
+            throw new IllegalStateException("Cannot convert " + table + " to the partitioned layout: " + unpartitioned
+                    + " is left from an earlier conversion; drop it first");
+        }
+
+        LocalDateTime currentHour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        Integer copied = transactionTemplate.execute(status -> {
+            if (exists) {
+                // Renaming takes the table over from concurrent writers until the copy commits
+                jdbcTemplate.execute("ALTER TABLE " + table + " RENAME TO " + unpartitioned);
+                renameIndexes(unpartitioned);
+            }
+            jdbcTemplate.execute("CREATE TABLE " + table + " (" + columns + ") PARTITION BY RANGE (expires_at)");
+            indexes.forEach((name, definition) -> jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + name + " " + definition));
+            createPartitions(table, currentHour);
+            if (!exists) {
+                return 0;
+            }
+
+            int rows = jdbcTemplate.update("INSERT INTO " + table + " (" + copyColumns + ") " +
+                            "SELECT " + copyColumns + " FROM " + unpartitioned + " WHERE expires_at > ? AND expires_at < ?",
+                    Timestamp.valueOf(LocalDateTime.now()), Timestamp.valueOf(currentHour.plusHours(hoursAhead + 1)));
+            // New ids continue after the copied ones
+            jdbcTemplate.queryForObject("SELECT setval(pg_get_serial_sequence(?, 'id'), " +
+                    "COALESCE((SELECT MAX(id) FROM " + unpartitioned + "), 0) + 1, false)", Long.class, table);
+            return rows;
+        });
+
+        if (exists) {
+            log.warn("Converted table {} to the hourly partitioned layout and copied {} unexpired rows; " +
+                    "the old table is kept as {} and can be dropped", table, copied, unpartitioned);
+        } else {
+            log.info("Created table {} with the hourly partitioned layout", table);
+        }
+    }
+
+    /**
+     * Free the index names of a renamed table for the new layout
+     */
+    private void renameIndexes(String table) {
+        List<String> indexes = jdbcTemplate.queryForList(
+                "SELECT indexname FROM pg_indexes WHERE schemaname = current_schema() AND tablename = ?",
+                String.class, table);
+        for (String index : indexes) {
+            String renamed = index.substring(0, Math.min(index.length(), MAX_IDENTIFIER_LENGTH - UNPARTITIONED_SUFFIX.length()))
+                    + UNPARTITIONED_SUFFIX;
+            jdbcTemplate.execute("ALTER INDEX \"" + index + "\" RENAME TO \"" + renamed + "\"");
+        }
+    }
+
+    /**
+     * Move the rows of a DEFAULT partition (created by earlier versions) into the hourly partitions
+     * and drop it. Runs once; the detach locks the parent for the duration of the copy.
+     */
+    private void retireDefaultPartition(String table, String copyColumns) {
+        String defaultPartition = table + "_default";
+        List<String> partitions = partitions(table).stream().map(Partition::name).toList();
+        if (!partitions.contains(defaultPartition)) {
+            return;
+        }
+
+        LocalDateTime currentHour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        Integer moved = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute("ALTER TABLE " + table + " DETACH PARTITION " + defaultPartition);
+            createPartitions(table, currentHour);
+            int rows = jdbcTemplate.update("INSERT INTO " + table + " (" + copyColumns + ") " +
+                            "SELECT " + copyColumns + " FROM " + defaultPartition + " WHERE expires_at > ? AND expires_at < ?",
+                    Timestamp.valueOf(LocalDateTime.now()), Timestamp.valueOf(currentHour.plusHours(hoursAhead + 1)));
+            jdbcTemplate.execute("DROP TABLE " + defaultPartition);
+            return rows;
+        });
+        log.warn("Removed the DEFAULT partition of {} (it prevents concurrent detaches); moved {} unexpired rows",
+                table, moved);
+    }
+
+    private void createPartitions(String table, LocalDateTime currentHour) {
+        for (int i = 0; i <= hoursAhead; i++) {
+            createPartition(table, currentHour.plusHours(i));
+        }
+    }
+
+    private void createPartition(String table, LocalDateTime hour) {
+        String partition = table + "_p" + SUFFIX.format(hour);
+        try {
+            jdbcTemplate.execute("CREATE " + (unlogged ? "UNLOGGED " : "") + "TABLE IF NOT EXISTS " + partition +
+                    " PARTITION OF " + table +
+                    " FOR VALUES FROM ('" + Timestamp.valueOf(hour) + "') TO ('" + Timestamp.valueOf(hour.plusHours(1)) + "')");
+        } catch (DataAccessException e) {
+            // Another node created it at the same moment
+            log.debug("Could not create partition {}: {}", partition, e.getMessage());
+        }
+    }
+
+    /**
+     * Detach and drop hourly partitions whose upper bound is before the current hour.
+     * DETACH ... CONCURRENTLY cannot run in a transaction: each statement runs on its own.
+     * A detach interrupted half-way (node stopped, statement cancelled) is finalized first.
+     */
+    private void dropExpiredPartitions(String table, LocalDateTime currentHour) {
+        String cutoff = table + "_p" + SUFFIX.format(currentHour);
+        for (Partition partition : partitions(table)) {
+            if (!HOURLY_PARTITION.matcher(partition.name()).matches() || partition.name().compareTo(cutoff) >= 0) {
+                continue;
+            }
+            try {
+                jdbcTemplate.execute("ALTER TABLE " + table + " DETACH PARTITION " + partition.name()
+                        + (partition.detachPending() ? " FINALIZE" : " CONCURRENTLY"));
+                jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition.name());
+                log.info("Dropped expired partition {}", partition.name());
+            } catch (DataAccessException e) {
+                // Another node is detaching it; whatever is left is finished by the next run
+                log.warn("Could not drop expired partition {}: {}", partition.name(), e.getMessage());
+            }
+        }
+    }
+
+    private List<Partition> partitions(String table) {
+        return jdbcTemplate.query(
+                "SELECT c.relname, i.inhdetachpending FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent " +
+                "WHERE p.relname = ? AND pg_table_is_visible(p.oid) ORDER BY c.relname",
+                (rs, rowNum) -> new Partition(rs.getString(1), rs.getBoolean(2)), table);
+    }
+
+    private boolean tableExists(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, table));
+    }
+
+    private record Partition(String name, boolean detachPending) {
+    }
+}
@@ -0,0 +1,221 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.dto.ProofOfWorkChallengeDTO;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.regex.Pattern;
+
+/**
+ * Proof-of-Work Service
+ * Hashcash-style alternative to the image CAPTCHA (app.captcha.pow.enabled)
+ *
+ * The server issues a signed, self-expiring challenge with a difficulty in bits.
+ * The client searches for a numeric solution of 4-10 digits (the captcha field's
+ * length limits) such that SHA-256(challenge + ":" + solution) starts with that
+ * many zero bits, and submits the challenge as captchaId and the solution as captcha.
+ * Verification costs one HMAC and one SHA-256, with no database access.
+ *
+ * Difficulty grows by one bit for every doubling of the login/send-OTP request
+ * rate above the configured threshold, so abuse costs the client more work.
+ *
+ * Single node only: redeemed challenges are remembered in this node's replay
+ * filter, so behind a load balancer a solved challenge could be redeemed once
+ * on each node. Enabling it fails at startup when app.rate-limit.mode=cluster.
+ */
+@Slf4j
+@Service
+public class ProofOfWorkService {
+
+    public static final String CHALLENGE_PREFIX = "pow.";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int ID_LENGTH = 16;
+    private static final int PAYLOAD_LENGTH = ID_LENGTH + Long.BYTES + 1;
+    private static final int SIGNATURE_LENGTH = 16;
+    private static final SecureRandom secureRandom = new SecureRandom();
+    private static final Pattern SOLUTION = Pattern.compile("\\d{4,10}");
+    private static final int REPLAY_FILTER_ENTRIES = 200_000;
+
+    private final RequestRateMonitor requestRateMonitor;
+    private final ReplayFilter replayFilter;
+    private final ThreadLocal<Mac> signMac;
+    private final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(ProofOfWorkService::newSha256);
+
+    @Value("${app.captcha.pow.base-difficulty:16}")
+    private int baseDifficulty;
+
+    @Value("${app.captcha.pow.max-difficulty:24}")
+    private int maxDifficulty;
+
+    @Value("${app.captcha.pow.rate-threshold:20}")
+    private double rateThreshold; // Requests per second before difficulty starts to grow
+
+    private final boolean enabled;
+    private final long ttlSeconds;
+
+    public ProofOfWorkService(RequestRateMonitor requestRateMonitor,
+                              @Value("${app.captcha.signing-key:MySecretKeyForCaptchaTokenSigning1234567890}") String signingKey,
+                              @Value("${app.captcha.pow.enabled:false}") boolean enabled,
+                              @Value("${app.captcha.pow.ttl-seconds:300}") long ttlSeconds,
+                              @Value("${app.rate-limit.mode:local}") String rateLimitMode,
+                              MeterRegistry meterRegistry) {
+        if (enabled && "cluster".equals(rateLimitMode)) {
+            throw new IllegalStateException("app.captcha.pow.enabled keeps redeemed challenges per node and cannot be used "
+                    + "with app.rate-limit.mode=cluster");
+        }
+        this.requestRateMonitor = requestRateMonitor;
+        this.enabled = enabled;
+        this.ttlSeconds = ttlSeconds;
+        // Redeemed challenges must be remembered for as long as they could still be valid
+        this.replayFilter = new ReplayFilter(Duration.ofSeconds(Math.max(1, ttlSeconds)), REPLAY_FILTER_ENTRIES, 1e-6);
+        byte[] key = hmac(signingKey.getBytes(StandardCharsets.UTF_8), "pow-sign".getBytes(StandardCharsets.UTF_8));
+        this.signMac = ThreadLocal.withInitial(() -> newMac(key));
+        Gauge.builder("rccms.captcha.pow.difficulty", this, ProofOfWorkService::currentDifficulty)
+                .description("Current proof-of-work difficulty in leading zero bits")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Issue a new challenge at the current difficulty
+     */
+    public ProofOfWorkChallengeDTO issueChallenge() {
+        if (!enabled) {
+            throw new IllegalArgumentException("Proof-of-work challenges are disabled");
+        }
+
+        int difficulty = currentDifficulty();
+        long expiresAt = System.currentTimeMillis() + ttlSeconds * 1000;
+        byte[] id = new byte[ID_LENGTH];
+        secureRandom.nextBytes(id);
+
+        ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_LENGTH + SIGNATURE_LENGTH);
+        payload.put(id);
+        payload.putLong(expiresAt);
+        payload.put((byte) difficulty);
+        payload.put(sign(payload.array()));
+
+        return ProofOfWorkChallengeDTO.builder()
+                .challenge(CHALLENGE_PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(payload.array()))
+                .difficulty(difficulty)
+                .expiresInSeconds(ttlSeconds)
+                .build();
+    }
+
+    /**
+     * Check whether a captchaId is a proof-of-work challenge handled by this service
+     */
+    public boolean isChallenge(String captchaId) {
+        return enabled && captchaId != null && captchaId.startsWith(CHALLENGE_PREFIX);
+    }
+
+    /**
+     * Check a solution without redeeming the challenge
+     */
+    public boolean isValid(String challenge, String solution) {
+        byte[] token = verify(challenge, solution);
+        return token != null && !replayFilter.mightContain(Arrays.copyOf(token, ID_LENGTH));
+    }
+
+    /**
+     * Verify a solution and redeem the challenge (one use only)
+     */
+    public boolean consume(String challenge, String solution) {
+        byte[] token = verify(challenge, solution);
+        return token != null && replayFilter.markIfAbsent(Arrays.copyOf(token, ID_LENGTH));
+    }
+
+    /**
+     * Difficulty for the current login/send-OTP request rate
+     */
+    public int currentDifficulty() {
+        double rate = requestRateMonitor.currentRate();
+        if (rate <= rateThreshold) {
+            return baseDifficulty;
+        }
+        int extraBits = (int) Math.floor(Math.log(rate / rateThreshold) / Math.log(2)) + 1;
+        return Math.min(maxDifficulty, baseDifficulty + extraBits);
+    }
+
+    private byte[] verify(String challenge, String solution) {
+        if (!isChallenge(challenge) || solution == null || !SOLUTION.matcher(solution).matches()) {
+            return null;
+        }
+
+        byte[] token;
+        try {
+            token = Base64.getUrlDecoder().decode(challenge.substring(CHALLENGE_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (token.length != PAYLOAD_LENGTH + SIGNATURE_LENGTH) {
+            return null;
+        }
+        if (!MessageDigest.isEqual(Arrays.copyOfRange(token, PAYLOAD_LENGTH, token.length), sign(token))) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(token);
+        if (buffer.getLong(ID_LENGTH) <= System.currentTimeMillis()) {
+            return null;
+        }
+        int difficulty = buffer.get(ID_LENGTH + Long.BYTES);
+
+        MessageDigest digest = sha256.get();
+        byte[] hash = digest.digest((challenge + ":" + solution).getBytes(StandardCharsets.UTF_8));
+        return leadingZeroBits(hash) >= difficulty ? token : null;
+    }
+
+    private static int leadingZeroBits(byte[] hash) {
+        int bits = 0;
+        for (byte b : hash) {
+            if (b == 0) {
+                bits += 8;
+                continue;
+            }
+            return bits + Integer.numberOfLeadingZeros(b & 0xff) - 24;
+        }
+        return bits;
+    }
+
+    private byte[] sign(byte[] token) {
+        Mac mac = signMac.get();
+        mac.update(token, 0, PAYLOAD_LENGTH);
+        return Arrays.copyOf(mac.doFinal(), SIGNATURE_LENGTH);
+    }
+
+    private static byte[] hmac(byte[] key, byte[] data) {
+        return newMac(key).doFinal(data);
+    }
+
+    private static Mac newMac(byte[] key) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(key, HMAC_ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 not available", e);
+        }
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package in.gov.manipur.rccms.service;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Replay Filter
+ * Compact, rotating in-memory record of redeemed token IDs.
+ *
+ * Two Bloom filter generations are kept; the current one receives new IDs and
+ * both are consulted on lookup. Generations rotate every {@code period}, so an
+ * ID is remembered for at least one full period - callers must use a period no
+ * shorter than the lifetime of the tokens they protect.
+ *
+ * A false positive makes a fresh token look replayed (the user simply fetches a
+ * new challenge); a replayed token is never accepted.
+ */
+public class ReplayFilter {
+
+    private static final int STRIPES = 64;
+
+    private final long periodMillis;
+    private final int bits;
+    private final int hashes;
+    private final Object[] stripes = new Object[STRIPES];
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    /**
+     * @param period rotation period (at least the token lifetime)
+     * @param expectedInsertionsPerPeriod expected number of IDs recorded per period
+     * @param falsePositiveRate target false positive rate per generation
+     */
+    public ReplayFilter(Duration period, int expectedInsertionsPerPeriod, double falsePositiveRate) {
+        this.periodMillis = period.toMillis();
+        long m = (long) Math.ceil(-expectedInsertionsPerPeriod * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, m));
+        this.hashes = Math.max(1, (int) Math.round((double) bits / expectedInsertionsPerPeriod * Math.log(2)));
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+        long now = System.currentTimeMillis();
+        this.current = new Generation(bits, now);
+        this.previous = new Generation(bits, now - periodMillis);
+    }
+
+    /**
+     * Record an ID if it has not been seen before
+     * @return true if the ID was new (first redemption), false if it may have been seen already
+     */
+    public boolean markIfAbsent(byte[] id) {
+        rotateIfDue();
+        long h1 = hash1(id);
+        long h2 = hash2(id);
+        synchronized (stripes[(int) (h1 & (STRIPES - 1))]) {
+            Generation cur = current;
+            if (cur.contains(h1, h2, bits, hashes) || previous.contains(h1, h2, bits, hashes)) {
+                return false;
+            }
+            cur.add(h1, h2, bits, hashes);
+            return true;
+        }
+    }
+
+    /**
+     * Check whether an ID may have been recorded
+     */
+    public boolean mightContain(byte[] id) {
+        rotateIfDue();
+        long h1 = hash1(id);
+        long h2 = hash2(id);
+        return current.contains(h1, h2, bits, hashes) || previous.contains(h1, h2, bits, hashes);
+    }
+
+    /**
+     * Memory held by both generations in bytes
+     */
+    public long sizeInBytes() {
+        return 2L * ((bits + 63) / 64) * Long.BYTES;
+    }
+
+    private void rotateIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - current.startedAt < periodMillis) {
+            return;
+        }
+        synchronized (this) {
+            if (now - current.startedAt >= periodMillis) {
+                previous = current;
+                current = new Generation(bits, now);
+            }
+        }
+    }
+
+    private static long hash1(byte[] id) {
+        return mix(ByteBuffer.wrap(pad(id)).getLong(0));
+    }
+
+    private static long hash2(byte[] id) {
+        return mix(ByteBuffer.wrap(pad(id)).getLong(8)) | 1L;
+    }
+
+    private static byte[] pad(byte[] id) {
+        if (id.length >= 16) {
+            return id;
+        }
+        byte[] padded = new byte[16];
+        System.arraycopy(id, 0, padded, 0, id.length);
+        return padded;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    /**
+     * One Bloom filter generation
+     */
+    private static final class Generation {
+        private final AtomicLongArray words;
+        private final long startedAt;
+
+        private Generation(int bits, long startedAt) {
+            this.words = new AtomicLongArray((bits + 63) / 64);
+            this.startedAt = startedAt;
+        }
+
+        private boolean contains(long h1, long h2, int bits, int hashes) {
+            for (int i = 0; i < hashes; i++) {
+                int bit = (int) Long.remainderUnsigned(h1 + i * h2, bits);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void add(long h1, long h2, int bits, int hashes) {
+            for (int i = 0; i < hashes; i++) {
+                int bit = (int) Long.remainderUnsigned(h1 + i * h2, bits);
+                long mask = 1L << bit;
+                words.getAndUpdate(bit >>> 6, w -> w | mask);
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package in.gov.manipur.rccms.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Request Rate Monitor
+ * Tracks the combined request rate of the abuse-prone auth endpoints
+ * (password login and send-OTP) over a sliding window of one-second buckets.
+ * Used to adapt the proof-of-work difficulty.
+ */
+@Component
+public class RequestRateMonitor {
+
+    private static final int WINDOW_SECONDS = 10;
+
+    private final AtomicLongArray counts = new AtomicLongArray(WINDOW_SECONDS);
+    private final AtomicLongArray seconds = new AtomicLongArray(WINDOW_SECONDS);
+
+    /**
+     * Record one request
+     */
+    public void record() {
+        long second = System.currentTimeMillis() / 1000;
+        int slot = (int) (second % WINDOW_SECONDS);
+        long stamp = seconds.get(slot);
+        if (stamp != second && seconds.compareAndSet(slot, stamp, second)) {
+            counts.set(slot, 0); // First request of a new second reuses the slot
+        }
+        counts.incrementAndGet(slot);
+    }
+
+    /**
+     * Average requests per second over the window
+     */
+    public double currentRate() {
+        long now = System.currentTimeMillis() / 1000;
+        long total = 0;
+        for (int i = 0; i < WINDOW_SECONDS; i++) {
+            if (now - seconds.get(i) < WINDOW_SECONDS) {
+                total += counts.get(i);
+            }
+        }
+        return (double) total / WINDOW_SECONDS;
+    }
+}
@@ -0,0 +1,166 @@
+package in.gov.manipur.rccms.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Stateless CAPTCHA store
+ * Enabled with app.captcha.store=signed
+ *
+ * Nothing is written per CAPTCHA. The captchaId handed to the client is a
+ * self-expiring token signed with HMAC-SHA256:
+ * <pre>
+ *   tokenId(16) | expiresAt(8) | salt(8) | HMAC(answerKey, salt | answer)(16) | HMAC(signKey, payload)(16)
+ * </pre>
+ * Verification is pure CPU. Redeemed token IDs go into a rotating
+ * ReplayFilter so a token cannot be used twice within its lifetime.
+ *
+ * Single node only: the replay filter lives in this node's memory, so behind a
+ * load balancer a token redeemed on one node could be redeemed again on each
+ * of the others. Startup fails when app.rate-limit.mode=cluster; clustered
+ * deployments use the jpa store, whose conditional UPDATE is shared.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.captcha.store", havingValue = "signed")
+public class SignedTokenCaptchaStore implements CaptchaStore {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int ID_LENGTH = 16;
+    private static final int SALT_LENGTH = 8;
+    private static final int HASH_LENGTH = 16;
+    private static final int PAYLOAD_LENGTH = ID_LENGTH + Long.BYTES + SALT_LENGTH + HASH_LENGTH;
+    private static final int TOKEN_LENGTH = PAYLOAD_LENGTH + HASH_LENGTH;
+    private static final SecureRandom secureRandom = new SecureRandom();
+
+    private final ThreadLocal<Mac> answerMac;
+    private final ThreadLocal<Mac> signMac;
+    private final ReplayFilter replayFilter;
+
+    public SignedTokenCaptchaStore(@Value("${app.captcha.signing-key:MySecretKeyForCaptchaTokenSigning1234567890}") String signingKey,
+                                   @Value("${app.captcha.signed.expected-per-period:500000}") int expectedPerPeriod,
+                                   @Value("${app.rate-limit.mode:local}") String rateLimitMode) {
+        if ("cluster".equals(rateLimitMode)) {
+            throw new IllegalStateException("app.captcha.store=signed keeps redeemed CAPTCHAs per node and cannot be used "
+                    + "with app.rate-limit.mode=cluster; use app.captcha.store=jpa");
+        }
+        byte[] master = signingKey.getBytes(StandardCharsets.UTF_8);
+        byte[] answerKey = deriveKey(master, "captcha-answer");
+        byte[] signKey = deriveKey(master, "captcha-sign");
+        this.answerMac = ThreadLocal.withInitial(() -> newMac(answerKey));
+        this.signMac = ThreadLocal.withInitial(() -> newMac(signKey));
+        // CAPTCHAs live for 10 minutes; rotating every 10 minutes keeps IDs for 10-20 minutes
+        this.replayFilter = new ReplayFilter(Duration.ofMinutes(10), expectedPerPeriod, 1e-6);
+        log.info("Signed CAPTCHA store initialised (replay filter: {} KB)", replayFilter.sizeInBytes() / 1024);
+    }
+
+    @Override
+    public String save(String captchaText, String ipAddress, Duration ttl) {
+        ByteBuffer buffer = ByteBuffer.allocate(TOKEN_LENGTH);
+        byte[] id = new byte[ID_LENGTH];
+        byte[] salt = new byte[SALT_LENGTH];
+        secureRandom.nextBytes(id);
+        secureRandom.nextBytes(salt);
+
+        buffer.put(id);
+        buffer.putLong(System.currentTimeMillis() + ttl.toMillis());
+        buffer.put(salt);
+        buffer.put(answerHash(salt, captchaText));
+        buffer.put(sign(buffer.array()));
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    @Override
+    public boolean isValid(String captchaId, String captchaText) {
+        byte[] token = verify(captchaId, captchaText);
+        return token != null && !replayFilter.mightContain(Arrays.copyOf(token, ID_LENGTH));
+    }
+
+    @Override
+    public boolean consume(String captchaId, String captchaText) {
+        byte[] token = verify(captchaId, captchaText);
+        return token != null && replayFilter.markIfAbsent(Arrays.copyOf(token, ID_LENGTH));
+    }
+
+    @Override
+    public void purgeExpired() {
+        // Tokens expire by themselves; the replay filter rotates on access
+    }
+
+    /**
+     * Decode a token and check signature, expiry and answer
+     * @return decoded token bytes, or null if invalid
+     */
+    private byte[] verify(String captchaId, String captchaText) {
+        byte[] token;
+        try {
+            token = Base64.getUrlDecoder().decode(captchaId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (token.length != TOKEN_LENGTH) {
+            return null;
+        }
+
+        byte[] signature = Arrays.copyOfRange(token, PAYLOAD_LENGTH, TOKEN_LENGTH);
+        if (!MessageDigest.isEqual(signature, sign(token))) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(token);
+        long expiresAt = buffer.getLong(ID_LENGTH);
+        if (expiresAt <= System.currentTimeMillis()) {
+            return null;
+        }
+
+        byte[] salt = Arrays.copyOfRange(token, ID_LENGTH + Long.BYTES, ID_LENGTH + Long.BYTES + SALT_LENGTH);
+        byte[] expectedHash = Arrays.copyOfRange(token, PAYLOAD_LENGTH - HASH_LENGTH, PAYLOAD_LENGTH);
+        if (!MessageDigest.isEqual(expectedHash, answerHash(salt, captchaText))) {
+            return null;
+        }
+        return token;
+    }
+
+    private byte[] answerHash(byte[] salt, String captchaText) {
+        Mac mac = answerMac.get();
+        mac.update(salt);
+        return Arrays.copyOf(mac.doFinal(captchaText.getBytes(StandardCharsets.UTF_8)), HASH_LENGTH);
+    }
+
+    /**
+     * Sign the payload part of a token buffer
+     */
+    private byte[] sign(byte[] token) {
+        Mac mac = signMac.get();
+        mac.update(token, 0, PAYLOAD_LENGTH);
+        return Arrays.copyOf(mac.doFinal(), HASH_LENGTH);
+    }
+
+    private static byte[] deriveKey(byte[] master, String purpose) {
+        return newMac(master).doFinal(purpose.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Mac newMac(byte[] key) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(key, HMAC_ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 not available", e);
+        }
+    }
+}
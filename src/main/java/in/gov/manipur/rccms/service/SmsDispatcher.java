@@ -0,0 +1,404 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.entity.SmsOutbox;
+import in.gov.manipur.rccms.exception.TooManyRequestsException;
+import in.gov.manipur.rccms.repository.SmsOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SMS Dispatcher
+ *
+ * Drains the sms_outbox table on a background thread:
+ * - claims a batch of due rows with FOR UPDATE SKIP LOCKED, so several nodes can dispatch
+ * - a claim counts as an attempt and leases the row for lease-seconds; if the node dies
+ *   mid-send the row becomes due again and is retried under the same send id
+ * - decrypts the message bodies and sends the batch on a fixed pool of sender threads
+ *   (bounded gateway concurrency), grouped into multi-recipient requests where the
+ *   provider supports them
+ * - records all outcomes in one transaction: sent, retry with exponential backoff and
+ *   jitter, or failed after max-attempts or once the message has expired
+ *
+ * The dispatcher polls every poll-interval-ms and is woken up early when a new message
+ * is committed (see SmsOutboxService). Messages sent with sendUnqueued skip the table
+ * and go straight to the sender pool; their retries wait on a scheduler thread, not
+ * on a sender. The sender queue holds at most queue-capacity sends: beyond that an
+ * unqueued send is refused with 429 and a dispatch chunk is sent on the dispatcher
+ * thread itself.
+ */
+@Slf4j
+@Component
+public class SmsDispatcher {
+
+    private static final int MAX_ERROR_LENGTH = 255;
+
+    private final SmsOutboxRepository smsOutboxRepository;
+    private final SmsService smsService;
+    private final ExpiredRowCleanupService cleanupService;
+    private final EncryptionService encryptionService;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor senders;
+    private final ScheduledExecutorService retries;
+    private final Semaphore wakeUps = new Semaphore(0);
+    private final int batchSize;
+    private final long pollIntervalMs;
+    private final int maxAttempts;
+    private final long leaseSeconds;
+    private final Counter sent;
+    private final Counter retried;
+    private final Counter failed;
+    private final Counter rejectedUnqueued;
+    private final Counter rejectedChunks;
+    private final Timer deliveryDelay;
+    private Thread dispatcher;
+
+    public SmsDispatcher(SmsOutboxRepository smsOutboxRepository,
+                         SmsService smsService,
+                         ExpiredRowCleanupService cleanupService,
+                         EncryptionService encryptionService,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${app.sms.outbox.batch-size:50}") int batchSize,
+                         @Value("${app.sms.outbox.concurrency:8}") int concurrency,
+                         @Value("${app.sms.outbox.queue-capacity:1000}") int queueCapacity,
+                         @Value("${app.sms.outbox.poll-interval-ms:1000}") long pollIntervalMs,
+                         @Value("${app.sms.outbox.max-attempts:5}") int maxAttempts,
+                         @Value("${app.sms.outbox.lease-seconds:60}") long leaseSeconds,
+                         MeterRegistry meterRegistry) {
+        this.smsOutboxRepository = smsOutboxRepository;
+        this.smsService = smsService;
+        this.cleanupService = cleanupService;
+        this.encryptionService = encryptionService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.batchSize = batchSize;
+        this.pollIntervalMs = pollIntervalMs;
+        this.maxAttempts = maxAttempts;
+        this.leaseSeconds = leaseSeconds;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.senders = new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, "sms-sender-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.retries = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "sms-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.sent = outcomeCounter("sent", meterRegistry);
+        this.retried = outcomeCounter("retried", meterRegistry);
+        this.failed = outcomeCounter("failed", meterRegistry);
+        this.rejectedUnqueued = rejectedCounter("unqueued", meterRegistry);
+        this.rejectedChunks = rejectedCounter("dispatch", meterRegistry);
+        Gauge.builder("rccms.sms.sender.queue.depth", senders.getQueue(), BlockingQueue::size)
+                .description("Sends waiting for a sender thread")
+                .register(meterRegistry);
+        this.deliveryDelay = Timer.builder("rccms.sms.outbox.delivery.delay")
+                .description("Time from queuing an SMS to the gateway accepting it")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        dispatcher = new Thread(this::run, "sms-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+        retries.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    /**
+     * Trigger a dispatch run without waiting for the next poll
+     */
+    public void wakeUp() {
+        if (wakeUps.availablePermits() == 0) {
+            wakeUps.release();
+        }
+    }
+
+    /**
+     * Send one message on the sender pool without an outbox row
+     * Failed sends are retried with the same backoff until max-attempts or the validity ends;
+     * if the node stops first the message is lost.
+     * @return send id of the message
+     * @throws TooManyRequestsException if the sender queue is full
+     */
+    public String sendUnqueued(String mobileNumber, String message, Duration validity) {
+        LocalDateTime queuedAt = LocalDateTime.now();
+        SmsGateway.Message sms = new SmsGateway.Message(UUID.randomUUID().toString(), mobileNumber, message);
+        try {
+            senders.execute(() -> deliverUnqueued(sms, queuedAt, queuedAt.plus(validity), 1));
+        } catch (RejectedExecutionException e) {
+            rejectedUnqueued.increment();
+            throw new TooManyRequestsException("SMS service is busy. Please try again shortly.", 5);
+        }
+        return sms.sendId();
+    }
+
+    /**
+     * Delete sent and failed messages past the retention period
+     */
+    @Scheduled(fixedDelayString = "${app.cleanup.interval-ms:60000}")
+    public void purgeFinished() {
+        long deleted = cleanupService.cleanupSmsOutbox();
+        log.debug("Cleaned up {} finished SMS outbox rows", deleted);
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (dispatchBatch() < batchSize) {
+                    wakeUps.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS);
+                    wakeUps.drainPermits();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("SMS dispatch run failed", e);
+                try {
+                    Thread.sleep(pollIntervalMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Claim, send and settle one batch
+     * @return number of messages claimed
+     */
+    private int dispatchBatch() throws InterruptedException {
+        LocalDateTime now = LocalDateTime.now();
+        List<SmsOutbox> batch = transactionTemplate.execute(status -> {
+            List<SmsOutbox> due = smsOutboxRepository.lockDueBatch(now, batchSize);
+            for (SmsOutbox sms : due) {
+                sms.setAttempts(sms.getAttempts() + 1);
+                sms.setNextAttemptAt(now.plusSeconds(leaseSeconds));
+            }
+            return due;
+        });
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+
+        int chunkSize = Math.max(1, smsService.maxBatchSize());
+        List<Future<List<Runnable>>> outcomes = new ArrayList<>();
+        for (int from = 0; from < batch.size(); from += chunkSize) {
+            List<SmsOutbox> chunk = batch.subList(from, Math.min(batch.size(), from + chunkSize));
+            try {
+                outcomes.add(senders.submit(() -> send(chunk)));
+            } catch (RejectedExecutionException e) {
+                rejectedChunks.increment(); // Sender queue full of unqueued sends: send this chunk here
+                outcomes.add(CompletableFuture.completedFuture(send(chunk)));
+            }
+        }
+        List<Runnable> updates = new ArrayList<>(batch.size());
+        for (Future<List<Runnable>> outcome : outcomes) {
+            try {
+                updates.addAll(outcome.get());
+            } catch (ExecutionException e) {
+                log.error("SMS sender failed unexpectedly", e.getCause()); // Rows are retried after their lease
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> updates.forEach(Runnable::run));
+        return batch.size();
+    }
+
+    /**
+     * Send one provider request worth of messages and return the updates that record the outcomes
+     */
+    private List<Runnable> send(List<SmsOutbox> chunk) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Runnable> updates = new ArrayList<>(chunk.size());
+        Map<String, SmsOutbox> bySendId = new HashMap<>();
+        List<SmsGateway.Message> messages = new ArrayList<>(chunk.size());
+        for (SmsOutbox sms : chunk) {
+            if (sms.getExpiresAt().isAfter(now)) {
+                String text;
+                try {
+                    text = decryptMessage(sms);
+                } catch (RuntimeException e) {
+                    failed.increment();
+                    log.error("SMS {} cannot be decrypted: {}", sms.getSendId(), e.getMessage());
+                    updates.add(() -> smsOutboxRepository.markFailed(sms.getId(), "Message cannot be decrypted"));
+                    continue;
+                }
+                bySendId.put(sms.getSendId(), sms);
+                messages.add(new SmsGateway.Message(sms.getSendId(), sms.getMobileNumber(), text));
+            } else {
+                failed.increment();
+                log.warn("SMS {} expired before it could be delivered", sms.getSendId());
+                updates.add(() -> smsOutboxRepository.markFailed(sms.getId(), "Expired before delivery"));
+            }
+        }
+        if (messages.isEmpty()) {
+            return updates;
+        }
+
+        try {
+            for (SmsGateway.Result result : smsService.send(messages)) {
+                SmsOutbox sms = bySendId.remove(result.sendId());
+                if (sms == null) {
+                    continue;
+                }
+                if (result.accepted()) {
+                    sent.increment();
+                    deliveryDelay.record(Duration.between(sms.getCreatedAt(), LocalDateTime.now()));
+                    updates.add(() -> smsOutboxRepository.markSent(sms.getId(), result.providerMessageId(), LocalDateTime.now()));
+                } else {
+                    updates.add(failure(sms, result.error()));
+                }
+            }
+            for (SmsOutbox missing : bySendId.values()) {
+                updates.add(failure(missing, "No result from provider"));
+            }
+        } catch (RuntimeException e) {
+            for (SmsOutbox sms : bySendId.values()) {
+                updates.add(failure(sms, e.getMessage()));
+            }
+        }
+        return updates;
+    }
+
+    private String decryptMessage(SmsOutbox sms) {
+        if (sms.getMessageKeyVersion() == null) {
+            return sms.getMessage(); // Queued before bodies were encrypted
+        }
+        return encryptionService.decrypt(sms.getMessage(), sms.getMessageKeyVersion());
+    }
+
+    private void deliverUnqueued(SmsGateway.Message sms, LocalDateTime queuedAt, LocalDateTime expiresAt, int attempt) {
+        String error;
+        try {
+            SmsGateway.Result result = smsService.send(List.of(sms)).stream()
+                    .filter(r -> r.sendId().equals(sms.sendId()))
+                    .findFirst()
+                    .orElse(null);
+            if (result != null && result.accepted()) {
+                sent.increment();
+                deliveryDelay.record(Duration.between(queuedAt, LocalDateTime.now()));
+                return;
+            }
+            error = truncate(result == null ? "No result from provider" : result.error());
+        } catch (RuntimeException e) {
+            error = truncate(e.getMessage());
+        }
+
+        Duration delay = backoff(attempt);
+        if (attempt >= maxAttempts || LocalDateTime.now().plus(delay).isAfter(expiresAt)) {
+            failed.increment();
+            log.error("SMS {} failed after {} attempts: {}", sms.sendId(), attempt, error);
+            return;
+        }
+        retried.increment();
+        log.warn("SMS {} attempt {} failed, retrying in {} ms: {}", sms.sendId(), attempt, delay.toMillis(), error);
+        try {
+            // The sender thread is free for other messages while this one waits
+            retries.schedule(() -> retryUnqueued(sms, queuedAt, expiresAt, attempt + 1),
+                    delay.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debug("SMS {} not retried: shutting down", sms.sendId());
+        }
+    }
+
+    private void retryUnqueued(SmsGateway.Message sms, LocalDateTime queuedAt, LocalDateTime expiresAt, int attempt) {
+        try {
+            senders.execute(() -> deliverUnqueued(sms, queuedAt, expiresAt, attempt));
+        } catch (RejectedExecutionException e) {
+            rejectedUnqueued.increment();
+            failed.increment();
+            log.error("SMS {} dropped before attempt {}: sender queue full", sms.sendId(), attempt);
+        }
+    }
+
+    /**
+     * Retry with backoff, or give up after max-attempts
+     */
+    private Runnable failure(SmsOutbox sms, String reason) {
+        String error = truncate(reason);
+        if (sms.getAttempts() >= maxAttempts) {
+            failed.increment();
+            log.error("SMS {} failed after {} attempts: {}", sms.getSendId(), sms.getAttempts(), error);
+            return () -> smsOutboxRepository.markFailed(sms.getId(), error);
+        }
+        retried.increment();
+        LocalDateTime nextAttemptAt = LocalDateTime.now().plus(backoff(sms.getAttempts()));
+        log.warn("SMS {} attempt {} failed, retrying at {}: {}", sms.getSendId(), sms.getAttempts(), nextAttemptAt, error);
+        return () -> smsOutboxRepository.markRetry(sms.getId(), nextAttemptAt, error);
+    }
+
+    /**
+     * Exponential backoff (2s, 4s, 8s, ... capped at one minute) with +/-20% jitter
+     */
+    private Duration backoff(int attempts) {
+        long millis = Math.min(60_000L, 2_000L << Math.min(attempts - 1, 10));
+        double jitter = 0.8 + ThreadLocalRandom.current().nextDouble() * 0.4;
+        return Duration.ofMillis((long) (millis * jitter));
+    }
+
+    private static String truncate(String error) {
+        if (error == null) {
+            return "Unknown error";
+        }
+        return error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+
+    private static Counter rejectedCounter(String kind, MeterRegistry meterRegistry) {
+        return Counter.builder("rccms.sms.sender.rejected")
+                .description("Sends refused by the full sender queue")
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+
+    private static Counter outcomeCounter(String outcome, MeterRegistry meterRegistry) {
+        return Counter.builder("rccms.sms.outbox.messages")
+                .description("SMS outbox send attempts by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
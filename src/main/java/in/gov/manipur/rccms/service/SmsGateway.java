@@ -0,0 +1,45 @@
+package in.gov.manipur.rccms.service;
+
+import java.util.List;
+
+/**
+ * SMS Gateway
+ * Provider SPI used by SmsService. One implementation per provider protocol.
+ * Implementations must be thread-safe and treat sendId as an idempotency key:
+ * a retried or hedged send of the same sendId must not reach the phone twice.
+ */
+public interface SmsGateway {
+
+    /**
+     * Maximum messages accepted in one send call (1 if the provider has no multi-recipient API)
+     */
+    int maxBatchSize();
+
+    /**
+     * Send a batch of at most maxBatchSize() messages in one provider request
+     *
+     * @return one result per message, in any order
+     * @throws in.gov.manipur.rccms.exception.SmsGatewayException if the request as a whole failed
+     */
+    List<Result> send(List<Message> messages);
+
+    /**
+     * Outgoing SMS
+     */
+    record Message(String sendId, String mobileNumber, String text) {
+    }
+
+    /**
+     * Per-message outcome; providerMessageId is set when accepted, error when not
+     */
+    record Result(String sendId, boolean accepted, String providerMessageId, String error) {
+
+        public static Result accepted(String sendId, String providerMessageId) {
+            return new Result(sendId, true, providerMessageId, null);
+        }
+
+        public static Result rejected(String sendId, String error) {
+            return new Result(sendId, false, null, error);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.entity.SmsOutbox;
+import in.gov.manipur.rccms.repository.SmsOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * SMS Outbox Service
+ * Queues SMS in the sms_outbox table as part of the caller's transaction.
+ * Message bodies are encrypted before they are written (they carry OTP codes).
+ * Nothing is sent if the transaction rolls back; after commit the dispatcher
+ * is woken up so delivery does not wait for its next poll.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional
+public class SmsOutboxService {
+
+    private final SmsOutboxRepository smsOutboxRepository;
+    private final SmsDispatcher smsDispatcher;
+    private final EncryptionService encryptionService;
+
+    /**
+     * Queue an SMS for delivery
+     *
+     * @param mobileNumber Mobile number to send SMS to
+     * @param message SMS message content (at most 340 characters once encrypted into the 500-character column)
+     * @param validity How long the message is worth delivering
+     * @return send id (idempotency key) of the queued message
+     */
+    public String enqueue(String mobileNumber, String message, Duration validity) {
+        LocalDateTime now = LocalDateTime.now();
+        SmsOutbox sms = new SmsOutbox();
+        sms.setSendId(UUID.randomUUID().toString());
+        sms.setMobileNumber(mobileNumber);
+        sms.setMessage(encryptionService.encrypt(message));
+        sms.setMessageKeyVersion(encryptionService.activeKeyVersion());
+        sms.setNextAttemptAt(now);
+        sms.setExpiresAt(now.plus(validity));
+        smsOutboxRepository.save(sms);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    smsDispatcher.wakeUp();
+                }
+            });
+        } else {
+            smsDispatcher.wakeUp();
+        }
+        return sms.getSendId();
+    }
+
+    /**
+     * Send an SMS without writing it to the outbox (lost if this node stops before delivery)
+     * Only for messages whose content is itself kept in memory, such as OTPs of the memory store
+     *
+     * @return send id of the message
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public String sendUnqueued(String mobileNumber, String message, Duration validity) {
+        return smsDispatcher.sendUnqueued(mobileNumber, message, validity);
+    }
+}
@@ -0,0 +1,162 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.exception.SmsGatewayException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SMS Provider
+ * A configured SmsGateway guarded by a concurrency limit and a circuit breaker,
+ * with per-provider latency, in-flight and error meters (tag: provider).
+ * Also keeps live routing statistics for SmsRouter: p50/p99 over the last
+ * LATENCY_WINDOW requests and an exponentially weighted error rate.
+ */
+public class SmsProvider {
+
+    private static final int LATENCY_WINDOW = 256;
+    private static final double ERROR_RATE_WEIGHT = 0.1;
+    private static final long STATS_REFRESH_NANOS = 500_000_000L;
+
+    private final String name;
+    private final SmsGateway gateway;
+    private final Semaphore permits;
+    private final long acquireTimeoutMs;
+    private final CircuitBreaker circuitBreaker;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Timer latency;
+    private final Counter errors;
+    private final long[] latencyWindow = new long[LATENCY_WINDOW];
+    private int latencyCount;
+    private int latencyNext;
+    private double errorRate;
+    private volatile Stats stats = new Stats(0, 0, 0, 0);
+    private long statsComputedAt;
+
+    public SmsProvider(String name, SmsGateway gateway, int maxConcurrency, long acquireTimeoutMs,
+                       CircuitBreaker circuitBreaker, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.gateway = gateway;
+        this.permits = new Semaphore(maxConcurrency);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.circuitBreaker = circuitBreaker;
+        this.latency = Timer.builder("rccms.sms.gateway.send")
+                .description("Latency of one provider send request")
+                .tag("provider", name)
+                .publishPercentiles(0.5, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.errors = Counter.builder("rccms.sms.gateway.errors")
+                .description("Failed provider send requests")
+                .tag("provider", name)
+                .register(meterRegistry);
+        Gauge.builder("rccms.sms.gateway.inflight", inFlight, AtomicInteger::get)
+                .description("Provider send requests in flight")
+                .tag("provider", name)
+                .register(meterRegistry);
+        Gauge.builder("rccms.sms.gateway.circuit.open", circuitBreaker, cb -> cb.state() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .description("1 while the provider's circuit breaker is open or half-open")
+                .tag("provider", name)
+                .register(meterRegistry);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int maxBatchSize() {
+        return gateway.maxBatchSize();
+    }
+
+    /**
+     * Whether the circuit breaker currently lets requests through
+     */
+    public boolean isAvailable() {
+        return circuitBreaker.isCallPermitted();
+    }
+
+    /**
+     * Live latency and error statistics, recomputed at most every 500 ms
+     */
+    public Stats stats() {
+        long now = System.nanoTime();
+        synchronized (latencyWindow) {
+            if (now - statsComputedAt >= STATS_REFRESH_NANOS) {
+                long[] sorted = Arrays.copyOf(latencyWindow, latencyCount);
+                Arrays.sort(sorted);
+                stats = latencyCount == 0
+                        ? new Stats(0, 0, errorRate, 0)
+                        : new Stats(sorted[(latencyCount - 1) / 2], sorted[(int) ((latencyCount - 1) * 0.99)],
+                                errorRate, latencyCount);
+                statsComputedAt = now;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Send one batch through the provider
+     * @throws SmsGatewayException if the provider is saturated, its circuit is open or the request failed
+     */
+    public List<SmsGateway.Result> send(List<SmsGateway.Message> messages) {
+        acquirePermit();
+        try {
+            if (!circuitBreaker.tryAcquire()) {
+                throw new SmsGatewayException(name + ": circuit open");
+            }
+            inFlight.incrementAndGet();
+            long start = System.nanoTime();
+            try {
+                List<SmsGateway.Result> results = gateway.send(messages);
+                circuitBreaker.recordSuccess();
+                record(System.nanoTime() - start, true);
+                return results;
+            } catch (RuntimeException e) {
+                circuitBreaker.recordFailure();
+                errors.increment();
+                record(System.nanoTime() - start, false);
+                throw e;
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void record(long nanos, boolean success) {
+        latency.record(nanos, TimeUnit.NANOSECONDS);
+        synchronized (latencyWindow) {
+            if (success) {
+                latencyWindow[latencyNext] = nanos;
+                latencyNext = (latencyNext + 1) % LATENCY_WINDOW;
+                latencyCount = Math.min(latencyCount + 1, LATENCY_WINDOW);
+            }
+            errorRate += ERROR_RATE_WEIGHT * ((success ? 0 : 1) - errorRate);
+        }
+    }
+
+    private void acquirePermit() {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SmsGatewayException(name + ": concurrency limit reached");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SmsGatewayException(name + ": interrupted", e);
+        }
+    }
+
+    /**
+     * Routing statistics: latency percentiles of successful sends (nanoseconds) and error rate
+     */
+    public record Stats(long p50Nanos, long p99Nanos, double errorRate, int samples) {
+    }
+}
@@ -0,0 +1,222 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.exception.SmsGatewayException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SMS Router (app.sms.routing=latency)
+ *
+ * Picks a provider per request from live statistics (see SmsProvider.stats()):
+ * score = (p50 + p99) / 2 / (1 - errorRate), i.e. the typical latency inflated by
+ * the retries the error rate implies. Providers with an open circuit are skipped,
+ * providers that have not been tried yet go first, providers that have only failed
+ * go last (least failing first), and a small share of requests goes to a random
+ * provider so statistics of slower providers stay current.
+ *
+ * With hedging enabled, a request the chosen provider has not accepted within the
+ * hedge deadline (hedge.after-ms, or the provider's live p99 when 0) is also sent
+ * to the next-best provider under the same send ids; the first accepted response
+ * wins. Send ids are only deduplicated within a provider, so a hedged OTP can
+ * arrive twice - with the same code. If the chosen provider fails before the
+ * deadline, the request goes to the next-best provider straight away. Hedging
+ * runs on at most hedge.max-threads threads; when they are all busy, a request
+ * is sent on the caller's thread without a hedge, and a hedge is sent on the
+ * caller's thread instead of waiting for the first provider.
+ */
+@Slf4j
+public class SmsRouter {
+
+    private static final double EXPLORATION_RATE = 0.05;
+    private static final long MIN_HEDGE_AFTER_MS = 100;
+    private static final double MAX_ERROR_RATE = 0.95;
+
+    private final List<SmsProvider> providers;
+    private final boolean hedgeEnabled;
+    private final long hedgeAfterMs;
+    private final ThreadPoolExecutor hedgeExecutor;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> selectedCounts = new ConcurrentHashMap<>();
+    private final Counter hedgesSent;
+    private final Counter failovers;
+    private final Counter hedgesRejected;
+
+    public SmsRouter(List<SmsProvider> providers, boolean hedgeEnabled, long hedgeAfterMs, int hedgeMaxThreads,
+                     MeterRegistry meterRegistry) {
+        this.providers = List.copyOf(providers);
+        this.hedgeEnabled = hedgeEnabled && providers.size() > 1;
+        this.hedgeAfterMs = hedgeAfterMs;
+        this.meterRegistry = meterRegistry;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.hedgeExecutor = new ThreadPoolExecutor(0, Math.max(2, hedgeMaxThreads), 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, "sms-hedge-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.hedgesSent = Counter.builder("rccms.sms.routing.hedges")
+                .description("Sends duplicated to a second provider after the hedge deadline")
+                .register(meterRegistry);
+        this.failovers = Counter.builder("rccms.sms.routing.failovers")
+                .description("Sends moved to a second provider after the first failed before the hedge deadline")
+                .register(meterRegistry);
+        this.hedgesRejected = Counter.builder("rccms.sms.routing.hedges.rejected")
+                .description("Sends or hedges run on the caller's thread because all hedge threads were busy")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Largest batch every provider accepts
+     */
+    public int maxBatchSize() {
+        return providers.stream().mapToInt(SmsProvider::maxBatchSize).min().orElse(1);
+    }
+
+    /**
+     * Route one batch to the best provider, hedging to the next-best if enabled
+     */
+    public List<SmsGateway.Result> send(List<SmsGateway.Message> messages) {
+        List<SmsProvider> ranked = rank();
+        SmsProvider first = ranked.get(0);
+        selected(first).increment();
+        if (!hedgeEnabled || ranked.size() < 2) {
+            return first.send(messages);
+        }
+
+        CompletableFuture<List<SmsGateway.Result>> firstSend;
+        try {
+            firstSend = CompletableFuture.supplyAsync(() -> first.send(messages), hedgeExecutor);
+        } catch (RejectedExecutionException e) {
+            hedgesRejected.increment();
+            return first.send(messages);
+        }
+        try {
+            return firstSend.get(hedgeDeadlineMs(first), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Fall through to the hedge
+        } catch (ExecutionException e) {
+            SmsProvider second = ranked.get(1);
+            failovers.increment();
+            log.debug("SMS to {} failed on {}, failing over to {}: {}", messages.size(), first.getName(),
+                    second.getName(), e.getCause().getMessage());
+            return second.send(messages);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SmsGatewayException("Interrupted while sending SMS", e);
+        }
+
+        SmsProvider second = ranked.get(1);
+        hedgesSent.increment();
+        log.debug("SMS to {} not accepted by {} within deadline, hedging to {}", messages.size(), first.getName(), second.getName());
+        CompletableFuture<List<SmsGateway.Result>> secondSend;
+        try {
+            secondSend = CompletableFuture.supplyAsync(() -> second.send(messages), hedgeExecutor);
+        } catch (RejectedExecutionException e) {
+            // No hedge thread left: hedge on this thread, and wait for the first send only if the hedge fails
+            hedgesRejected.increment();
+            try {
+                return second.send(messages);
+            } catch (RuntimeException hedgeError) {
+                return firstSuccessful(firstSend, CompletableFuture.failedFuture(hedgeError));
+            }
+        }
+        return firstSuccessful(firstSend, secondSend);
+    }
+
+    /**
+     * Providers ordered best first; open circuits last
+     */
+    private List<SmsProvider> rank() {
+        List<SmsProvider> ranked = new ArrayList<>(providers);
+        ranked.sort(Comparator.comparing((SmsProvider p) -> !p.isAvailable())
+                .thenComparingDouble(this::score)
+                .thenComparingDouble(p -> p.stats().errorRate()));
+        int available = (int) ranked.stream().filter(SmsProvider::isAvailable).count();
+        if (available > 1 && ThreadLocalRandom.current().nextDouble() < EXPLORATION_RATE) {
+            SmsProvider explore = ranked.remove(1 + ThreadLocalRandom.current().nextInt(available - 1));
+            ranked.add(0, explore);
+        }
+        return ranked;
+    }
+
+    private double score(SmsProvider provider) {
+        SmsProvider.Stats stats = provider.stats();
+        if (stats.samples() == 0) {
+            // Untried providers go first until they have statistics; providers that have only failed go last
+            return stats.errorRate() > 0 ? Double.MAX_VALUE : 0;
+        }
+        double typical = (stats.p50Nanos() + stats.p99Nanos()) / 2.0;
+        return typical / (1 - Math.min(stats.errorRate(), MAX_ERROR_RATE));
+    }
+
+    private long hedgeDeadlineMs(SmsProvider provider) {
+        if (hedgeAfterMs > 0) {
+            return hedgeAfterMs;
+        }
+        return Math.max(MIN_HEDGE_AFTER_MS, TimeUnit.NANOSECONDS.toMillis(provider.stats().p99Nanos()));
+    }
+
+    /**
+     * Result of whichever send succeeds first; fails only if both fail
+     */
+    private List<SmsGateway.Result> firstSuccessful(CompletableFuture<List<SmsGateway.Result>> a,
+                                                    CompletableFuture<List<SmsGateway.Result>> b) {
+        CompletableFuture<List<SmsGateway.Result>> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (CompletableFuture<List<SmsGateway.Result>> send : List.of(a, b)) {
+            send.whenComplete((results, error) -> {
+                if (error == null) {
+                    winner.complete(results);
+                } else if (failures.incrementAndGet() == 2) {
+                    winner.completeExceptionally(error);
+                }
+            });
+        }
+        try {
+            return winner.join();
+        } catch (CompletionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private Counter selected(SmsProvider provider) {
+        return selectedCounts.computeIfAbsent(provider.getName(), name -> Counter.builder("rccms.sms.routing.selected")
+                .description("Sends routed to a provider as first choice")
+                .tag("provider", name)
+                .register(meterRegistry));
+    }
+
+    private static RuntimeException unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        return new SmsGatewayException("SMS send failed", error);
+    }
+
+    /**
+     * Stop the hedge threads
+     */
+    public void shutdown() {
+        hedgeExecutor.shutdownNow();
+    }
+}
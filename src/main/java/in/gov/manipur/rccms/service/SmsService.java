@@ -1,40 +1,99 @@
 package in.gov.manipur.rccms.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import in.gov.manipur.rccms.config.SmsProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * SMS Service
- * Mock implementation - logs SMS to console
- * For production: Integrate with SMS gateway (Twilio, MSG91, etc.)
+ * Sends SMS through the providers configured under app.sms.providers
+ * (console by default - logs SMS to console).
+ * With app.sms.routing=latency every request is routed across all providers
+ * by SmsRouter; otherwise everything goes through the primary provider.
+ * Called by SmsDispatcher; use SmsOutboxService to queue messages.
  */
 @Slf4j
 @Service
 public class SmsService {
 
+    private final Map<String, SmsProvider> providers = new LinkedHashMap<>();
+    private final SmsProvider primary;
+    private final SmsRouter router;
+
+    public SmsService(SmsProperties smsProperties, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        smsProperties.getProviders().forEach((name, config) ->
+                providers.put(name, createProvider(name, config, objectMapper, meterRegistry)));
+        if (providers.isEmpty()) {
+            providers.put("console", createProvider("console", new SmsProperties.Provider(), objectMapper, meterRegistry));
+        }
+
+        String primaryName = smsProperties.getProvider();
+        if (primaryName == null || primaryName.isBlank()) {
+            primaryName = providers.keySet().iterator().next();
+        }
+        this.primary = providers.get(primaryName);
+        if (primary == null) {
+            throw new IllegalStateException("Unknown SMS provider: " + primaryName);
+        }
+
+        if ("latency".equals(smsProperties.getRouting())) {
+            this.router = new SmsRouter(new ArrayList<>(providers.values()),
+                    smsProperties.getHedge().isEnabled(), smsProperties.getHedge().getAfterMs(),
+                    smsProperties.getHedge().getMaxThreads(), meterRegistry);
+            log.info("SMS providers: {} (latency-aware routing, hedging {})", providers.keySet(),
+                    smsProperties.getHedge().isEnabled() ? "on" : "off");
+        } else {
+            this.router = null;
+            log.info("SMS providers: {} (sending via {})", providers.keySet(), primaryName);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (router != null) {
+            router.shutdown();
+        }
+    }
+
     /**
-     * Send SMS to mobile number
-     * Currently logs to console (SMS API will be integrated later)
-     * 
-     * @param mobileNumber Mobile number to send SMS to
-     * @param message SMS message content
+     * Largest batch the next send() call accepts
      */
-    public void sendSms(String mobileNumber, String message) {
-        log.info("");
-        log.info("╔════════════════════════════════════════════════════════════╗");
-        log.info("║                    DUMMY SMS (CONSOLE)                     ║");
-        log.info("╠════════════════════════════════════════════════════════════╣");
-        log.info("║ TO: {}", String.format("%-52s", mobileNumber) + "║");
-        log.info("║ MESSAGE: {}", String.format("%-47s", message) + "║");
-        log.info("╠════════════════════════════════════════════════════════════╣");
-        log.info("║ NOTE: This is a DUMMY SMS logged to console.              ║");
-        log.info("║       SMS API will be integrated later.                    ║");
-        log.info("╚════════════════════════════════════════════════════════════╝");
-        log.info("");
-        
-        // TODO: Integrate with SMS gateway
-        // Example: twilioService.sendSms(mobileNumber, message);
-        // Example: msg91Service.sendSms(mobileNumber, message);
+    public int maxBatchSize() {
+        return router != null ? router.maxBatchSize() : primary.maxBatchSize();
     }
-}
 
+    /**
+     * Send a batch of SMS in one provider request
+     *
+     * @param messages At most maxBatchSize() messages; each sendId is an idempotency key
+     * @return one result per message
+     * @throws in.gov.manipur.rccms.exception.SmsGatewayException if the request as a whole failed
+     */
+    public List<SmsGateway.Result> send(List<SmsGateway.Message> messages) {
+        return router != null ? router.send(messages) : primary.send(messages);
+    }
+
+    private static SmsProvider createProvider(String name, SmsProperties.Provider config,
+                                              ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        SmsGateway gateway = switch (config.getType()) {
+            case "console" -> new ConsoleSmsGateway();
+            case "stub" -> new StubSmsGateway(name, config.getBatchSize(), config.getLatencyMs(),
+                    config.getLatencyJitterMs(), config.getFailureRate());
+            case "http" -> new HttpSmsGateway(name, config.getUrl(), config.getApiKey(), config.getSenderId(),
+                    config.getBatchSize(), Duration.ofMillis(config.getConnectTimeoutMs()),
+                    Duration.ofMillis(config.getTimeoutMs()), objectMapper);
+            default -> throw new IllegalStateException("Unknown SMS provider type for " + name + ": " + config.getType());
+        };
+        return new SmsProvider(name, gateway, config.getMaxConcurrency(), config.getAcquireTimeoutMs(),
+                new CircuitBreaker(config.getFailureThreshold(), config.getOpenSeconds() * 1000), meterRegistry);
+    }
+}
@@ -0,0 +1,74 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.exception.SmsGatewayException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Stub SMS Gateway (type: stub)
+ * Local stand-in for a real provider, for load tests and failure drills:
+ * every request sleeps for latency-ms plus up to latency-jitter-ms and fails
+ * with probability failure-rate. Remembers recent send ids, so duplicate sends
+ * return the original provider message id like an idempotent provider would.
+ */
+@Slf4j
+public class StubSmsGateway implements SmsGateway {
+
+    private static final int REMEMBERED_SEND_IDS = 100_000;
+
+    private final String name;
+    private final int batchSize;
+    private final long latencyMs;
+    private final long latencyJitterMs;
+    private final double failureRate;
+    private final Map<String, String> accepted = new LinkedHashMap<>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > REMEMBERED_SEND_IDS;
+        }
+    };
+
+    public StubSmsGateway(String name, int batchSize, long latencyMs, long latencyJitterMs, double failureRate) {
+        this.name = name;
+        this.batchSize = batchSize;
+        this.latencyMs = latencyMs;
+        this.latencyJitterMs = latencyJitterMs;
+        this.failureRate = failureRate;
+    }
+
+    @Override
+    public int maxBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public List<Result> send(List<Message> messages) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = latencyMs + (latencyJitterMs > 0 ? random.nextLong(latencyJitterMs + 1) : 0);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SmsGatewayException(name + ": interrupted");
+        }
+        if (random.nextDouble() < failureRate) {
+            throw new SmsGatewayException(name + ": simulated failure");
+        }
+
+        List<Result> results = new ArrayList<>(messages.size());
+        synchronized (accepted) {
+            for (Message message : messages) {
+                String providerMessageId = accepted.computeIfAbsent(message.sendId(), id -> name + "-" + UUID.randomUUID());
+                results.add(Result.accepted(message.sendId(), providerMessageId));
+            }
+        }
+        log.debug("Stub provider {} accepted {} messages after {} ms", name, messages.size(), delay);
+        return results;
+    }
+}
@@ -0,0 +1,138 @@
+package in.gov.manipur.rccms.service;
+
+import java.util.Arrays;
+
+/**
+ * Hierarchical Timing Wheel
+ *
+ * Schedules long keys for expiry with O(1) insertion. Level 0 has 64 slots of
+ * one tick; each higher level has 64 slots of 64 times the span of the level
+ * below. When a lower level wraps around, the matching slot of the level above
+ * is cascaded down. Keys beyond the top level's range are parked in its last
+ * reachable slot and rescheduled when they come due.
+ *
+ * Not thread-safe; callers synchronise.
+ */
+public class TimingWheel {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    /**
+     * Receives keys whose scheduled tick has been reached
+     */
+    @FunctionalInterface
+    public interface ExpiryHandler {
+        void expire(long key, long expiresAtMillis);
+    }
+
+    private final long tickMillis;
+    private final Bucket[][] levels;
+    private long currentTick;
+
+    public TimingWheel(long tickMillis, int levelCount, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.levels = new Bucket[levelCount][SLOTS];
+        for (Bucket[] level : levels) {
+            for (int i = 0; i < SLOTS; i++) {
+                level[i] = new Bucket();
+            }
+        }
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    /**
+     * Schedule a key to expire at the given time
+     */
+    public void schedule(long key, long expiresAtMillis) {
+        long expiryTick = Math.max(currentTick + 1, (expiresAtMillis + tickMillis - 1) / tickMillis);
+        long delta = expiryTick - currentTick;
+        for (int level = 0; level < levels.length; level++) {
+            int shift = level * SLOT_BITS;
+            if (delta < (1L << (shift + SLOT_BITS)) || level == levels.length - 1) {
+                long slotTick = Math.min(expiryTick, currentTick + (1L << (shift + SLOT_BITS)) - (1L << shift));
+                levels[level][(int) ((slotTick >>> shift) & SLOT_MASK)].add(key, expiresAtMillis);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Advance the wheel to the given time, handing every due key to the handler
+     */
+    public void advance(long nowMillis, ExpiryHandler handler) {
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            cascade(1);
+            Bucket due = levels[0][(int) (currentTick & SLOT_MASK)];
+            Bucket drained = due.drain();
+            for (int i = 0; i < drained.size; i++) {
+                handler.expire(drained.keys[i], drained.expiries[i]);
+            }
+        }
+    }
+
+    /**
+     * Memory held by the wheel's slot arrays in bytes
+     */
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (Bucket[] level : levels) {
+            for (Bucket bucket : level) {
+                bytes += 2L * bucket.keys.length * Long.BYTES;
+            }
+        }
+        return bytes;
+    }
+
+    private void cascade(int level) {
+        if (level >= levels.length) {
+            return;
+        }
+        int shift = level * SLOT_BITS;
+        if ((currentTick & ((1L << shift) - 1)) != 0) {
+            return; // Level below has not wrapped
+        }
+        cascade(level + 1);
+        Bucket drained = levels[level][(int) ((currentTick >>> shift) & SLOT_MASK)].drain();
+        for (int i = 0; i < drained.size; i++) {
+            schedule(drained.keys[i], drained.expiries[i]);
+        }
+    }
+
+    /**
+     * Growable pair of parallel long arrays
+     */
+    private static final class Bucket {
+        private long[] keys = new long[0];
+        private long[] expiries = new long[0];
+        private int size;
+
+        private void add(long key, long expiresAt) {
+            if (size == keys.length) {
+                int capacity = Math.max(8, size * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                expiries = Arrays.copyOf(expiries, capacity);
+            }
+            keys[size] = key;
+            expiries[size] = expiresAt;
+            size++;
+        }
+
+        /**
+         * Hand over the contents and reset this bucket
+         */
+        private Bucket drain() {
+            Bucket drained = new Bucket();
+            drained.keys = keys;
+            drained.expiries = expiries;
+            drained.size = size;
+            keys = new long[0];
+            expiries = new long[0];
+            size = 0;
+            return drained;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package in.gov.manipur.rccms.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * User Membership Filter
+ *
+ * Bloom filters over the registered emails and mobile numbers, so lookups for
+ * identifiers that were never registered (typical of credential stuffing) are
+ * answered without a query. A miss is definite; a hit only means "maybe" and
+ * the caller still queries the database.
+ *
+ * The filters are built in the background after startup by streaming the users
+ * table; until then every identifier is a "maybe". Registrations on this node
+ * are added directly. Rows inserted by other nodes are picked up every
+ * sync-interval-ms by reading users above the highest id seen (re-reading the
+ * last SYNC_ID_OVERLAP ids, whose transactions may have committed out of order).
+ *
+ * Each filter is sized for expected-users at false-positive-rate, rounded up to
+ * a power of two bits (about 1.2 bytes per user at 1%, so 2 x 8 MB at 5M users).
+ * When the users outgrow that, the filters are rebuilt at twice the size.
+ * Users are never deleted, so no removal is needed.
+ */
+@Slf4j
+@Service
+public class UserMembershipFilter {
+
+    private static final int SYNC_ID_OVERLAP = 1000;
+    private static final int FETCH_SIZE = 10_000;
+
+    private final boolean enabled;
+    private final double falsePositiveRate;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Timer rebuildTime;
+    private final Counter skippedLookups;
+    private final AtomicLong highestId = new AtomicLong();
+    private volatile long expectedUsers;
+    private volatile Filters filters;  // null until the first build completes
+    private volatile Filters building; // Receives registrations while a rebuild streams the table
+
+    public UserMembershipFilter(@Value("${app.auth.membership.enabled:true}") boolean enabled,
+                                @Value("${app.auth.membership.expected-users:5000000}") long expectedUsers,
+                                @Value("${app.auth.membership.false-positive-rate:0.01}") double falsePositiveRate,
+                                JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.expectedUsers = expectedUsers;
+        this.falsePositiveRate = falsePositiveRate;
+        this.jdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true); // PostgreSQL only streams with a fetch size inside a transaction
+
+        this.rebuildTime = Timer.builder("rccms.auth.membership.rebuild")
+                .description("Time to rebuild the membership filters from the users table")
+                .register(meterRegistry);
+        this.skippedLookups = Counter.builder("rccms.auth.membership.skipped")
+                .description("User lookups answered as not registered without a query")
+                .register(meterRegistry);
+        Gauge.builder("rccms.auth.membership.bytes", this, f -> f.filters == null ? 0 : f.filters.bytes())
+                .description("Memory used by the membership filters")
+                .register(meterRegistry);
+        Gauge.builder("rccms.auth.membership.users", this, f -> f.filters == null ? 0 : f.filters.mobiles.count())
+                .description("Users added to the membership filters")
+                .register(meterRegistry);
+        Gauge.builder("rccms.auth.membership.fpp", this, f -> f.filters == null ? 1 : f.filters.mobiles.falsePositiveRate())
+                .description("Estimated false-positive rate of the membership filters (from the share of bits set)")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        Thread loader = new Thread(this::rebuild, "membership-filter-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Check if an email may be registered
+     * @return false only if the email is definitely not registered
+     */
+    public boolean mightHaveEmail(String email) {
+        Filters current = filters;
+        if (current == null || current.emails.mightContain(normalizeEmail(email))) {
+            return true;
+        }
+        skippedLookups.increment();
+        return false;
+    }
+
+    /**
+     * Check if a mobile number may be registered
+     * @return false only if the mobile number is definitely not registered
+     */
+    public boolean mightHaveMobile(String mobileNumber) {
+        Filters current = filters;
+        if (current == null || current.mobiles.mightContain(mobileNumber.trim())) {
+            return true;
+        }
+        skippedLookups.increment();
+        return false;
+    }
+
+    /**
+     * Add a user's identifiers (call before the insert commits, so no lookup sees a false miss)
+     */
+    public void add(String email, String mobileNumber) {
+        Filters current = filters;
+        Filters next = building;
+        if (current != null) {
+            current.add(normalizeEmail(email), mobileNumber.trim());
+        }
+        if (next != null) {
+            next.add(normalizeEmail(email), mobileNumber.trim());
+        }
+    }
+
+    /**
+     * Rebuild both filters by streaming the users table
+     */
+    public synchronized void rebuild() {
+        long start = System.nanoTime();
+        Filters next = new Filters(expectedUsers, falsePositiveRate);
+        building = next;
+        try {
+            long maxId = transactionTemplate.execute(status -> load(next, 0));
+            highestId.set(maxId);
+            filters = next;
+        } catch (RuntimeException e) {
+            log.error("Failed to build the membership filters; all lookups go to the database", e);
+            return;
+        } finally {
+            building = null;
+        }
+        long elapsed = System.nanoTime() - start;
+        rebuildTime.record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Membership filters built: {} users, {} KB, estimated false-positive rate {} in {} ms",
+                next.mobiles.count(), next.bytes() / 1024,
+                String.format(Locale.ROOT, "%.4f", next.mobiles.falsePositiveRate()),
+                TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    /**
+     * Add users inserted since the last sync (including those registered on other nodes)
+     */
+    @Scheduled(fixedDelayString = "${app.auth.membership.sync-interval-ms:5000}")
+    public synchronized void sync() {
+        Filters current = filters;
+        if (current == null) {
+            return;
+        }
+        long fromId = Math.max(0, highestId.get() - SYNC_ID_OVERLAP);
+        long maxId = transactionTemplate.execute(status -> load(current, fromId));
+        highestId.accumulateAndGet(maxId, Math::max);
+
+        if (current.mobiles.count() > expectedUsers) {
+            expectedUsers *= 2;
+            log.warn("Users outgrew the membership filters; rebuilding for {} users", expectedUsers);
+            rebuild();
+        }
+    }
+
+    /**
+     * Stream users with an id above fromId into the filters
+     * @return highest id read
+     */
+    private long load(Filters target, long fromId) {
+        long[] maxId = {fromId};
+        jdbcTemplate.query("SELECT id, email, mobile_number FROM users WHERE id > ?", rs -> {
+            target.add(normalizeEmail(rs.getString(2)), rs.getString(3).trim());
+            maxId[0] = Math.max(maxId[0], rs.getLong(1));
+        }, fromId);
+        return maxId[0];
+    }
+
+    private static String normalizeEmail(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * One filter per identifier kind
+     */
+    private static final class Filters {
+        private final BloomFilter emails;
+        private final BloomFilter mobiles;
+
+        Filters(long expectedUsers, double falsePositiveRate) {
+            this.emails = new BloomFilter(expectedUsers, falsePositiveRate);
+            this.mobiles = new BloomFilter(expectedUsers, falsePositiveRate);
+        }
+
+        void add(String email, String mobileNumber) {
+            emails.add(email);
+            mobiles.add(mobileNumber);
+        }
+
+        long bytes() {
+            return emails.bytes() + mobiles.bytes();
+        }
+    }
+
+    /**
+     * Bloom filter over strings with lock-free concurrent adds
+     *
+     * Bit positions come from double hashing (h1 + i * h2) of a 64-bit
+     * FNV-1a hash; the bit count is a power of two so positions are masked.
+     * Only adds that set at least one new bit are counted, so the re-reads of
+     * sync() do not inflate it; identifiers hidden by a false positive are not
+     * counted either, which undercounts by about the false-positive rate.
+     */
+    static final class BloomFilter {
+        private final AtomicLongArray words;
+        private final long mask;
+        private final int hashes;
+        private final AtomicLong count = new AtomicLong();
+
+        BloomFilter(long expectedEntries, double falsePositiveRate) {
+            double optimalBits = -Math.max(expectedEntries, 1) * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+            long bits = Math.max(64, Long.highestOneBit((long) Math.ceil(optimalBits) - 1) << 1);
+            this.words = new AtomicLongArray((int) (bits >>> 6));
+            this.mask = bits - 1;
+            this.hashes = Math.max(1, (int) Math.round(optimalBits / Math.max(expectedEntries, 1) * Math.log(2)));
+        }
+
+        void add(String value) {
+            long h1 = hash(value);
+            long h2 = mix(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+            boolean added = false;
+            for (int i = 0; i < hashes; i++) {
+                long bit = (h1 + i * h2) & mask;
+                int word = (int) (bit >>> 6);
+                long flag = 1L << bit;
+                long old = words.get(word);
+                while ((old & flag) == 0) {
+                    if (words.compareAndSet(word, old, old | flag)) {
+                        added = true;
+                        break;
+                    }
+                    old = words.get(word);
+                }
+            }
+            if (added) {
+                count.incrementAndGet();
+            }
+        }
+
+        boolean mightContain(String value) {
+            long h1 = hash(value);
+            long h2 = mix(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = (h1 + i * h2) & mask;
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long count() {
+            return count.get();
+        }
+
+        long bytes() {
+            return (long) words.length() * Long.BYTES;
+        }
+
+        /**
+         * (bits set / bits) ^ hashes
+         */
+        double falsePositiveRate() {
+            long set = 0;
+            for (int i = 0; i < words.length(); i++) {
+                set += Long.bitCount(words.get(i));
+            }
+            return Math.pow((double) set / (mask + 1), hashes);
+        }
+
+        private static long hash(String value) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                h = (h ^ value.charAt(i)) * 0x100000001b3L;
+            }
+            return mix(h);
+        }
+
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            return h ^ (h >>> 33);
+        }
+    }
+}
@@ -6,10 +6,17 @@ import in.gov.manipur.rccms.exception.DuplicateUserException;
 import in.gov.manipur.rccms.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
+
 /**
  * User Service
  * Handles user registration and management
@@ -20,10 +27,15 @@ import org.springframework.transaction.annotation.Transactional;
 @Transactional
 public class UserService {
 
+    private static final Pattern MOBILE_NUMBER = Pattern.compile("^[6-9]\\d{9}$");
+
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final EncryptionService encryptionService;
     private final OtpService otpService;
+    private final CryptoExecutor cryptoExecutor;
+    private final UserMembershipFilter membershipFilter;
+    private final AadharMigrationService aadharMigrationService;
 
     /**
      * Register a new citizen
@@ -31,6 +43,7 @@ public class UserService {
      * @return User ID
      * @throws DuplicateUserException if email/mobile/aadhar already exists
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // The insert is the only statement; OTP follows the commit
     public Long registerCitizen(UserRegistrationDTO dto) {
         if (dto == null) {
             throw new IllegalArgumentException("Registration data cannot be null");
@@ -44,23 +57,16 @@ public class UserService {
         log.info("Registering new citizen with email: {} and mobile: {}", 
                 maskEmail(dto.getEmail()), maskMobile(dto.getMobileNumber()));
 
-        // Check if email already exists
-        if (userRepository.existsByEmail(dto.getEmail())) {
-            log.warn("Registration failed: Email {} already exists", maskEmail(dto.getEmail()));
-            throw new DuplicateUserException("Email already registered");
-        }
-
-        // Check if mobile number already exists
-        if (userRepository.existsByMobileNumber(dto.getMobileNumber())) {
-            log.warn("Registration failed: Mobile number {} already exists", maskMobile(dto.getMobileNumber()));
-            throw new DuplicateUserException("Mobile number already registered");
-        }
+        // Hash password with BCrypt on the crypto pool while the Aadhar number is encrypted here
+        CompletableFuture<String> hashedPassword =
+                cryptoExecutor.submit("bcrypt.encode", () -> passwordEncoder.encode(dto.getPassword()));
+        String aadhar = dto.getAadharNumber().trim();
+        String encryptedAadhar = encryptionService.encrypt(aadhar);
+        byte[] aadharHash = encryptionService.blindIndex(aadhar);
 
-        // Encrypt Aadhar number first (for uniqueness check)
-        String encryptedAadhar = encryptionService.encrypt(dto.getAadharNumber().trim());
-        
-        // Check if Aadhar number already exists (check encrypted value)
-        if (userRepository.existsByAadharNumber(encryptedAadhar)) {
+        // Rows not yet given a blind index are only found by their legacy ciphertext
+        if (!aadharMigrationService.isComplete()
+                && userRepository.existsByAadharNumberAndAadharHashIsNull(encryptionService.encryptLegacy(aadhar))) {
             log.warn("Registration failed: Aadhar number already exists");
             throw new DuplicateUserException("Aadhar number already registered");
         }
@@ -81,32 +87,29 @@ public class UserService {
         user.setIsEmailVerified(false);
         user.setIsMobileVerified(false);
 
-        // Set encrypted Aadhar number
+        // Set encrypted Aadhar number and its blind index (the unique key)
         user.setAadharNumber(encryptedAadhar);
+        user.setAadharKeyVersion(encryptionService.activeKeyVersion());
+        user.setAadharHash(aadharHash);
 
-        // Hash password with BCrypt
-        String hashedPassword = passwordEncoder.encode(dto.getPassword());
-        user.setPassword(hashedPassword);
+        user.setPassword(cryptoExecutor.await(hashedPassword));
 
-        // Save user
-        User savedUser = userRepository.save(user);
-        log.info("Citizen registered successfully with ID: {}", savedUser.getId());
+        // Known to the membership filters before the insert commits (a rollback only adds a false positive)
+        membershipFilter.add(user.getEmail(), user.getMobileNumber());
 
-        // Flush to ensure user is persisted before OTP generation
-        userRepository.flush();
+        // Save user: one INSERT; the unique constraints on users detect duplicates
+        User savedUser;
+        try {
+            savedUser = userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            throw duplicateUser(e, user);
+        }
+        log.info("Citizen registered successfully with ID: {}", savedUser.getId());
 
-        // Generate and send DUMMY OTP for mobile verification (logged to console)
+        // Send the OTP for mobile verification
         // Allow inactive users for registration flow (allowInactive = true)
         try {
-            log.info("");
-            log.info("════════════════════════════════════════════════════════════");
-            log.info("GENERATING DUMMY OTP FOR REGISTRATION VERIFICATION");
-            log.info("════════════════════════════════════════════════════════════");
             otpService.generateOtp(savedUser.getMobileNumber(), User.UserType.CITIZEN, true);
-            log.info("════════════════════════════════════════════════════════════");
-            log.info("DUMMY OTP GENERATED AND LOGGED TO CONSOLE");
-            log.info("════════════════════════════════════════════════════════════");
-            log.info("");
         } catch (Exception e) {
             log.error("Failed to send OTP during registration", e);
             // Don't fail registration if OTP sending fails - registration is already successful
@@ -115,6 +118,32 @@ public class UserService {
         return savedUser.getId();
     }
 
+    /**
+     * Map a failed registration insert to the duplicate field
+     * Matches the constraint name, or the column in the database message for constraints
+     * created under generated names by older schema versions
+     */
+    private RuntimeException duplicateUser(DataIntegrityViolationException e, User user) {
+        String constraint = e.getCause() instanceof ConstraintViolationException violation
+                ? violation.getConstraintName() : null;
+        String detail = ((constraint == null ? "" : constraint) + " " + e.getMostSpecificCause().getMessage())
+                .toLowerCase(Locale.ROOT);
+
+        if (detail.contains(User.UK_EMAIL) || detail.contains("(email")) {
+            log.warn("Registration failed: Email {} already exists", maskEmail(user.getEmail()));
+            return new DuplicateUserException("Email already registered");
+        }
+        if (detail.contains(User.UK_MOBILE_NUMBER) || detail.contains("(mobile_number")) {
+            log.warn("Registration failed: Mobile number {} already exists", maskMobile(user.getMobileNumber()));
+            return new DuplicateUserException("Mobile number already registered");
+        }
+        if (detail.contains(User.UK_AADHAR_HASH) || detail.contains("(aadhar_hash")) {
+            log.warn("Registration failed: Aadhar number already exists");
+            return new DuplicateUserException("Aadhar number already registered");
+        }
+        return e;
+    }
+
     /**
      * Find user by email or mobile number
      */
@@ -127,28 +156,57 @@ public class UserService {
         String trimmedUsername = username.trim();
         
         // Check if it's a mobile number (10 digits starting with 6-9)
-        if (trimmedUsername.matches("^[6-9]\\d{9}$")) {
+        if (isMobileNumber(trimmedUsername)) {
+            if (!membershipFilter.mightHaveMobile(trimmedUsername)) {
+                throw new RuntimeException("User not found with mobile number: " + trimmedUsername);
+            }
             return userRepository.findByMobileNumber(trimmedUsername)
                     .orElseThrow(() -> new RuntimeException("User not found with mobile number: " + trimmedUsername));
         } else {
             // Treat as email
+            if (!membershipFilter.mightHaveEmail(trimmedUsername)) {
+                throw new RuntimeException("User not found with email: " + trimmedUsername);
+            }
             return userRepository.findByEmail(trimmedUsername.toLowerCase())
                     .orElseThrow(() -> new RuntimeException("User not found with email: " + trimmedUsername));
         }
     }
 
     /**
-     * Verify user credentials
+     * Find the login fields of a user by email or mobile number
+     * One SELECT of the projected columns; the full row (address, encrypted Aadhar) is not loaded
      */
     @Transactional(readOnly = true)
-    public User verifyUserCredentials(String username, String password) {
-        User user = findByEmailOrMobile(username);
-        
-        if (!passwordEncoder.matches(password, user.getPassword())) {
-            throw new RuntimeException("Invalid password");
+    public UserRepository.Credentials findCredentials(String username) {
+        if (username == null || username.trim().isEmpty()) {
+            throw new IllegalArgumentException("Username cannot be null or empty");
+        }
+
+        String trimmedUsername = username.trim();
+
+        // Identifiers the membership filters have never seen are rejected without a query
+        if (isMobileNumber(trimmedUsername)) {
+            if (!membershipFilter.mightHaveMobile(trimmedUsername)) {
+                throw new RuntimeException("User not found with mobile number: " + trimmedUsername);
+            }
+            return userRepository.findCredentialsByMobileNumber(trimmedUsername)
+                    .orElseThrow(() -> new RuntimeException("User not found with mobile number: " + trimmedUsername));
+        } else {
+            if (!membershipFilter.mightHaveEmail(trimmedUsername)) {
+                throw new RuntimeException("User not found with email: " + trimmedUsername);
+            }
+            return userRepository.findCredentialsByEmail(trimmedUsername.toLowerCase())
+                    .orElseThrow(() -> new RuntimeException("User not found with email: " + trimmedUsername));
         }
-        
-        return user;
+    }
+
+    /**
+     * Verify a password against a user's stored BCrypt hash
+     * Runs outside a transaction so no connection is held while BCrypt runs
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public boolean verifyPassword(UserRepository.Credentials credentials, String password) {
+        return cryptoExecutor.call("bcrypt.matches", () -> passwordEncoder.matches(password, credentials.getPassword()));
     }
 
     /**
@@ -171,16 +229,13 @@ public class UserService {
         User user = userRepository.findByMobileNumber(mobileNumber)
                 .orElseThrow(() -> new RuntimeException("User not found with mobile number: " + mobileNumber));
 
-        // Verify OTP
-        boolean isValidOtp = otpService.verifyOtp(mobileNumber, otpCode, user.getUserType());
+        // Verify and consume OTP
+        boolean isValidOtp = otpService.consumeOtp(mobileNumber, otpCode, user.getUserType());
         
         if (!isValidOtp) {
             throw new RuntimeException("Invalid or expired OTP");
         }
 
-        // Mark OTP as used
-        otpService.markOtpAsUsed(mobileNumber, otpCode, user.getUserType());
-
         // Activate user account
         user.setIsMobileVerified(true);
         user.setIsActive(true);
@@ -189,6 +244,13 @@ public class UserService {
         log.info("Mobile number verified and account activated for user ID: {}", user.getId());
     }
 
+    /**
+     * Check if a username is a mobile number (10 digits starting with 6-9)
+     */
+    private static boolean isMobileNumber(String username) {
+        return MOBILE_NUMBER.matcher(username).matches();
+    }
+
     /**
      * Mask email for logging
      */
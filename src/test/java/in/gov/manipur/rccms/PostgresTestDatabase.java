@@ -0,0 +1,45 @@
+package in.gov.manipur.rccms;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * One embedded PostgreSQL 14 server per test JVM, for tests of PostgreSQL-only SQL
+ * (partitions, concurrent index builds, catalog queries) that H2 cannot run
+ */
+public final class PostgresTestDatabase {
+
+    private static EmbeddedPostgres server;
+
+    private PostgresTestDatabase() {
+    }
+
+    /**
+     * The postgres database with an empty public schema
+     */
+    public static synchronized DataSource freshDatabase() {
+        if (server == null) {
+            try {
+                server = EmbeddedPostgres.start();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not start embedded PostgreSQL", e);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.close();
+                } catch (IOException ignored) {
+                    // Exiting anyway
+                }
+            }));
+        }
+        DataSource dataSource = server.getPostgresDatabase();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP SCHEMA public CASCADE");
+        jdbcTemplate.execute("CREATE SCHEMA public");
+        return dataSource;
+    }
+}
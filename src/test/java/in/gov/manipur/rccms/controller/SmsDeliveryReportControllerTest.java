@@ -0,0 +1,43 @@
+package in.gov.manipur.rccms.controller;
+
+import in.gov.manipur.rccms.dto.DeliveryReportDTO;
+import in.gov.manipur.rccms.exception.InvalidCredentialsException;
+import in.gov.manipur.rccms.service.DeliveryReportIngestor;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class SmsDeliveryReportControllerTest {
+
+    private static final List<DeliveryReportDTO> REPORTS = List.of(new DeliveryReportDTO("m1", "DELIVERED", null));
+
+    private final DeliveryReportIngestor ingestor = mock(DeliveryReportIngestor.class);
+
+    @Test
+    void refusesEveryRequestWhileNoTokenIsConfigured() {
+        SmsDeliveryReportController controller = new SmsDeliveryReportController(ingestor, "");
+
+        assertThatThrownBy(() -> controller.receiveDeliveryReports(null, REPORTS))
+                .isInstanceOf(InvalidCredentialsException.class);
+        assertThatThrownBy(() -> controller.receiveDeliveryReports("", REPORTS))
+                .isInstanceOf(InvalidCredentialsException.class);
+        verifyNoInteractions(ingestor);
+    }
+
+    @Test
+    void acceptsTheConfiguredToken() {
+        when(ingestor.submit(any())).thenReturn(1);
+        SmsDeliveryReportController controller = new SmsDeliveryReportController(ingestor, "secret");
+
+        assertThatThrownBy(() -> controller.receiveDeliveryReports("wrong", REPORTS))
+                .isInstanceOf(InvalidCredentialsException.class);
+        assertThat(controller.receiveDeliveryReports("secret", REPORTS).getStatusCode().value()).isEqualTo(202);
+    }
+}
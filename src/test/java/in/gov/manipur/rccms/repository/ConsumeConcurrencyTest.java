@@ -0,0 +1,104 @@
+package in.gov.manipur.rccms.repository;
+
+import in.gov.manipur.rccms.entity.Captcha;
+import in.gov.manipur.rccms.entity.Otp;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The conditional UPDATE behind CAPTCHA and OTP consumption must let exactly
+ * one of many concurrent redemptions of the same value through
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ConsumeConcurrencyTest {
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private CaptchaRepository captchaRepository;
+
+    @Autowired
+    private OtpRepository otpRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void concurrentCaptchaConsumeSucceedsOnce() throws Exception {
+        Captcha captcha = new Captcha();
+        captcha.setCaptchaText("AB12CD");
+        captcha.setExpiresAt(LocalDateTime.now().plusMinutes(5));
+        String captchaId = captchaRepository.save(captcha).getCaptchaId();
+
+        int consumed = race(() -> captchaRepository.consume(captchaId, "AB12CD", LocalDateTime.now()));
+
+        assertThat(consumed).isEqualTo(1);
+        assertThat(race(() -> captchaRepository.consume(captchaId, "AB12CD", LocalDateTime.now()))).isZero();
+    }
+
+    @Test
+    void concurrentOtpConsumeSucceedsOnce() throws Exception {
+        Otp otp = new Otp();
+        otp.setMobileNumber("9876543210");
+        otp.setUserType(Otp.UserType.CITIZEN);
+        otp.setOtpCodeHash("hash-of-123456");
+        otp.setExpiresAt(LocalDateTime.now().plusMinutes(5));
+        otpRepository.save(otp);
+
+        int consumed = race(() -> otpRepository.consume("9876543210", "hash-of-123456",
+                Otp.UserType.CITIZEN, LocalDateTime.now()));
+
+        assertThat(consumed).isEqualTo(1);
+    }
+
+    /**
+     * Run the consume on THREADS threads at once, each in its own transaction
+     * @return total rows consumed
+     */
+    private int race(IntSupplier consume) throws Exception {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                Callable<Integer> task = () -> {
+                    start.await();
+                    return transactionTemplate.execute(status -> consume.getAsInt());
+                };
+                results.add(executor.submit(task));
+            }
+            start.countDown();
+            int total = 0;
+            for (Future<Integer> result : results) {
+                total += result.get(30, TimeUnit.SECONDS);
+            }
+            return total;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
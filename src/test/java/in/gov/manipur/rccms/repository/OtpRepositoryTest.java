@@ -0,0 +1,85 @@
+package in.gov.manipur.rccms.repository;
+
+import in.gov.manipur.rccms.entity.Otp;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The OTP existence checks stop at the first matching row instead of counting them all
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "in.gov.manipur.rccms.repository.OtpRepositoryTest$RecordingInspector")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class OtpRepositoryTest {
+
+    private static final List<String> statements = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    private OtpRepository otpRepository;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 3; i++) {
+            Otp otp = new Otp();
+            otp.setMobileNumber("9876543210");
+            otp.setUserType(Otp.UserType.CITIZEN);
+            otp.setOtpCodeHash("hash");
+            otp.setIsUsed(false);
+            otp.setExpiresAt(LocalDateTime.now().plusMinutes(5));
+            otpRepository.saveAndFlush(otp);
+        }
+        statements.clear();
+    }
+
+    @Test
+    void existsValidOtpReadsOneRow() {
+        LocalDateTime now = LocalDateTime.now();
+
+        assertThat(otpRepository.existsByMobileNumberAndUserTypeAndOtpCodeHashAndIsUsedFalseAndExpiresAtAfter(
+                "9876543210", Otp.UserType.CITIZEN, "hash", now)).isTrue();
+        assertThat(otpRepository.existsByMobileNumberAndUserTypeAndOtpCodeHashAndIsUsedFalseAndExpiresAtAfter(
+                "9876543210", Otp.UserType.CITIZEN, "other", now)).isFalse();
+        assertThat(otpRepository.existsByMobileNumberAndUserTypeAndOtpCodeHashAndIsUsedFalseAndExpiresAtAfter(
+                "9876543210", Otp.UserType.CITIZEN, "hash", now.plusMinutes(10))).isFalse();
+
+        assertThat(statements).hasSize(3).allSatisfy(OtpRepositoryTest::assertSingleRowLookup);
+    }
+
+    @Test
+    void existsRecentUnusedReadsOneRow() {
+        LocalDateTime now = LocalDateTime.now();
+
+        assertThat(otpRepository.existsByMobileNumberAndUserTypeAndCreatedAtAfterAndIsUsedFalseAndExpiresAtAfter(
+                "9876543210", Otp.UserType.CITIZEN, now.minusMinutes(1), now)).isTrue();
+        assertThat(otpRepository.existsByMobileNumberAndUserTypeAndCreatedAtAfterAndIsUsedFalseAndExpiresAtAfter(
+                "9876543210", Otp.UserType.OPERATOR, now.minusMinutes(1), now)).isFalse();
+
+        assertThat(statements).hasSize(2).allSatisfy(OtpRepositoryTest::assertSingleRowLookup);
+    }
+
+    private static void assertSingleRowLookup(String sql) {
+        String lower = sql.toLowerCase(Locale.ROOT);
+        assertThat(lower).doesNotContain("count(").containsAnyOf("fetch first 1 rows only", "fetch first ? rows only", "limit");
+    }
+
+    public static class RecordingInspector implements StatementInspector {
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package in.gov.manipur.rccms.security;
+
+import in.gov.manipur.rccms.config.RateLimitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bucket lookups of AuthRateLimitFilter under contention: 64 threads, either
+ * spread over 100k client IPs (a botnet or busy NAT pool) or all on one IP,
+ * which serialises on a single stripe. Refill is fast enough that every call
+ * takes the allowed path.
+ *
+ * mvn -Pbenchmark test -DskipTests -Djmh.includes=AuthRateLimitFilterBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+public class AuthRateLimitFilterBenchmark {
+
+    private static final int DISTINCT_IPS = 100_000;
+
+    private AuthRateLimitFilter filter;
+    private String[] ipAddresses;
+
+    @Setup
+    public void setUp() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setRefillPerSecond(1_000_000);
+        filter = new AuthRateLimitFilter(properties, new ClientIpResolver(), budget -> 0,
+                (request, response, handler, ex) -> null, new SimpleMeterRegistry());
+        ipAddresses = new String[DISTINCT_IPS];
+        for (int i = 0; i < DISTINCT_IPS; i++) {
+            ipAddresses[i] = "10." + (i >> 16) + "." + ((i >> 8) & 0xff) + "." + (i & 0xff);
+        }
+    }
+
+    @Benchmark
+    public long distinctIps() {
+        return filter.tryConsume(ipAddresses[ThreadLocalRandom.current().nextInt(DISTINCT_IPS)], 1);
+    }
+
+    @Benchmark
+    public long sameIp() {
+        return filter.tryConsume("203.0.113.7", 1);
+    }
+}
@@ -0,0 +1,81 @@
+package in.gov.manipur.rccms.security;
+
+import in.gov.manipur.rccms.config.RateLimitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AuthRateLimitFilterTest {
+
+    private static final int MILLION = 1_000_000;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void aMillionDistinctIpsFitTheDocumentedBound() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setMaxBuckets(MILLION);
+        properties.setRefillPerSecond(0.001); // No bucket turns idle while the test runs
+        AuthRateLimitFilter filter = filter(properties);
+
+        for (int i = 0; i < MILLION; i++) {
+            assertThat(filter.tryConsume(ip(i), 1)).isZero();
+        }
+        // Stripes fill unevenly, so the fullest ones already pass a few IPs untracked
+        int tracked = filter.size();
+        assertThat(tracked).isGreaterThan(990_000);
+        assertThat(tracked + overflow()).isEqualTo(MILLION);
+        long tableBytes = tableBytes(filter);
+        assertThat(tableBytes).isLessThanOrEqualTo(42_000_000L); // ~42 MB, as the class comment states
+
+        // Another million IPs while every bucket is still active: passed untracked, no growth
+        for (int i = MILLION; i < 2 * MILLION; i++) {
+            assertThat(filter.tryConsume(ip(i), 1)).isZero();
+        }
+        assertThat(filter.size()).isLessThanOrEqualTo(MILLION);
+        assertThat(tableBytes(filter)).isEqualTo(tableBytes);
+        assertThat(filter.size() + overflow()).isEqualTo(2 * MILLION);
+    }
+
+    @Test
+    void refusesAnIpOnceItsBucketIsSpent() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setCapacity(3);
+        properties.setRefillPerSecond(0.5);
+        AuthRateLimitFilter filter = filter(properties);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(filter.tryConsume("203.0.113.7", 1)).isZero();
+        }
+        assertThat(filter.tryConsume("203.0.113.7", 1)).isBetween(1L, 2000L);
+        assertThat(filter.tryConsume("203.0.113.8", 1)).isZero();
+    }
+
+    private AuthRateLimitFilter filter(RateLimitProperties properties) {
+        return new AuthRateLimitFilter(properties, new ClientIpResolver(), budget -> 0,
+                (request, response, handler, ex) -> null, meterRegistry);
+    }
+
+    private double overflow() {
+        return meterRegistry.get("rccms.auth.rate.overflow").counter().count();
+    }
+
+    /**
+     * Bytes held by the stripes' key, stamp and token arrays
+     */
+    private static long tableBytes(AuthRateLimitFilter filter) {
+        long bytes = 0;
+        for (Object stripe : (Object[]) ReflectionTestUtils.getField(filter, "stripes")) {
+            bytes += ((long[]) ReflectionTestUtils.getField(stripe, "keys")).length * 8L;
+            bytes += ((long[]) ReflectionTestUtils.getField(stripe, "stamps")).length * 8L;
+            bytes += ((int[]) ReflectionTestUtils.getField(stripe, "tokens")).length * 4L;
+        }
+        return bytes;
+    }
+
+    private static String ip(int i) {
+        return (i >> 24 & 0xff) + "." + (i >> 16 & 0xff) + "." + (i >> 8 & 0xff) + "." + (i & 0xff);
+    }
+}
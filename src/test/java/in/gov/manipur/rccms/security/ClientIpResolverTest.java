@@ -0,0 +1,60 @@
+package in.gov.manipur.rccms.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Client IPs behind the reverse proxy, through the embedded Tomcat and AuthRateLimitFilter.
+ * The test connects from loopback, which is a trusted proxy by default.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "app.rate-limit.capacity=3",
+        "app.rate-limit.refill-per-second=0.001",
+        "app.rate-limit.default-cost=1"
+})
+@ActiveProfiles("test")
+class ClientIpResolverTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void spoofedLeftmostEntriesDoNotGetFreshBuckets() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertThat(get("10.9.9." + i + ", 203.0.113.7")).isNotEqualTo(429);
+        }
+
+        // Same client behind the proxy, another made-up first entry: still the same bucket
+        assertThat(get("10.9.9.99, 203.0.113.7")).isEqualTo(429);
+        assertThat(get("203.0.113.7")).isEqualTo(429);
+    }
+
+    @Test
+    void clientsBehindTheProxyHaveTheirOwnBuckets() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertThat(get("198.51.100.1")).isNotEqualTo(429);
+        }
+        assertThat(get("198.51.100.1")).isEqualTo(429);
+
+        assertThat(get("198.51.100.2")).isNotEqualTo(429);
+    }
+
+    private int get(String forwardedFor) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/auth/captcha/generate"))
+                .header("X-Forwarded-For", forwardedFor)
+                .GET()
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -0,0 +1,192 @@
+package in.gov.manipur.rccms.security;
+
+import in.gov.manipur.rccms.config.RateLimitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two ClusterRouteLimiter "nodes" sharing one database must together admit
+ * no more than the budget's limit per window
+ */
+class ClusterRouteLimiterTest {
+
+    private static final int LIMIT = 100;
+    private static final int THREADS_PER_NODE = 8;
+    private static final int REQUESTS_PER_THREAD = 50;
+
+    private JdbcDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate.execute("CREATE TABLE rate_limit_budget (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "budget_name VARCHAR(50) NOT NULL, window_start BIGINT NOT NULL, used INTEGER NOT NULL, " +
+                "CONSTRAINT uk_rate_limit_budget_window UNIQUE (budget_name, window_start))");
+    }
+
+    @Test
+    void twoNodesNeverAdmitMoreThanTheLimit() throws Exception {
+        RateLimitProperties properties = properties();
+        List<ClusterRouteLimiter> nodes = List.of(node(properties), node(properties));
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS_PER_NODE * nodes.size());
+        List<Future<Integer>> admitted = new ArrayList<>();
+        try {
+            for (ClusterRouteLimiter node : nodes) {
+                for (int t = 0; t < THREADS_PER_NODE; t++) {
+                    admitted.add(executor.submit(() -> {
+                        start.await();
+                        int allowed = 0;
+                        for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                            if (node.tryAcquire("login") == 0) {
+                                allowed++;
+                            }
+                        }
+                        return allowed;
+                    }));
+                }
+            }
+            start.countDown();
+            int total = 0;
+            for (Future<Integer> result : admitted) {
+                total += result.get(30, TimeUnit.SECONDS);
+            }
+
+            // 800 requests against a limit of 100: the whole budget is leased out, never more
+            assertThat(total).isEqualTo(LIMIT);
+            assertThat(jdbcTemplate.queryForObject("SELECT SUM(used) FROM rate_limit_budget", Integer.class))
+                    .isEqualTo(LIMIT);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void unspentLeasesAreHandedBackToOtherNodes() {
+        RateLimitProperties properties = properties();
+        properties.getCluster().setReturnAfterMs(0);
+        ClusterRouteLimiter first = node(properties);
+        ClusterRouteLimiter second = node(properties);
+
+        assertThat(first.tryAcquire("login")).isZero(); // Leases a slice, spends one request
+        first.returnIdleLeases();
+
+        int allowed = 0;
+        for (int i = 0; i < 2 * LIMIT; i++) {
+            if (second.tryAcquire("login") == 0) {
+                allowed++;
+            }
+        }
+        assertThat(allowed).isEqualTo(LIMIT - 1);
+    }
+
+    @Test
+    void requestsDoNotWaitForASlowDatabase() throws Exception {
+        RateLimitProperties properties = properties();
+        properties.getCluster().setLeaseWaitMs(50);
+        SlowDataSource slowDataSource = new SlowDataSource(dataSource, 1000);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ClusterRouteLimiter node = new ClusterRouteLimiter(properties, new JdbcTemplate(slowDataSource),
+                new DataSourceTransactionManager(slowDataSource), meterRegistry);
+
+        // Every request of the first second is let through after lease-wait-ms, none waits for the database
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS_PER_NODE);
+        List<Future<Long>> latencies = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS_PER_NODE; t++) {
+                latencies.add(executor.submit(() -> {
+                    long start = System.nanoTime();
+                    assertThat(node.tryAcquire("login")).isZero();
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                }));
+            }
+            for (Future<Long> latency : latencies) {
+                assertThat(latency.get(30, TimeUnit.SECONDS)).isLessThan(500);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(meterRegistry.get("rccms.auth.rate.cluster.timeouts").counter().count())
+                .isEqualTo(THREADS_PER_NODE);
+
+        // The lease still lands; later requests spend it from memory
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (meterRegistry.get("rccms.auth.rate.cluster.tokens").tag("action", "leased").counter().count() == 0
+                && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        long start = System.nanoTime();
+        assertThat(node.tryAcquire("login")).isZero();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(50);
+        assertThat(meterRegistry.get("rccms.auth.rate.cluster.timeouts").counter().count())
+                .isEqualTo(THREADS_PER_NODE);
+        assertThat(jdbcTemplate.queryForObject("SELECT SUM(used) FROM rate_limit_budget", Integer.class))
+                .isEqualTo(LIMIT / 10);
+    }
+
+    private ClusterRouteLimiter node(RateLimitProperties properties) {
+        return new ClusterRouteLimiter(properties, jdbcTemplate, transactionManager, new SimpleMeterRegistry());
+    }
+
+    private static RateLimitProperties properties() {
+        RateLimitProperties.Budget budget = new RateLimitProperties.Budget();
+        budget.setPaths(List.of("/api/auth/password/login"));
+        budget.setLimit(LIMIT);
+        budget.setWindowSeconds(3600);
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setMode("cluster");
+        properties.setBudgets(Map.of("login", budget));
+        properties.getCluster().setMaxError(0.2);
+        properties.getCluster().setNodes(2); // Leases of 10 requests
+        properties.getCluster().setLeaseWaitMs(10_000); // Requests wait for every lease, none let through
+        return properties;
+    }
+
+    /**
+     * Data source whose connections take a while, like a database under load
+     */
+    private static final class SlowDataSource extends DelegatingDataSource {
+        private final long delayMs;
+
+        SlowDataSource(DataSource target, long delayMs) {
+            super(target);
+            this.delayMs = delayMs;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.getConnection();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package in.gov.manipur.rccms.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Actuator endpoints through the embedded Tomcat. The test connects from loopback,
+ * a trusted proxy, so X-Forwarded-For stands for a client behind the load balancer.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class ManagementEndpointAccessTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void metricsAreOnlyServedToManagementNetworks() throws Exception {
+        assertThat(get("/actuator/metrics", null)).isEqualTo(200);
+        assertThat(get("/actuator/metrics", "203.0.113.7")).isEqualTo(403);
+        assertThat(get("/actuator/metrics/jvm.memory.used", "203.0.113.7")).isEqualTo(403);
+    }
+
+    @Test
+    void healthAndInfoStayPublic() throws Exception {
+        assertThat(get("/actuator/health", "203.0.113.7")).isEqualTo(200);
+        assertThat(get("/actuator/info", "203.0.113.7")).isEqualTo(200);
+    }
+
+    private int get(String path, String forwardedFor) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).GET();
+        if (forwardedFor != null) {
+            request.header("X-Forwarded-For", forwardedFor);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
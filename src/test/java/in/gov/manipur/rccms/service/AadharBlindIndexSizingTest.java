@@ -0,0 +1,116 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.PostgresTestDatabase;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Sizing report: the Aadhar indexes at 5M users in PostgreSQL 14, before and after
+ * the blind index. Before, aadhar_number held Base64 AES/ECB (24 characters for a
+ * 12-digit number) under both uk_users_aadhar_number and idx_aadhar; after, the
+ * 32-byte aadhar_hash has one unique index and the GCM ciphertext none. Values are
+ * generated in SQL with the same widths (the keys do not change the sizes), then
+ * random existing values are looked up through each index.
+ *
+ * mvn -Pbenchmark test -Dtest=AadharBlindIndexSizingTest -Dexec.skip
+ */
+@Tag("benchmark")
+class AadharBlindIndexSizingTest {
+
+    private static final int USERS = 5_000_000;
+    private static final int LOOKUPS = 100_000;
+    private static final int WARM_UP = 20_000;
+
+    @Test
+    void fiveMillionUsers() throws SQLException {
+        DataSource dataSource = PostgresTestDatabase.freshDatabase();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE users (id BIGSERIAL PRIMARY KEY, aadhar_number VARCHAR(500) NOT NULL, " +
+                "aadhar_hash BYTEA NOT NULL)");
+        jdbcTemplate.update("INSERT INTO users (aadhar_number, aadhar_hash) " +
+                "SELECT encode(substring(sha256(convert_to('ecb' || i, 'UTF8')) FROM 1 FOR 16), 'base64'), " +
+                "sha256(convert_to('hmac' || i, 'UTF8')) FROM generate_series(1, ?) i", USERS);
+        jdbcTemplate.execute("ALTER TABLE users ADD CONSTRAINT uk_users_aadhar_number UNIQUE (aadhar_number)");
+        jdbcTemplate.execute("CREATE INDEX idx_aadhar ON users (aadhar_number)");
+        jdbcTemplate.execute("ALTER TABLE users ADD CONSTRAINT uk_users_aadhar_hash UNIQUE (aadhar_hash)");
+        jdbcTemplate.execute("ANALYZE users");
+
+        long legacyUnique = indexBytes(jdbcTemplate, "uk_users_aadhar_number");
+        long legacyIndex = indexBytes(jdbcTemplate, "idx_aadhar");
+        long blindIndex = indexBytes(jdbcTemplate, "uk_users_aadhar_hash");
+
+        List<Object[]> sample = jdbcTemplate.query(
+                "SELECT aadhar_number, aadhar_hash FROM users WHERE id IN " +
+                        "(SELECT (random() * (? - 1))::bigint + 1 FROM generate_series(1, ?))",
+                (rs, row) -> new Object[] {rs.getString(1), rs.getBytes(2)}, USERS, LOOKUPS);
+        double[][] micros;
+        try (Connection connection = dataSource.getConnection()) {
+            lookups(connection, sample, WARM_UP);
+            micros = lookups(connection, sample, sample.size());
+        }
+        double[] legacyMicros = micros[0];
+        double[] blindMicros = micros[1];
+
+        System.out.printf(Locale.ROOT, "Aadhar indexes at %d users: before %.1f MB (uk_users_aadhar_number %.1f MB "
+                        + "+ idx_aadhar %.1f MB), after %.1f MB (uk_users_aadhar_hash); lookup over %d random users "
+                        + "before p50=%.1f us p99=%.1f us, after p50=%.1f us p99=%.1f us%n",
+                USERS, mb(legacyUnique + legacyIndex), mb(legacyUnique), mb(legacyIndex), mb(blindIndex),
+                sample.size(), percentile(legacyMicros, 0.5), percentile(legacyMicros, 0.99),
+                percentile(blindMicros, 0.5), percentile(blindMicros, 0.99));
+        // Two indexes on the ciphertext become one on the fixed-width hash
+        assertThat(blindIndex).isLessThan(legacyUnique + legacyIndex);
+    }
+
+    /**
+     * Look up each sampled user by its ciphertext and by its hash, alternating so
+     * neither index is favoured by the order of the runs
+     * @return latency of each lookup in microseconds, ciphertext first
+     */
+    private static double[][] lookups(Connection connection, List<Object[]> sample, int count) throws SQLException {
+        double[][] micros = new double[2][count];
+        try (PreparedStatement byCiphertext = connection.prepareStatement("SELECT id FROM users WHERE aadhar_number = ?");
+             PreparedStatement byHash = connection.prepareStatement("SELECT id FROM users WHERE aadhar_hash = ?")) {
+            for (int i = 0; i < count; i++) {
+                Object[] user = sample.get(i % sample.size());
+                micros[0][i] = lookup(byCiphertext, user[0]);
+                micros[1][i] = lookup(byHash, user[1]);
+            }
+        }
+        return micros;
+    }
+
+    private static double lookup(PreparedStatement statement, Object value) throws SQLException {
+        statement.setObject(1, value);
+        long start = System.nanoTime();
+        try (ResultSet rs = statement.executeQuery()) {
+            assertThat(rs.next()).isTrue();
+        }
+        return (System.nanoTime() - start) / 1000.0;
+    }
+
+    private static long indexBytes(JdbcTemplate jdbcTemplate, String index) {
+        return jdbcTemplate.queryForObject("SELECT pg_relation_size(?::regclass)", Long.class, index);
+    }
+
+    private static double mb(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+
+    private static double percentile(double[] values, double quantile) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,109 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.config.EncryptionProperties;
+import in.gov.manipur.rccms.entity.User;
+import in.gov.manipur.rccms.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Conversion of legacy AES/ECB Aadhar values to AES-GCM with a blind index
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AadharMigrationServiceTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private EncryptionService encryptionService;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        encryptionService = new EncryptionService("TestEncryptionKey", "TestBlindIndexKey", new EncryptionProperties());
+    }
+
+    @AfterEach
+    void tearDown() {
+        encryptionService.stop();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void marksRowsThatCannotBeDecryptedAndCompletes() {
+        long legacy = saveLegacyUser(1, encryptionService.encryptLegacy("123456789012"));
+        long corrupt = saveLegacyUser(2, "bm90IGEgY2lwaGVydGV4dA==");
+        AadharMigrationService service = service();
+
+        assertThat(service.migrate()).isEqualTo(1);
+        assertThat(service.isComplete()).isTrue();
+
+        User converted = userRepository.findById(legacy).orElseThrow();
+        assertThat(converted.getAadharHash()).isEqualTo(encryptionService.blindIndex("123456789012"));
+        assertThat(encryptionService.decrypt(converted.getAadharNumber(), converted.getAadharKeyVersion()))
+                .isEqualTo("123456789012");
+        User skipped = userRepository.findById(corrupt).orElseThrow();
+        assertThat(skipped.getAadharKeyVersion()).isEqualTo(AadharMigrationService.UNREADABLE_KEY_VERSION);
+        assertThat(skipped.getAadharNumber()).isEqualTo("bm90IGEgY2lwaGVydGV4dA==");
+        assertThat(skipped.getAadharHash()).isNull();
+        assertThat(meterRegistry.get("rccms.aadhar.migration.skipped").counter().count()).isEqualTo(1);
+
+        // A later run does not pick the marked row up again
+        AadharMigrationService nextRun = service();
+        assertThat(nextRun.migrate()).isZero();
+        assertThat(nextRun.isComplete()).isTrue();
+        assertThat(meterRegistry.get("rccms.aadhar.migration.skipped").counter().count()).isZero();
+    }
+
+    private AadharMigrationService service() {
+        meterRegistry = new SimpleMeterRegistry();
+        AadharMigrationService service = new AadharMigrationService(jdbcTemplate, encryptionService,
+                transactionManager, meterRegistry);
+        ReflectionTestUtils.setField(service, "batchSize", 500);
+        ReflectionTestUtils.setField(service, "rowsPerSecond", 100_000);
+        ReflectionTestUtils.setField(service, "maxRunSeconds", 10);
+        return service;
+    }
+
+    private long saveLegacyUser(int n, String aadharNumber) {
+        User user = new User();
+        user.setFirstName("Test");
+        user.setLastName("Citizen");
+        user.setEmail("citizen" + n + "@example.com");
+        user.setMobileNumber("987654321" + n);
+        user.setDateOfBirth(LocalDate.of(1990, 1, 1));
+        user.setGender(User.Gender.OTHER);
+        user.setAddress("Thangal Bazar, Imphal");
+        user.setDistrict("Imphal West");
+        user.setPincode("795001");
+        user.setAadharNumber(aadharNumber);
+        user.setPassword("$2a$10$hash");
+        user.setUserType(User.UserType.CITIZEN);
+        user.setIsActive(true);
+        return userRepository.saveAndFlush(user).getId();
+    }
+}
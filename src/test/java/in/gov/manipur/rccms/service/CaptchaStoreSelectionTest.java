@@ -0,0 +1,45 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.repository.CaptchaRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Which CaptchaStore is created for app.captcha.store and app.rate-limit.mode
+ */
+class CaptchaStoreSelectionTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withUserConfiguration(InMemoryCaptchaStore.class, JpaCaptchaStore.class)
+            .withBean(MeterRegistry.class, SimpleMeterRegistry::new)
+            .withBean(CaptchaRepository.class, () -> mock(CaptchaRepository.class))
+            .withBean(ExpiredRowCleanupService.class, () -> mock(ExpiredRowCleanupService.class));
+
+    @Test
+    void defaultsToMemoryOnASingleNode() {
+        contextRunner.run(context -> assertThat(context).hasSingleBean(CaptchaStore.class)
+                .hasSingleBean(InMemoryCaptchaStore.class));
+    }
+
+    @Test
+    void defaultsToTheDatabaseInClusterMode() {
+        contextRunner.withPropertyValues("app.rate-limit.mode=cluster")
+                .run(context -> assertThat(context).hasSingleBean(CaptchaStore.class)
+                        .hasSingleBean(JpaCaptchaStore.class));
+    }
+
+    @Test
+    void explicitChoiceWins() {
+        contextRunner.withPropertyValues("app.rate-limit.mode=cluster", "app.captcha.store=memory")
+                .run(context -> assertThat(context).hasSingleBean(InMemoryCaptchaStore.class)
+                        .doesNotHaveBean(JpaCaptchaStore.class));
+        contextRunner.withPropertyValues("app.captcha.store=jpa")
+                .run(context -> assertThat(context).hasSingleBean(JpaCaptchaStore.class)
+                        .doesNotHaveBean(InMemoryCaptchaStore.class));
+    }
+}
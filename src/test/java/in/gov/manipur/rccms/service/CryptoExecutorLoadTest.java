@@ -0,0 +1,179 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.entity.User;
+import in.gov.manipur.rccms.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Load test: a password-login flood that saturates the crypto pool must not take
+ * the request threads the rest of the API needs. Each password check holds a crypto
+ * worker for 200 ms (a stand-in for BCrypt that does not depend on the cores of the
+ * build machine); 60 clients log in continuously against 40 Tomcat threads, pausing
+ * briefly after a 429 like a client honouring Retry-After, while the health endpoint is timed.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "server.tomcat.threads.max=40",
+        "app.crypto.threads=2",
+        "app.rate-limit.enabled=false",
+        "app.auth.attempts.free-failures=10000",
+        "app.auth.attempts.lockout-failures=10000"
+})
+@ActiveProfiles("test")
+class CryptoExecutorLoadTest {
+
+    private static final int FLOOD_CLIENTS = 60;
+    private static final int PROBES = 50;
+    private static final long CHECK_MILLIS = 200;
+    private static final long REFUSED_PAUSE_MILLIS = 500;
+
+    @MockBean
+    private CaptchaService captchaService;
+
+    @MockBean
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserMembershipFilter membershipFilter;
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void otherEndpointsKeepTheirLatencyDuringALoginFlood() throws Exception {
+        when(captchaService.consumeCaptcha(any(), any())).thenReturn(true);
+        when(passwordEncoder.matches(any(), anyString())).thenAnswer(invocation -> {
+            Thread.sleep(CHECK_MILLIS);
+            return true;
+        });
+        saveUser();
+
+        HttpClient probeClient = HttpClient.newHttpClient();
+        probeHealth(probeClient); // Warm-up
+        long[] idle = probeHealth(probeClient);
+
+        AtomicBoolean flooding = new AtomicBoolean(true);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        ExecutorService flood = Executors.newFixedThreadPool(FLOOD_CLIENTS);
+        HttpClient floodClient = HttpClient.newHttpClient();
+        for (int i = 0; i < FLOOD_CLIENTS; i++) {
+            flood.execute(() -> {
+                while (flooding.get()) {
+                    if (login(floodClient) == 200) {
+                        succeeded.incrementAndGet();
+                    } else {
+                        refused.incrementAndGet();
+                        pause(REFUSED_PAUSE_MILLIS);
+                    }
+                }
+            });
+        }
+        Thread.sleep(1000); // Let the crypto queue fill up
+        long[] loaded = probeHealth(probeClient);
+        flooding.set(false);
+        flood.shutdown();
+        assertThat(flood.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        System.out.printf("Health latency idle p50=%d ms p99=%d ms, during login flood p50=%d ms p99=%d ms "
+                        + "(%d logins succeeded, %d refused with 429)%n",
+                percentile(idle, 0.5), percentile(idle, 0.99), percentile(loaded, 0.5), percentile(loaded, 0.99),
+                succeeded.get(), refused.get());
+        assertThat(succeeded.get()).isPositive();
+        assertThat(refused.get()).isPositive();
+        // Without the bound every request thread waits on the crypto queue (up to max-wait-ms, 2 s):
+        // p50 around 700 ms and p99 over 2 s, against tens of ms and a few hundred with it
+        assertThat(percentile(loaded, 0.5)).isLessThan(250);
+        assertThat(percentile(loaded, 0.99)).isLessThan(1000);
+    }
+
+    private long[] probeHealth(HttpClient client) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri("/api/health")).timeout(Duration.ofSeconds(30)).GET().build();
+        long[] millis = new long[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            long start = System.nanoTime();
+            assertThat(client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode()).isEqualTo(200);
+            millis[i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            Thread.sleep(20);
+        }
+        return millis;
+    }
+
+    private int login(HttpClient client) {
+        String body = """
+                {"username":"flood@example.com","password":"secret","captcha":"ABCDE","captchaId":"any","userType":"CITIZEN"}""";
+        HttpRequest request = HttpRequest.newBuilder(uri("/api/auth/password/login"))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private void saveUser() {
+        User user = new User();
+        user.setFirstName("Flood");
+        user.setLastName("Test");
+        user.setEmail("flood@example.com");
+        user.setMobileNumber("9876500001");
+        user.setDateOfBirth(LocalDate.of(1990, 1, 1));
+        user.setGender(User.Gender.OTHER);
+        user.setAddress("Thangal Bazar, Imphal");
+        user.setDistrict("Imphal West");
+        user.setPincode("795001");
+        user.setAadharNumber("encrypted");
+        user.setPassword("$2a$10$hash");
+        user.setUserType(User.UserType.CITIZEN);
+        user.setIsActive(true);
+        userRepository.saveAndFlush(user);
+        membershipFilter.add(user.getEmail(), user.getMobileNumber());
+    }
+
+    private static long percentile(long[] millis, double quantile) {
+        long[] sorted = millis.clone();
+        Arrays.sort(sorted);
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)];
+    }
+}
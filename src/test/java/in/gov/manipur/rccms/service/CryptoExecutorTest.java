@@ -0,0 +1,50 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CryptoExecutorTest {
+
+    @Test
+    void refusesMoreWaitingCallersThanHalfTheRequestThreads() {
+        assertThatThrownBy(() -> new CryptoExecutor(4, 256, 2000, 200, new SimpleMeterRegistry()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("server.tomcat.threads.max");
+    }
+
+    @Test
+    void defaultQueueIsTwiceTheThreads() throws Exception {
+        CryptoExecutor executor = new CryptoExecutor(1, 0, 2000, 200, new SimpleMeterRegistry());
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<Boolean> running = executor.submit("test", () -> await(release));
+            executor.submit("test", () -> true);
+            executor.submit("test", () -> true);
+
+            assertThatThrownBy(() -> executor.submit("test", () -> true))
+                    .isInstanceOf(TooManyRequestsException.class);
+            release.countDown();
+            assertThat(executor.await(running)).isTrue();
+        } finally {
+            release.countDown();
+            executor.stop();
+        }
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            latch.await();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.dto.DeliveryReportDTO;
+import in.gov.manipur.rccms.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Queueing of delivery reports (the flusher thread is not started)
+ */
+class DeliveryReportIngestorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DeliveryReportIngestor ingestor =
+            new DeliveryReportIngestor(mock(JdbcTemplate.class), 3, 1000, 500, meterRegistry);
+
+    @Test
+    void queuesARequestWholeOrNotAtAll() {
+        assertThat(ingestor.submit(List.of(report("m1"), report("m2")))).isEqualTo(2);
+
+        assertThatThrownBy(() -> ingestor.submit(List.of(report("m3"), report("m4"))))
+                .isInstanceOf(TooManyRequestsException.class);
+        assertThat(queueDepth()).isEqualTo(2);
+        assertThat(rejectedCount()).isEqualTo(2);
+
+        // The retry of a request that fits goes through
+        assertThat(ingestor.submit(List.of(report("m3")))).isEqualTo(1);
+        assertThat(queueDepth()).isEqualTo(3);
+    }
+
+    @Test
+    void countsOnlyValidReportsAsRejected() {
+        ingestor.submit(List.of(report("m1"), report("m2"), report("m3")));
+
+        List<DeliveryReportDTO> reports = Arrays.asList(report("m4"), null, new DeliveryReportDTO("m5", " ", null));
+        assertThatThrownBy(() -> ingestor.submit(reports)).isInstanceOf(TooManyRequestsException.class);
+        assertThat(rejectedCount()).isEqualTo(1);
+    }
+
+    private double queueDepth() {
+        return meterRegistry.get("rccms.sms.dlr.queue.depth").gauge().value();
+    }
+
+    private double rejectedCount() {
+        return meterRegistry.get("rccms.sms.dlr.rejected").counter().count();
+    }
+
+    private static DeliveryReportDTO report(String messageId) {
+        return new DeliveryReportDTO(messageId, "DELIVERED", null);
+    }
+}
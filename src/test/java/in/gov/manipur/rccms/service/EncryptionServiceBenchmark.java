@@ -0,0 +1,146 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.config.EncryptionProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AES-GCM throughput of EncryptionService, one value at a time and in bulk, against
+ * the former implementation (reimplemented here as perCall*), which derived the key
+ * and created a Cipher on every call. All scores are values per millisecond; the bulk
+ * benchmarks process BULK values per invocation, encryptAll/decryptAll on the bulk pool.
+ *
+ * mvn -Pbenchmark test -DskipTests -Djmh.includes=EncryptionServiceBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EncryptionServiceBenchmark {
+
+    private static final String KEY = "TestEncryptionKey";
+    private static final int BULK = 10_000;
+
+    private final SecureRandom random = new SecureRandom();
+    private EncryptionService encryptionService;
+    private List<String> plainTexts;
+    private List<String> cipherTexts;
+
+    @Setup
+    public void setUp() {
+        encryptionService = new EncryptionService(KEY, "TestBlindIndexKey", new EncryptionProperties());
+        plainTexts = new ArrayList<>(BULK);
+        for (int i = 0; i < BULK; i++) {
+            plainTexts.add(String.format(Locale.ROOT, "2%011d", i));
+        }
+        cipherTexts = encryptionService.encryptAll(plainTexts);
+    }
+
+    @TearDown
+    public void tearDown() {
+        encryptionService.stop();
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return encryptionService.encrypt(plainTexts.get(0));
+    }
+
+    @Benchmark
+    public String perCallEncrypt() throws GeneralSecurityException {
+        return perCallEncrypt(plainTexts.get(0));
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return encryptionService.decrypt(cipherTexts.get(0), 1);
+    }
+
+    @Benchmark
+    public String perCallDecrypt() throws GeneralSecurityException {
+        return perCallDecrypt(cipherTexts.get(0));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK)
+    public List<String> encryptAll() {
+        return encryptionService.encryptAll(plainTexts);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK)
+    public List<String> perCallEncryptLoop() throws GeneralSecurityException {
+        List<String> results = new ArrayList<>(BULK);
+        for (String plainText : plainTexts) {
+            results.add(perCallEncrypt(plainText));
+        }
+        return results;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK)
+    public List<String> decryptAll() {
+        return encryptionService.decryptAll(cipherTexts, 1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK)
+    public List<String> perCallDecryptLoop() throws GeneralSecurityException {
+        List<String> results = new ArrayList<>(BULK);
+        for (String cipherText : cipherTexts) {
+            results.add(perCallDecrypt(cipherText));
+        }
+        return results;
+    }
+
+    private String perCallEncrypt(String plainText) throws GeneralSecurityException {
+        SecretKeySpec secretKey = new SecretKeySpec(keyBytes(), "AES");
+        byte[] iv = new byte[12];
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(128, iv));
+        byte[] encryptedBytes = cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(ByteBuffer.allocate(12 + encryptedBytes.length)
+                .put(iv).put(encryptedBytes).array());
+    }
+
+    private static String perCallDecrypt(String encryptedText) throws GeneralSecurityException {
+        SecretKeySpec secretKey = new SecretKeySpec(keyBytes(), "AES");
+        byte[] encrypted = Base64.getDecoder().decode(encryptedText);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(128, encrypted, 0, 12));
+        return new String(cipher.doFinal(encrypted, 12, encrypted.length - 12), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] keyBytes() {
+        byte[] key = KEY.getBytes(StandardCharsets.UTF_8);
+        byte[] keyBytes = new byte[16];
+        System.arraycopy(key, 0, keyBytes, 0, Math.min(key.length, 16));
+        return keyBytes;
+    }
+}
@@ -0,0 +1,49 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.config.EncryptionProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Keyring set-up of EncryptionService
+ */
+class EncryptionServiceTest {
+
+    private static final String KEY = "TestEncryptionKey";
+    private static final String BLIND_INDEX_KEY = "TestBlindIndexKey";
+
+    @Test
+    void refusesAVersionOneKeyThatDiffersFromTheLegacyKey() {
+        assertThatThrownBy(() -> new EncryptionService(KEY, BLIND_INDEX_KEY, properties(Map.of(1, "OtherKey"))))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("app.encryption.keys.1");
+    }
+
+    @Test
+    void decryptsVersionOneWithTheLegacyKeyAfterRotation() {
+        EncryptionService before = new EncryptionService(KEY, BLIND_INDEX_KEY, properties(Map.of(1, KEY)));
+        EncryptionService after = new EncryptionService(KEY, BLIND_INDEX_KEY, properties(Map.of(2, "SecondKey")));
+        try {
+            String encrypted = before.encrypt("123456789012");
+
+            assertThat(before.activeKeyVersion()).isEqualTo(1);
+            assertThat(after.activeKeyVersion()).isEqualTo(2);
+            assertThat(after.decrypt(encrypted, 1)).isEqualTo("123456789012");
+            assertThat(after.decrypt(after.encrypt("123456789012"), 2)).isEqualTo("123456789012");
+        } finally {
+            before.stop();
+            after.stop();
+        }
+    }
+
+    private static EncryptionProperties properties(Map<Integer, String> keys) {
+        EncryptionProperties properties = new EncryptionProperties();
+        properties.setKeys(new TreeMap<>(keys));
+        return properties;
+    }
+}
@@ -0,0 +1,130 @@
+package in.gov.manipur.rccms.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import in.gov.manipur.rccms.exception.SmsGatewayException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * HttpSmsGateway against a local provider (SmsHttpStub)
+ */
+class HttpSmsGatewayTest {
+
+    private static final SmsGateway.Message FIRST = new SmsGateway.Message("send-1", "9876543210", "Your OTP is 123456");
+    private static final SmsGateway.Message SECOND = new SmsGateway.Message("send-2", "9876543211", "Your OTP is 654321");
+
+    private final SmsHttpStub stub = new SmsHttpStub();
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    @Test
+    void mapsMessagesToTheJsonContract() {
+        List<SmsGateway.Result> results = gateway("secret-key", Duration.ofSeconds(5)).send(List.of(FIRST, SECOND));
+
+        assertThat(stub.requests()).hasSize(1);
+        SmsHttpStub.Request request = stub.requests().get(0);
+        assertThat(request.header("Content-Type")).isEqualTo("application/json");
+        assertThat(request.header("Authorization")).isEqualTo("Bearer secret-key");
+        JsonNode body = request.body();
+        assertThat(body.path("sender").asText()).isEqualTo("RCCMS");
+        assertThat(body.path("messages")).hasSize(2);
+        assertThat(body.path("messages").get(0).path("id").asText()).isEqualTo("send-1");
+        assertThat(body.path("messages").get(0).path("to").asText()).isEqualTo("9876543210");
+        assertThat(body.path("messages").get(0).path("text").asText()).isEqualTo("Your OTP is 123456");
+        assertThat(body.path("messages").get(1).path("id").asText()).isEqualTo("send-2");
+
+        assertThat(results).extracting(SmsGateway.Result::sendId).containsExactly("send-1", "send-2");
+        assertThat(results).allSatisfy(result -> {
+            assertThat(result.accepted()).isTrue();
+            assertThat(result.providerMessageId()).startsWith("http-");
+        });
+    }
+
+    @Test
+    void sendsNoAuthorizationWithoutAnApiKey() {
+        gateway("", Duration.ofSeconds(5)).send(List.of(FIRST));
+
+        assertThat(stub.requests().get(0).header("Authorization")).isNull();
+    }
+
+    @Test
+    void onlySingleMessageRequestsCarryAnIdempotencyKey() {
+        SmsGateway gateway = gateway("secret-key", Duration.ofSeconds(5));
+
+        gateway.send(List.of(FIRST));
+        gateway.send(List.of(FIRST, SECOND));
+
+        assertThat(stub.requests().get(0).header("Idempotency-Key")).isEqualTo("send-1");
+        // In a batch each message's id in the body is its key
+        assertThat(stub.requests().get(1).header("Idempotency-Key")).isNull();
+    }
+
+    @Test
+    void mapsRejectedAndMissingResultsPerMessage() {
+        stub.reject("9876543211");
+        List<SmsGateway.Result> results = gateway("secret-key", Duration.ofSeconds(5)).send(List.of(FIRST, SECOND));
+
+        assertThat(results.get(0).accepted()).isTrue();
+        assertThat(results.get(1).accepted()).isFalse();
+        assertThat(results.get(1).error()).isEqualTo("stub: invalid number");
+
+        stub.respondWith("{\"results\": [{\"id\": \"send-1\", \"status\": \"accepted\", \"messageId\": \"m-1\"}]}");
+        results = gateway("secret-key", Duration.ofSeconds(5)).send(List.of(FIRST, SECOND));
+
+        assertThat(results.get(0).providerMessageId()).isEqualTo("m-1");
+        assertThat(results.get(1).accepted()).isFalse();
+        assertThat(results.get(1).error()).isEqualTo("stub: no result for message");
+    }
+
+    @Test
+    void mapsHttpErrorsToGatewayExceptions() {
+        stub.failNext(1, 503);
+
+        assertThatThrownBy(() -> gateway("secret-key", Duration.ofSeconds(5)).send(List.of(FIRST)))
+                .isInstanceOf(SmsGatewayException.class)
+                .hasMessage("stub: HTTP 503");
+    }
+
+    @Test
+    void mapsUnreadableResponsesToGatewayExceptions() {
+        stub.respondWith("<html>Service Unavailable</html>");
+
+        assertThatThrownBy(() -> gateway("secret-key", Duration.ofSeconds(5)).send(List.of(FIRST)))
+                .isInstanceOf(SmsGatewayException.class)
+                .hasMessage("stub: unreadable response");
+    }
+
+    @Test
+    void mapsTimeoutsToGatewayExceptions() {
+        stub.latencyMs(2000);
+
+        assertThatThrownBy(() -> gateway("secret-key", Duration.ofMillis(200)).send(List.of(FIRST)))
+                .isInstanceOf(SmsGatewayException.class)
+                .hasMessageStartingWith("stub: ");
+    }
+
+    @Test
+    void mapsConnectionFailuresToGatewayExceptions() {
+        SmsGateway gateway = gateway("secret-key", Duration.ofSeconds(5));
+        stub.close();
+
+        assertThatThrownBy(() -> gateway.send(List.of(FIRST)))
+                .isInstanceOf(SmsGatewayException.class)
+                .hasMessageStartingWith("stub: ");
+    }
+
+    private HttpSmsGateway gateway(String apiKey, Duration timeout) {
+        return new HttpSmsGateway("stub", stub.url(), apiKey, "RCCMS", 10, Duration.ofSeconds(2), timeout,
+                new ObjectMapper());
+    }
+}
@@ -0,0 +1,129 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.config.EncryptionProperties;
+import in.gov.manipur.rccms.entity.User;
+import in.gov.manipur.rccms.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Re-encryption from key version 1 to 2
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class KeyRotationServiceTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private EncryptionService oldKeys;
+    private EncryptionService encryptionService;
+
+    @BeforeEach
+    void setUp() {
+        oldKeys = new EncryptionService("TestEncryptionKey", "TestBlindIndexKey", new EncryptionProperties());
+        EncryptionProperties properties = new EncryptionProperties();
+        properties.setKeys(new TreeMap<>(Map.of(2, "SecondEncryptionKey")));
+        encryptionService = new EncryptionService("TestEncryptionKey", "TestBlindIndexKey", properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        oldKeys.stop();
+        encryptionService.stop();
+        userRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM job_control");
+    }
+
+    @Test
+    void skipsRowsThatCannotBeDecryptedAndRotatesTheRest() {
+        long good = saveUser(1, oldKeys.encrypt("123456789012"), 1);
+        long corrupt = saveUser(2, "bm90IGEgY2lwaGVydGV4dA==", 1);
+        long unknownKey = saveUser(3, oldKeys.encrypt("123456789013"), 3);
+        KeyRotationService service = service(false);
+
+        assertThat(service.rotate()).isEqualTo(1);
+
+        User rotated = userRepository.findById(good).orElseThrow();
+        assertThat(rotated.getAadharKeyVersion()).isEqualTo(2);
+        assertThat(encryptionService.decrypt(rotated.getAadharNumber(), 2)).isEqualTo("123456789012");
+        assertThat(userRepository.findById(corrupt).orElseThrow().getAadharKeyVersion()).isEqualTo(1);
+        assertThat(userRepository.findById(unknownKey).orElseThrow().getAadharKeyVersion()).isEqualTo(3);
+        assertThat(service.status()).containsEntry("done", true).containsEntry("skipped", 2);
+    }
+
+    @Test
+    void pauseHoldsForEveryNodeAndAcrossRestarts() {
+        saveUser(1, oldKeys.encrypt("123456789012"), 1);
+        service(false).pause();
+
+        KeyRotationService otherNode = service(false);
+        assertThat(otherNode.rotate()).isZero();
+        assertThat(otherNode.status()).containsEntry("paused", true);
+
+        otherNode.resume();
+        assertThat(service(true).rotate()).isEqualTo(1);
+    }
+
+    @Test
+    void configuredDefaultAppliesUntilTheFlagIsSet() {
+        saveUser(1, oldKeys.encrypt("123456789012"), 1);
+
+        assertThat(service(true).rotate()).isZero();
+        assertThat(service(false).rotate()).isEqualTo(1);
+    }
+
+    private KeyRotationService service(boolean pausedByDefault) {
+        KeyRotationService service = new KeyRotationService(jdbcTemplate, encryptionService, transactionManager,
+                new SimpleMeterRegistry(), pausedByDefault);
+        ReflectionTestUtils.setField(service, "batchSize", 500);
+        ReflectionTestUtils.setField(service, "rowsPerSecond", 100_000);
+        ReflectionTestUtils.setField(service, "maxRunSeconds", 10);
+        return service;
+    }
+
+    private long saveUser(int n, String aadharNumber, int keyVersion) {
+        User user = new User();
+        user.setFirstName("Test");
+        user.setLastName("Citizen");
+        user.setEmail("citizen" + n + "@example.com");
+        user.setMobileNumber("987654321" + n);
+        user.setDateOfBirth(LocalDate.of(1990, 1, 1));
+        user.setGender(User.Gender.OTHER);
+        user.setAddress("Thangal Bazar, Imphal");
+        user.setDistrict("Imphal West");
+        user.setPincode("795001");
+        user.setAadharNumber(aadharNumber);
+        user.setAadharKeyVersion(keyVersion);
+        user.setAadharHash(encryptionService.blindIndex("12345678901" + n));
+        user.setPassword("$2a$10$hash");
+        user.setUserType(User.UserType.CITIZEN);
+        user.setIsActive(true);
+        return userRepository.saveAndFlush(user).getId();
+    }
+}
@@ -0,0 +1,41 @@
+package in.gov.manipur.rccms.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoginAttemptTrackerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void locksAnAccountAfterItsFreeFailures() {
+        LoginAttemptTracker tracker = new LoginAttemptTracker(2, 60000, 60000, 10, 15, 5, 15, 100, meterRegistry);
+
+        assertThat(tracker.tryAccountAttempt("user@example.com")).isZero();
+        assertThat(tracker.tryAccountAttempt("USER@example.com")).isZero();
+        assertThat(tracker.tryAccountAttempt("user@example.com")).isPositive();
+
+        tracker.accountSucceeded("user@example.com");
+        assertThat(tracker.tryAccountAttempt("user@example.com")).isZero();
+    }
+
+    @Test
+    void newKeysPassUntrackedWhileTheTrackerIsFull() {
+        LoginAttemptTracker tracker = new LoginAttemptTracker(0, 60000, 60000, 10, 15, 5, 15, 3, meterRegistry);
+        for (int i = 0; i < 3; i++) {
+            assertThat(tracker.tryAccountAttempt("user" + i + "@example.com")).isZero();
+        }
+
+        // Tracked accounts stay locked, a new one is never locked while the tracker is full
+        assertThat(tracker.tryAccountAttempt("user0@example.com")).isPositive();
+        for (int i = 0; i < 3; i++) {
+            assertThat(tracker.tryAccountAttempt("new@example.com")).isZero();
+        }
+        assertThat(meterRegistry.get("rccms.auth.attempts.tracked").tag("kind", "account").gauge().value())
+                .isEqualTo(3);
+        assertThat(meterRegistry.get("rccms.auth.attempts.overflow").tag("kind", "account").counter().count())
+                .isEqualTo(3);
+    }
+}
@@ -0,0 +1,51 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.entity.Otp;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OtpRequestLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void limitsEachNumberWithinTheWindow() {
+        OtpRequestLimiter limiter = new OtpRequestLimiter(2, 15, 100, meterRegistry);
+
+        assertThat(limiter.tryAcquire("9876543210", Otp.UserType.CITIZEN)).isZero();
+        assertThat(limiter.tryAcquire("9876543210", Otp.UserType.CITIZEN)).isZero();
+        assertThat(limiter.tryAcquire("9876543210", Otp.UserType.CITIZEN)).isPositive();
+        assertThat(limiter.tryAcquire("9876543210", Otp.UserType.OPERATOR)).isZero();
+    }
+
+    @Test
+    void releasedSendsAreNotCounted() {
+        OtpRequestLimiter limiter = new OtpRequestLimiter(2, 15, 100, meterRegistry);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.tryAcquire("9876543210", Otp.UserType.CITIZEN)).isZero();
+            limiter.release("9876543210", Otp.UserType.CITIZEN);
+        }
+        assertThat(limiter.tryAcquire("9876543210", Otp.UserType.CITIZEN)).isZero();
+        assertThat(limiter.tryAcquire("9876543210", Otp.UserType.CITIZEN)).isZero();
+        assertThat(limiter.tryAcquire("9876543210", Otp.UserType.CITIZEN)).isPositive();
+    }
+
+    @Test
+    void newNumbersPassUntrackedWhileTheLimiterIsFull() {
+        OtpRequestLimiter limiter = new OtpRequestLimiter(1, 15, 3, meterRegistry);
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAcquire("987654321" + i, Otp.UserType.CITIZEN)).isZero();
+        }
+
+        // The tracked numbers are still limited, the new one is let through every time
+        assertThat(limiter.tryAcquire("9876543210", Otp.UserType.CITIZEN)).isPositive();
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAcquire("9876543219", Otp.UserType.CITIZEN)).isZero();
+        }
+        assertThat(meterRegistry.get("rccms.otp.rate.keys").gauge().value()).isEqualTo(3);
+        assertThat(meterRegistry.get("rccms.otp.rate.overflow").counter().count()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,90 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.PostgresTestDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * One-time otps migration against a real PostgreSQL 14
+ */
+class OtpSchemaInitializerTest {
+
+    private final OtpHasher otpHasher = new OtpHasher("TestOtpHashKey");
+
+    private DataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private OtpSchemaInitializer initializer;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = PostgresTestDatabase.freshDatabase();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        initializer = new OtpSchemaInitializer(jdbcTemplate, otpHasher);
+        // The table as it was before OTPs were hashed
+        jdbcTemplate.execute("CREATE TABLE otps (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "created_at TIMESTAMP(6) NOT NULL, expires_at TIMESTAMP(6) NOT NULL, is_used BOOLEAN NOT NULL, " +
+                "mobile_number VARCHAR(10) NOT NULL, otp_code VARCHAR(6) NOT NULL, user_type VARCHAR(20) NOT NULL)");
+        jdbcTemplate.execute("CREATE INDEX idx_mobile_otp ON otps (mobile_number, otp_code)");
+    }
+
+    @Test
+    void hashesOutstandingCodesInsteadOfDeletingThem() {
+        insertOtp("9876543210", "123456", false, "now() + interval '4 minutes'");
+        insertOtp("9876543211", "654321", true, "now() + interval '4 minutes'");
+
+        initializer.initialise();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT otp_code FROM otps WHERE mobile_number = '9876543210'", String.class))
+                .isEqualTo(otpHasher.hash("9876543210", "CITIZEN", "123456"));
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM otps", Integer.class)).isEqualTo(2);
+        assertThat(validIndexes()).containsExactlyInAnyOrder("idx_otp_unused_lookup", "idx_otp_mobile_created");
+    }
+
+    @Test
+    void rebuildsAnIndexLeftInvalidByAnInterruptedBuild() {
+        initializer.initialise();
+        jdbcTemplate.execute("UPDATE pg_index SET indisvalid = false " +
+                "WHERE indexrelid = 'idx_otp_unused_lookup'::regclass");
+
+        initializer.initialise();
+
+        assertThat(validIndexes()).containsExactlyInAnyOrder("idx_otp_unused_lookup", "idx_otp_mobile_created");
+    }
+
+    @Test
+    void laterStartsDoNotWaitForWritersOnTheTable() throws Exception {
+        initializer.initialise();
+
+        try (Connection writer = dataSource.getConnection()) {
+            writer.setAutoCommit(false);
+            try (Statement statement = writer.createStatement()) {
+                statement.executeUpdate("INSERT INTO otps (created_at, expires_at, is_used, mobile_number, otp_code, user_type) " +
+                        "VALUES (now(), now() + interval '5 minutes', false, '9876543210', 'hash', 'CITIZEN')");
+            }
+
+            // Any index DDL would wait for the open insert
+            CompletableFuture.runAsync(initializer::initialise).get(5, TimeUnit.SECONDS);
+            writer.rollback();
+        }
+    }
+
+    private void insertOtp(String mobileNumber, String code, boolean used, String expiresAt) {
+        jdbcTemplate.update("INSERT INTO otps (created_at, expires_at, is_used, mobile_number, otp_code, user_type) " +
+                "VALUES (now(), " + expiresAt + ", ?, ?, ?, 'CITIZEN')", used, mobileNumber, code);
+    }
+
+    private List<String> validIndexes() {
+        return jdbcTemplate.queryForList("SELECT c.relname FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid " +
+                "WHERE i.indrelid = 'otps'::regclass AND i.indisvalid AND NOT i.indisprimary", String.class);
+    }
+}
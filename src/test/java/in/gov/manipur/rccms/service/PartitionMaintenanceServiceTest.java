@@ -0,0 +1,181 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.PostgresTestDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Partitioned otps/captchas layout against a real PostgreSQL 14
+ */
+class PartitionMaintenanceServiceTest {
+
+    private static final int HOURS_AHEAD = 3;
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMddHH");
+
+    private DataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private PartitionMaintenanceService service;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = PostgresTestDatabase.freshDatabase();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        service = new PartitionMaintenanceService(jdbcTemplate, new DataSourceTransactionManager(dataSource),
+                HOURS_AHEAD, false);
+    }
+
+    @Test
+    void createsTheComingHoursWithoutADefaultPartition() {
+        service.initialise();
+
+        LocalDateTime currentHour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        for (String table : List.of("otps", "captchas")) {
+            List<String> partitions = partitions(table);
+            assertThat(partitions).hasSize(HOURS_AHEAD + 1)
+                    .contains(table + "_p" + SUFFIX.format(currentHour),
+                            table + "_p" + SUFFIX.format(currentHour.plusHours(HOURS_AHEAD)));
+        }
+        insertOtp("9876543210", LocalDateTime.now().plusMinutes(5));
+        assertThat(count("otps")).isEqualTo(1);
+    }
+
+    @Test
+    void convertsAnExistingTableAndKeepsItsUnexpiredRows() {
+        createUnpartitionedTables();
+        insertOtp("9876543210", LocalDateTime.now().plusMinutes(5));
+        insertOtp("9876543211", LocalDateTime.now().minusMinutes(5));
+        jdbcTemplate.update("INSERT INTO captchas (captcha_id, captcha_text, is_used, created_at, expires_at) " +
+                "VALUES ('c1', 'ABCDE', false, now(), ?)", Timestamp.valueOf(LocalDateTime.now().plusMinutes(5)));
+
+        service.initialise();
+
+        assertThat(partitions("otps")).hasSize(HOURS_AHEAD + 1);
+        assertThat(jdbcTemplate.queryForList("SELECT mobile_number FROM otps", String.class))
+                .containsExactly("9876543210");
+        assertThat(count("captchas")).isEqualTo(1);
+        // The old tables are kept, with all their rows
+        assertThat(count("otps_unpartitioned")).isEqualTo(2);
+        assertThat(count("captchas_unpartitioned")).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForList("SELECT indexname FROM pg_indexes WHERE tablename = 'otps'", String.class))
+                .contains("idx_otp_unused_lookup", "idx_otp_mobile_created");
+
+        // New ids continue after the copied ones
+        Long copiedId = jdbcTemplate.queryForObject("SELECT id FROM otps", Long.class);
+        insertOtp("9876543212", LocalDateTime.now().plusMinutes(5));
+        assertThat(jdbcTemplate.queryForObject("SELECT MAX(id) FROM otps", Long.class)).isGreaterThan(copiedId);
+    }
+
+    @Test
+    void foldsTheDefaultPartitionOfTheEarlierLayoutBackIn() {
+        service.initialise();
+        jdbcTemplate.execute("CREATE TABLE otps_default PARTITION OF otps DEFAULT");
+        // No partition for the current hour: the row lands in the default one
+        jdbcTemplate.execute("DROP TABLE otps_p" + SUFFIX.format(LocalDateTime.now().truncatedTo(ChronoUnit.HOURS)));
+        insertOtp("9876543210", LocalDateTime.now().plusMinutes(1));
+
+        service.initialise();
+
+        assertThat(partitions("otps")).doesNotContain("otps_default").hasSize(HOURS_AHEAD + 1);
+        assertThat(jdbcTemplate.queryForList("SELECT mobile_number FROM otps", String.class))
+                .containsExactly("9876543210");
+    }
+
+    @Test
+    void dropsExpiredPartitionsWhileInsertsKeepRunning() throws Exception {
+        service.initialise();
+        LocalDateTime expiredHour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(5);
+        String expired = "otps_p" + SUFFIX.format(expiredHour);
+        jdbcTemplate.execute("CREATE TABLE " + expired + " PARTITION OF otps FOR VALUES FROM ('"
+                + Timestamp.valueOf(expiredHour) + "') TO ('" + Timestamp.valueOf(expiredHour.plusHours(1)) + "')");
+        insertOtp("9876543210", expiredHour.plusMinutes(10));
+
+        try (Connection reader = dataSource.getConnection(); Connection writer = dataSource.getConnection()) {
+            // A long-running lookup holds a lock on otps and all of its partitions
+            reader.setAutoCommit(false);
+            try (Statement statement = reader.createStatement()) {
+                statement.executeQuery("SELECT count(*) FROM otps").close();
+            }
+
+            CompletableFuture<Void> maintenance = CompletableFuture.runAsync(service::maintainPartitions);
+            awaitLockWait();
+
+            // Dropping the partition outright would queue an ACCESS EXCLUSIVE lock on otps ahead of this insert
+            try (Statement statement = writer.createStatement()) {
+                statement.execute("SET lock_timeout = '2s'");
+                statement.executeUpdate("INSERT INTO otps (mobile_number, user_type, otp_code, is_used, created_at, expires_at) "
+                        + "VALUES ('9876543211', 'CITIZEN', 'hash', false, now(), '"
+                        + Timestamp.valueOf(LocalDateTime.now().plusMinutes(5)) + "')");
+            }
+            assertThat(maintenance).isNotDone();
+
+            reader.commit();
+            maintenance.get(30, TimeUnit.SECONDS);
+        }
+
+        assertThat(partitions("otps")).doesNotContain(expired).hasSize(HOURS_AHEAD + 1);
+        assertThat(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NULL", Boolean.class, expired)).isTrue();
+        assertThat(jdbcTemplate.queryForList("SELECT mobile_number FROM otps", String.class))
+                .containsExactly("9876543211");
+    }
+
+    /**
+     * Wait until the maintenance statement is blocked behind the open reader
+     */
+    private void awaitLockWait() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            Integer waiting = jdbcTemplate.queryForObject("SELECT count(*) FROM pg_stat_activity " +
+                    "WHERE wait_event_type = 'Lock' AND query LIKE '%otps_p%'", Integer.class);
+            if (waiting != null && waiting > 0) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("Partition maintenance never waited for the open transaction");
+    }
+
+    private void createUnpartitionedTables() {
+        // As created by Hibernate (ddl-auto=update) and OtpSchemaInitializer before partitioning
+        jdbcTemplate.execute("CREATE TABLE otps (id BIGINT GENERATED BY DEFAULT AS IDENTITY, " +
+                "created_at TIMESTAMP(6) NOT NULL, expires_at TIMESTAMP(6) NOT NULL, is_used BOOLEAN NOT NULL, " +
+                "mobile_number VARCHAR(10) NOT NULL, otp_code VARCHAR(64) NOT NULL, user_type VARCHAR(20) NOT NULL, " +
+                "PRIMARY KEY (id))");
+        OtpSchemaInitializer.OTP_INDEXES.forEach((name, definition) ->
+                jdbcTemplate.execute("CREATE INDEX " + name + " " + definition));
+        jdbcTemplate.execute("CREATE TABLE captchas (id BIGINT GENERATED BY DEFAULT AS IDENTITY, " +
+                "captcha_id VARCHAR(36) NOT NULL, captcha_text VARCHAR(10) NOT NULL, is_used BOOLEAN NOT NULL, " +
+                "ip_address VARCHAR(45), created_at TIMESTAMP(6) NOT NULL, expires_at TIMESTAMP(6) NOT NULL, " +
+                "PRIMARY KEY (id))");
+        jdbcTemplate.execute("CREATE INDEX idx_captcha_id ON captchas (captcha_id)");
+    }
+
+    private void insertOtp(String mobileNumber, LocalDateTime expiresAt) {
+        jdbcTemplate.update("INSERT INTO otps (mobile_number, user_type, otp_code, is_used, created_at, expires_at) " +
+                "VALUES (?, 'CITIZEN', 'hash', false, now(), ?)", mobileNumber, Timestamp.valueOf(expiresAt));
+    }
+
+    private List<String> partitions(String table) {
+        return jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent " +
+                "WHERE p.relname = ?", String.class, table);
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM " + table, Long.class);
+    }
+}
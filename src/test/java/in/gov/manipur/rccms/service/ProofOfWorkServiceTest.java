@@ -0,0 +1,115 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.dto.ProofOfWorkChallengeDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Adaptive difficulty from request rate to issued challenge to redeemed solution
+ */
+class ProofOfWorkServiceTest {
+
+    private static final int BASE_DIFFICULTY = 4;
+    private static final int MAX_DIFFICULTY = 8;
+    private static final double RATE_THRESHOLD = 2;
+
+    @Test
+    void difficultyGrowsOneBitPerDoublingOfTheRequestRate() throws Exception {
+        // Requests per second over the monitor's window to the expected difficulty
+        Map<Integer, Integer> curve = new LinkedHashMap<>();
+        curve.put(0, 4);
+        curve.put(2, 4);
+        curve.put(3, 5);
+        curve.put(4, 6);
+        curve.put(8, 7);
+        curve.put(16, 8);
+        curve.put(64, 8);
+
+        for (Map.Entry<Integer, Integer> point : curve.entrySet()) {
+            RequestRateMonitor monitor = new RequestRateMonitor();
+            for (int i = 0; i < point.getKey() * 10; i++) {
+                monitor.record(); // The monitor averages over 10 seconds
+            }
+            ProofOfWorkService service = service(monitor, true, "local");
+
+            ProofOfWorkChallengeDTO challenge = service.issueChallenge();
+            assertThat(challenge.getDifficulty()).as("difficulty at %d requests/s", point.getKey())
+                    .isEqualTo(point.getValue());
+
+            String solution = solve(challenge.getChallenge(), challenge.getDifficulty());
+            assertThat(service.isValid(challenge.getChallenge(), solution)).isTrue();
+            assertThat(service.consume(challenge.getChallenge(), solution)).isTrue();
+            assertThat(service.consume(challenge.getChallenge(), solution)).isFalse();
+        }
+    }
+
+    @Test
+    void rejectsSolutionsBelowTheIssuedDifficulty() throws Exception {
+        RequestRateMonitor monitor = new RequestRateMonitor();
+        for (int i = 0; i < 160; i++) {
+            monitor.record();
+        }
+        ProofOfWorkService service = service(monitor, true, "local");
+        ProofOfWorkChallengeDTO challenge = service.issueChallenge();
+        assertThat(challenge.getDifficulty()).isEqualTo(MAX_DIFFICULTY);
+
+        // Solved for the base difficulty only
+        String weak = null;
+        for (long n = 1000; weak == null; n++) {
+            int bits = zeroBits(challenge.getChallenge(), Long.toString(n));
+            if (bits >= BASE_DIFFICULTY && bits < MAX_DIFFICULTY) {
+                weak = Long.toString(n);
+            }
+        }
+        assertThat(service.consume(challenge.getChallenge(), weak)).isFalse();
+    }
+
+    @Test
+    void refusesToStartInClusterMode() {
+        assertThatThrownBy(() -> service(new RequestRateMonitor(), true, "cluster"))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(service(new RequestRateMonitor(), false, "cluster").isChallenge("pow.x")).isFalse();
+    }
+
+    private ProofOfWorkService service(RequestRateMonitor monitor, boolean enabled, String rateLimitMode) {
+        ProofOfWorkService service = new ProofOfWorkService(monitor, "TestSigningKey", enabled, 300, rateLimitMode,
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "baseDifficulty", BASE_DIFFICULTY);
+        ReflectionTestUtils.setField(service, "maxDifficulty", MAX_DIFFICULTY);
+        ReflectionTestUtils.setField(service, "rateThreshold", RATE_THRESHOLD);
+        return service;
+    }
+
+    /**
+     * Client side: search 4-10 digit solutions as a browser would
+     */
+    private static String solve(String challenge, int difficulty) throws Exception {
+        for (long n = 1000; ; n++) {
+            if (zeroBits(challenge, Long.toString(n)) >= difficulty) {
+                return Long.toString(n);
+            }
+        }
+    }
+
+    private static int zeroBits(String challenge, String solution) throws Exception {
+        byte[] hash = MessageDigest.getInstance("SHA-256")
+                .digest((challenge + ":" + solution).getBytes(StandardCharsets.UTF_8));
+        int bits = 0;
+        for (byte b : hash) {
+            if (b != 0) {
+                return bits + Integer.numberOfLeadingZeros(b & 0xff) - 24;
+            }
+            bits += 8;
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,317 @@
+package in.gov.manipur.rccms.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import in.gov.manipur.rccms.config.EncryptionProperties;
+import in.gov.manipur.rccms.config.SmsProperties;
+import in.gov.manipur.rccms.entity.SmsOutbox;
+import in.gov.manipur.rccms.exception.TooManyRequestsException;
+import in.gov.manipur.rccms.repository.SmsOutboxRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * An outbox row queued by SmsOutboxService is delivered by SmsDispatcher
+ * through a stub provider and left in its final state. The HTTP cases run
+ * against a local provider (SmsHttpStub) with injected latency and errors.
+ * Uses its own H2 database: application contexts cached by other tests run
+ * their own dispatcher, which would otherwise claim the rows queued here.
+ */
+@DataJpaTest(properties = "spring.datasource.url=jdbc:h2:mem:sms-dispatcher-test;MODE=PostgreSQL;"
+        + "DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SmsDispatcherTest {
+
+    private static final String TEXT = "Your RCCMS OTP is: 123456. Valid for 5 minutes.";
+
+    @Autowired
+    private SmsOutboxRepository smsOutboxRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private EncryptionService encryptionService;
+    private SmsDispatcher smsDispatcher;
+    private SmsOutboxService smsOutboxService;
+
+    @BeforeEach
+    void setUp() {
+        SmsProperties.Provider stub = new SmsProperties.Provider();
+        stub.setType("stub");
+        stub.setLatencyMs(0);
+        stub.setBatchSize(10);
+        SmsProperties smsProperties = new SmsProperties();
+        smsProperties.getProviders().put("stub", stub);
+        SmsService smsService = new SmsService(smsProperties, new ObjectMapper(), meterRegistry);
+
+        encryptionService = new EncryptionService("TestEncryptionKey", "TestBlindIndexKey", new EncryptionProperties());
+        smsDispatcher = new SmsDispatcher(smsOutboxRepository, smsService, mock(ExpiredRowCleanupService.class),
+                encryptionService, transactionManager, 50, 2, 100, 100, 5, 60, meterRegistry);
+        smsOutboxService = new SmsOutboxService(smsOutboxRepository, smsDispatcher, encryptionService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        smsDispatcher.stop();
+        encryptionService.stop();
+        smsOutboxRepository.deleteAll();
+    }
+
+    @Test
+    void queuedMessageIsNotStoredInPlainText() {
+        String sendId = smsOutboxService.enqueue("9876543210", TEXT, Duration.ofMinutes(5));
+
+        SmsOutbox queued = findBySendId(sendId);
+        assertThat(queued.getStatus()).isEqualTo(SmsOutbox.Status.PENDING);
+        assertThat(queued.getMessage()).doesNotContain("123456");
+        assertThat(encryptionService.decrypt(queued.getMessage(), queued.getMessageKeyVersion())).isEqualTo(TEXT);
+    }
+
+    @Test
+    void deliversThroughTheGatewayAndMarksTheRowSent() throws InterruptedException {
+        smsDispatcher.start();
+        String sendId = smsOutboxService.enqueue("9876543210", TEXT, Duration.ofMinutes(5));
+
+        SmsOutbox sms = awaitFinal(sendId);
+        assertThat(sms.getStatus()).isEqualTo(SmsOutbox.Status.SENT);
+        assertThat(sms.getProviderMessageId()).startsWith("stub-");
+        assertThat(sms.getSentAt()).isNotNull();
+        assertThat(sms.getAttempts()).isEqualTo(1);
+        assertThat(sms.getMessage()).isNull();
+        assertThat(sentCount()).isEqualTo(1);
+    }
+
+    @Test
+    void expiredMessageIsMarkedFailedWithoutSending() throws InterruptedException {
+        String sendId = smsOutboxService.enqueue("9876543210", TEXT, Duration.ofMillis(1));
+        Thread.sleep(10);
+        smsDispatcher.start();
+
+        SmsOutbox sms = awaitFinal(sendId);
+        assertThat(sms.getStatus()).isEqualTo(SmsOutbox.Status.FAILED);
+        assertThat(sms.getLastError()).isEqualTo("Expired before delivery");
+        assertThat(sms.getProviderMessageId()).isNull();
+        assertThat(sms.getMessage()).isNull();
+    }
+
+    @Test
+    void unqueuedMessageIsSentWithoutAnOutboxRow() throws InterruptedException {
+        smsOutboxService.sendUnqueued("9876543210", TEXT, Duration.ofMinutes(5));
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (sentCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(sentCount()).isEqualTo(1);
+        assertThat(smsOutboxRepository.count()).isZero();
+    }
+
+    @Test
+    void unqueuedRetriesDoNotHoldASenderThread() throws InterruptedException {
+        SmsDispatcher dispatcher = singleSenderDispatcher(0, 1.0, 10);
+        try {
+            dispatcher.sendUnqueued("9876543210", TEXT, Duration.ofMinutes(5));
+            awaitCount("retried", 1);
+
+            // The first message now waits about 2 s for its retry; the only sender takes the next one at once
+            long start = System.nanoTime();
+            dispatcher.sendUnqueued("9876543211", TEXT, Duration.ofMinutes(5));
+            awaitCount("retried", 2);
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(1000));
+        } finally {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    void unqueuedSendIsRefusedWhenTheSenderQueueIsFull() {
+        SmsDispatcher dispatcher = singleSenderDispatcher(2000, 0, 1);
+        try {
+            dispatcher.sendUnqueued("9876543210", TEXT, Duration.ofMinutes(5)); // Sending
+            dispatcher.sendUnqueued("9876543211", TEXT, Duration.ofMinutes(5)); // Queued
+
+            assertThatThrownBy(() -> dispatcher.sendUnqueued("9876543212", TEXT, Duration.ofMinutes(5)))
+                    .isInstanceOf(TooManyRequestsException.class);
+            assertThat(meterRegistry.get("rccms.sms.sender.rejected").tag("kind", "unqueued").counter().count())
+                    .isEqualTo(1);
+        } finally {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    void retriesAFailedHttpSendWithBackoffUnderTheSameSendId() throws InterruptedException {
+        try (SmsHttpStub gateway = new SmsHttpStub()) {
+            gateway.failNext(1, 503);
+            SmsDispatcher dispatcher = httpDispatcher(gateway, 2);
+            try {
+                dispatcher.start();
+                String sendId = outboxService(dispatcher).enqueue("9876543210", TEXT, Duration.ofMinutes(5));
+
+                awaitCount("retried", 1);
+                LocalDateTime failedAt = LocalDateTime.now();
+                SmsOutbox retrying = findBySendId(sendId);
+                while (retrying.getLastError() == null) { // Counted before the outcome is committed
+                    Thread.sleep(5);
+                    retrying = findBySendId(sendId);
+                }
+                assertThat(retrying.getStatus()).isEqualTo(SmsOutbox.Status.PENDING);
+                assertThat(retrying.getLastError()).contains("HTTP 503");
+                // First backoff is 2 s with +/-20% jitter
+                assertThat(retrying.getNextAttemptAt())
+                        .isAfter(failedAt.plus(Duration.ofMillis(1500)))
+                        .isBefore(failedAt.plus(Duration.ofMillis(2500)));
+
+                SmsOutbox sms = awaitFinal(sendId);
+                assertThat(sms.getStatus()).isEqualTo(SmsOutbox.Status.SENT);
+                assertThat(sms.getAttempts()).isEqualTo(2);
+                assertThat(sms.getProviderMessageId()).startsWith("http-");
+                assertThat(gateway.requests()).hasSize(2)
+                        .allSatisfy(request -> assertThat(request.header("Idempotency-Key")).isEqualTo(sendId));
+            } finally {
+                dispatcher.stop();
+            }
+        }
+    }
+
+    @Test
+    void requestsToTheGatewayAreBoundedByTheSenderThreads() throws InterruptedException {
+        try (SmsHttpStub gateway = new SmsHttpStub()) {
+            gateway.latencyMs(200);
+            SmsDispatcher dispatcher = httpDispatcher(gateway, 2);
+            try {
+                SmsOutboxService outbox = outboxService(dispatcher);
+                for (int i = 0; i < 8; i++) {
+                    outbox.enqueue("987654321" + i, TEXT, Duration.ofMinutes(5));
+                }
+                dispatcher.start();
+
+                awaitCount("sent", 8);
+                assertThat(gateway.requests()).hasSize(8);
+                assertThat(gateway.maxInFlight()).isEqualTo(2);
+            } finally {
+                dispatcher.stop();
+            }
+        }
+    }
+
+    @Test
+    void queuingDoesNotWaitForASlowGateway() throws InterruptedException {
+        try (SmsHttpStub gateway = new SmsHttpStub()) {
+            gateway.latencyMs(1500);
+            SmsDispatcher dispatcher = httpDispatcher(gateway, 2);
+            try {
+                dispatcher.start();
+                SmsOutboxService outbox = outboxService(dispatcher);
+
+                // What the send-OTP endpoint waits for: the outbox insert or the hand-off to a sender
+                List<Long> queueMillis = new ArrayList<>();
+                List<String> sendIds = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    long start = System.nanoTime();
+                    sendIds.add(outbox.enqueue("987654321" + i, TEXT, Duration.ofMinutes(5)));
+                    outbox.sendUnqueued("987654322" + i, TEXT, Duration.ofMinutes(5));
+                    queueMillis.add(Duration.ofNanos(System.nanoTime() - start).toMillis());
+                }
+                assertThat(queueMillis).allSatisfy(millis -> assertThat(millis).isLessThan(300));
+
+                for (String sendId : sendIds) {
+                    assertThat(awaitFinal(sendId).getStatus()).isEqualTo(SmsOutbox.Status.SENT);
+                }
+                awaitCount("sent", 8);
+            } finally {
+                dispatcher.stop();
+            }
+        }
+    }
+
+    /**
+     * Dispatcher sending through HttpSmsGateway to the local stub, one message per request
+     */
+    private SmsDispatcher httpDispatcher(SmsHttpStub gateway, int concurrency) {
+        SmsProperties.Provider http = new SmsProperties.Provider();
+        http.setType("http");
+        http.setUrl(gateway.url());
+        http.setTimeoutMs(5000);
+        http.setFailureThreshold(1000);
+        SmsProperties smsProperties = new SmsProperties();
+        smsProperties.getProviders().put("http", http);
+        SmsService smsService = new SmsService(smsProperties, new ObjectMapper(), meterRegistry);
+        return new SmsDispatcher(smsOutboxRepository, smsService, mock(ExpiredRowCleanupService.class),
+                encryptionService, transactionManager, 50, concurrency, 100, 100, 5, 60, meterRegistry);
+    }
+
+    private SmsOutboxService outboxService(SmsDispatcher dispatcher) {
+        return new SmsOutboxService(smsOutboxRepository, dispatcher, encryptionService);
+    }
+
+    /**
+     * Dispatcher with one sender thread in front of a stub provider
+     */
+    private SmsDispatcher singleSenderDispatcher(long latencyMs, double failureRate, int queueCapacity) {
+        SmsProperties.Provider stub = new SmsProperties.Provider();
+        stub.setType("stub");
+        stub.setLatencyMs(latencyMs);
+        stub.setFailureRate(failureRate);
+        stub.setFailureThreshold(1000);
+        SmsProperties smsProperties = new SmsProperties();
+        smsProperties.getProviders().put("stub", stub);
+        SmsService smsService = new SmsService(smsProperties, new ObjectMapper(), meterRegistry);
+        return new SmsDispatcher(smsOutboxRepository, smsService, mock(ExpiredRowCleanupService.class),
+                encryptionService, transactionManager, 50, 1, queueCapacity, 100, 5, 60, meterRegistry);
+    }
+
+    private void awaitCount(String outcome, double count) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (outcomeCount(outcome) < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(outcomeCount(outcome)).isEqualTo(count);
+    }
+
+    private double outcomeCount(String outcome) {
+        return meterRegistry.get("rccms.sms.outbox.messages").tag("outcome", outcome).counter().count();
+    }
+
+    private double sentCount() {
+        return meterRegistry.get("rccms.sms.outbox.messages").tag("outcome", "sent").counter().count();
+    }
+
+    private SmsOutbox awaitFinal(String sendId) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        SmsOutbox sms = findBySendId(sendId);
+        while (sms.getStatus() == SmsOutbox.Status.PENDING && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+            sms = findBySendId(sendId);
+        }
+        return sms;
+    }
+
+    private SmsOutbox findBySendId(String sendId) {
+        return smsOutboxRepository.findAll().stream()
+                .filter(sms -> sms.getSendId().equals(sendId))
+                .findFirst()
+                .orElseThrow();
+    }
+}
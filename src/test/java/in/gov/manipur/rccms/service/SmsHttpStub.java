@@ -0,0 +1,162 @@
+package in.gov.manipur.rccms.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local SMS provider speaking HttpSmsGateway's JSON contract on a random port,
+ * with injectable latency, HTTP errors and per-number rejections. Records every
+ * request and the highest number of requests in flight at once.
+ */
+class SmsHttpStub implements AutoCloseable {
+
+    /**
+     * One request as received by the stub
+     */
+    record Request(Map<String, List<String>> headers, JsonNode body) {
+
+        String header(String name) {
+            return headers.entrySet().stream()
+                    .filter(header -> header.getKey().equalsIgnoreCase(name))
+                    .map(header -> header.getValue().get(0))
+                    .findFirst()
+                    .orElse(null);
+        }
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService handlers = Executors.newCachedThreadPool();
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+    private final Set<String> rejectedNumbers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger messageIds = new AtomicInteger();
+    private volatile long latencyMs;
+    private volatile int failureStatus = 500;
+    private volatile String responseBody;
+
+    SmsHttpStub() {
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start the SMS stub", e);
+        }
+        server.createContext("/sms", this::handle);
+        server.setExecutor(handlers); // One thread per request, so the stub never limits concurrency
+        server.start();
+    }
+
+    String url() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/sms";
+    }
+
+    /**
+     * Delay every response by this long
+     */
+    void latencyMs(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    /**
+     * Answer the next requests with an HTTP error status
+     */
+    void failNext(int requests, int status) {
+        this.failureStatus = status;
+        failuresLeft.set(requests);
+    }
+
+    /**
+     * Reject messages to this number in an otherwise successful response
+     */
+    void reject(String mobileNumber) {
+        rejectedNumbers.add(mobileNumber);
+    }
+
+    /**
+     * Answer with this body and status 200 instead of the computed results
+     */
+    void respondWith(String body) {
+        this.responseBody = body;
+    }
+
+    List<Request> requests() {
+        return requests;
+    }
+
+    int maxInFlight() {
+        return maxInFlight.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+        try {
+            JsonNode body = objectMapper.readTree(exchange.getRequestBody());
+            requests.add(new Request(Map.copyOf(exchange.getRequestHeaders()), body));
+            if (latencyMs > 0) {
+                Thread.sleep(latencyMs);
+            }
+            if (failuresLeft.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                respond(exchange, failureStatus, "{\"error\":\"unavailable\"}");
+                return;
+            }
+            String fixed = responseBody;
+            respond(exchange, 200, fixed != null ? fixed : results(body));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "");
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private String results(JsonNode body) {
+        ObjectNode response = objectMapper.createObjectNode();
+        ArrayNode results = response.putArray("results");
+        for (JsonNode message : body.path("messages")) {
+            ObjectNode result = results.addObject().put("id", message.path("id").asText());
+            if (rejectedNumbers.contains(message.path("to").asText())) {
+                result.put("status", "rejected").put("error", "invalid number");
+            } else {
+                result.put("status", "accepted").put("messageId", "http-" + messageIds.incrementAndGet());
+            }
+        }
+        return response.toString();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
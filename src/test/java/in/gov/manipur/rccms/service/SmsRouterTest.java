@@ -0,0 +1,221 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.exception.SmsGatewayException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * SmsRouter against stub gateways with fixed behaviour
+ */
+class SmsRouterTest {
+
+    private static final List<SmsGateway.Message> MESSAGES =
+            List.of(new SmsGateway.Message("send-1", "9876543210", "Your RCCMS OTP is: 123456"));
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private SmsRouter router;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (router != null) {
+            router.shutdown();
+        }
+    }
+
+    @Test
+    void routesToTheFasterProvider() {
+        TestGateway fast = new TestGateway("fast", () -> sleep(1));
+        TestGateway slow = new TestGateway("slow", () -> sleep(20));
+        SmsProvider fastProvider = provider(fast);
+        SmsProvider slowProvider = provider(slow);
+        for (int i = 0; i < 10; i++) {
+            fastProvider.send(MESSAGES);
+            slowProvider.send(MESSAGES);
+        }
+        fast.calls.set(0);
+        slow.calls.set(0);
+        router = new SmsRouter(List.of(slowProvider, fastProvider), false, 0, 32, meterRegistry);
+
+        for (int i = 0; i < 100; i++) {
+            router.send(MESSAGES);
+        }
+
+        // Only the 5% exploration share may go to the slower provider
+        assertThat(fast.calls.get()).isGreaterThanOrEqualTo(80);
+        assertThat(meterRegistry.get("rccms.sms.routing.selected").tag("provider", "fast").counter().count())
+                .isEqualTo(fast.calls.get());
+    }
+
+    @Test
+    void hedgesToTheNextProviderAfterTheDeadline() {
+        // The hanging provider was the faster one until it stopped answering
+        TestGateway hanging = new TestGateway("hanging", this::awaitRelease);
+        TestGateway backup = new TestGateway("backup", () -> sleep(5));
+        SmsProvider hangingProvider = warmedUp(hanging, 1);
+        SmsProvider backupProvider = warmedUp(backup, 20);
+        router = new SmsRouter(List.of(backupProvider, hangingProvider), true, 50, 32, meterRegistry);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            List<SmsGateway.Result> results = router.send(MESSAGES);
+            assertThat(results).singleElement().satisfies(r -> assertThat(r.providerMessageId()).startsWith("backup-"));
+        }
+
+        assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start)).isLessThan(5);
+        assertThat(hanging.calls.get()).isPositive();
+        assertThat(meterRegistry.get("rccms.sms.routing.hedges").counter().count()).isEqualTo(hanging.calls.get());
+    }
+
+    @Test
+    void failsOverWhenTheFirstProviderFailsBeforeTheDeadline() {
+        // The failing provider was the faster one until it started refusing connections
+        TestGateway failing = new TestGateway("failing", () -> {
+            throw new SmsGatewayException("failing: connection refused");
+        });
+        TestGateway backup = new TestGateway("backup", () -> sleep(5));
+        SmsProvider failingProvider = warmedUp(failing, 1);
+        SmsProvider backupProvider = warmedUp(backup, 20);
+        router = new SmsRouter(List.of(backupProvider, failingProvider), true, 10_000, 32, meterRegistry);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            List<SmsGateway.Result> results = router.send(MESSAGES);
+            assertThat(results).singleElement().satisfies(r -> assertThat(r.providerMessageId()).startsWith("backup-"));
+        }
+
+        assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start)).isLessThan(5);
+        assertThat(failing.calls.get()).isPositive();
+        assertThat(meterRegistry.get("rccms.sms.routing.failovers").counter().count()).isEqualTo(failing.calls.get());
+    }
+
+    @Test
+    void providersThatHaveOnlyFailedRankLast() {
+        TestGateway failing = new TestGateway("failing", () -> {
+            throw new SmsGatewayException("failing: connection refused");
+        });
+        TestGateway working = new TestGateway("working", () -> sleep(5));
+        SmsProvider failingProvider = provider(failing);
+        assertThatThrownBy(() -> failingProvider.send(MESSAGES)).isInstanceOf(SmsGatewayException.class);
+        SmsProvider workingProvider = warmedUp(working, 20);
+        router = new SmsRouter(List.of(failingProvider, workingProvider), false, 0, 32, meterRegistry);
+
+        for (int i = 0; i < 100; i++) {
+            try {
+                router.send(MESSAGES);
+            } catch (SmsGatewayException e) {
+                // Explored the failing provider
+            }
+        }
+
+        // Only the 5% exploration share may go to the failing provider
+        assertThat(working.calls.get()).isGreaterThanOrEqualTo(80);
+    }
+
+    @Test
+    void sendsOnTheCallersThreadWhenAllHedgeThreadsAreBusy() throws Exception {
+        TestGateway hanging = new TestGateway("hanging", this::awaitRelease);
+        TestGateway backup = new TestGateway("backup", () -> sleep(5));
+        SmsProvider hangingProvider = warmedUp(hanging, 1);
+        SmsProvider backupProvider = warmedUp(backup, 20);
+        router = new SmsRouter(List.of(backupProvider, hangingProvider), true, 50, 2, meterRegistry);
+        Counter rejected = meterRegistry.get("rccms.sms.routing.hedges.rejected").counter();
+
+        // Each hanging send keeps a hedge thread; once both are taken, sends run on the caller's thread
+        List<CompletableFuture<List<SmsGateway.Result>>> sends = new ArrayList<>();
+        for (int i = 0; i < 20 && rejected.count() < 2; i++) {
+            CompletableFuture<List<SmsGateway.Result>> send = CompletableFuture.supplyAsync(() -> router.send(MESSAGES));
+            sends.add(send);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!send.isDone() && rejected.count() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertThat(send.isDone() || rejected.count() >= 2).isTrue();
+        }
+        assertThat(rejected.count()).isEqualTo(2);
+
+        release.countDown();
+        for (CompletableFuture<List<SmsGateway.Result>> send : sends) {
+            assertThat(send.get(5, TimeUnit.SECONDS)).singleElement();
+        }
+    }
+
+    /**
+     * Provider with statistics from sends that took the given time
+     */
+    private SmsProvider warmedUp(TestGateway gateway, long millis) {
+        SmsProvider provider = provider(gateway);
+        gateway.warmUpMillis = millis;
+        for (int i = 0; i < 10; i++) {
+            provider.send(MESSAGES);
+        }
+        gateway.warmUpMillis = -1;
+        gateway.calls.set(0);
+        return provider;
+    }
+
+    private SmsProvider provider(TestGateway gateway) {
+        return new SmsProvider(gateway.name, gateway, 100, 1000, new CircuitBreaker(1000, 30_000), meterRegistry);
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gateway that runs a fixed behaviour per call and accepts every message
+     */
+    private static final class TestGateway implements SmsGateway {
+        private final String name;
+        private final Runnable behaviour;
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile long warmUpMillis = -1; // Latency while warming up, instead of the behaviour
+
+        TestGateway(String name, Runnable behaviour) {
+            this.name = name;
+            this.behaviour = behaviour;
+        }
+
+        @Override
+        public int maxBatchSize() {
+            return 10;
+        }
+
+        @Override
+        public List<Result> send(List<Message> messages) {
+            calls.incrementAndGet();
+            if (warmUpMillis >= 0) {
+                sleep(warmUpMillis);
+            } else {
+                behaviour.run();
+            }
+            return messages.stream().map(m -> Result.accepted(m.sendId(), name + "-" + m.sendId())).toList();
+        }
+    }
+}
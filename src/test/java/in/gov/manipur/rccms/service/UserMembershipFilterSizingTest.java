@@ -0,0 +1,84 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.PostgresTestDatabase;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Sizing report: the membership filters at the default 5M expected users and 1%,
+ * built from a 5M-row users table in PostgreSQL 14. Reports the filters' memory,
+ * the estimated and the measured false-positive rate (over identifiers that were
+ * never registered) and the rebuild time.
+ *
+ * mvn -Pbenchmark test -Dtest=UserMembershipFilterSizingTest -Dexec.skip
+ */
+@Tag("benchmark")
+class UserMembershipFilterSizingTest {
+
+    private static final int USERS = 5_000_000;
+    private static final int PROBES = 1_000_000;
+
+    @Test
+    void fiveMillionUsersAtOnePercent() {
+        DataSource dataSource = PostgresTestDatabase.freshDatabase();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE users (id BIGSERIAL PRIMARY KEY, email VARCHAR(100) NOT NULL, " +
+                "mobile_number VARCHAR(10) NOT NULL)");
+        jdbcTemplate.update("INSERT INTO users (email, mobile_number) " +
+                "SELECT 'user' || i || '@example.com', '9' || lpad(i::text, 9, '0') FROM generate_series(0, ?) i",
+                USERS - 1);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        UserMembershipFilter filter = new UserMembershipFilter(true, USERS, 0.01, jdbcTemplate,
+                new DataSourceTransactionManager(dataSource), meterRegistry);
+        Timer rebuildTime = meterRegistry.get("rccms.auth.membership.rebuild").timer();
+        filter.rebuild(); // As at startup, before the JIT has warmed up
+        long coldMillis = (long) rebuildTime.totalTime(TimeUnit.MILLISECONDS);
+        filter.rebuild();
+        long rebuildMillis = (long) rebuildTime.totalTime(TimeUnit.MILLISECONDS) - coldMillis;
+
+        for (int i = 0; i < USERS; i += 997) {
+            assertThat(filter.mightHaveEmail(email(i))).isTrue();
+            assertThat(filter.mightHaveMobile(mobile(9, i))).isTrue();
+        }
+        int emailHits = 0;
+        int mobileHits = 0;
+        for (int i = 0; i < PROBES; i++) {
+            emailHits += filter.mightHaveEmail("nobody" + i + "@example.com") ? 1 : 0;
+            mobileHits += filter.mightHaveMobile(mobile(8, i)) ? 1 : 0;
+        }
+        double bytes = meterRegistry.get("rccms.auth.membership.bytes").gauge().value();
+        double users = meterRegistry.get("rccms.auth.membership.users").gauge().value();
+        double estimated = meterRegistry.get("rccms.auth.membership.fpp").gauge().value();
+        double emailRate = (double) emailHits / PROBES;
+        double mobileRate = (double) mobileHits / PROBES;
+
+        System.out.printf(Locale.ROOT, "Membership filters at %d users: %.1f MB (%.2f bytes per user), "
+                        + "%.0f counted, estimated false-positive rate %.4f, measured %.4f (emails) %.4f (mobiles) "
+                        + "over %d unregistered identifiers, rebuild %d ms (first build %d ms)%n",
+                USERS, bytes / (1024 * 1024), bytes / USERS, users, estimated, emailRate, mobileRate,
+                PROBES, rebuildMillis, coldMillis);
+        assertThat(bytes).isEqualTo(2 * 8 * 1024 * 1024); // 2 x 8 MB, as the class comment states
+        assertThat(users).isBetween(USERS * 0.99, (double) USERS);
+        assertThat(emailRate).isLessThan(0.01);
+        assertThat(mobileRate).isLessThan(0.01);
+    }
+
+    private static String email(int i) {
+        return "user" + i + "@example.com";
+    }
+
+    private static String mobile(int firstDigit, int i) {
+        return firstDigit + String.format(Locale.ROOT, "%09d", i);
+    }
+}
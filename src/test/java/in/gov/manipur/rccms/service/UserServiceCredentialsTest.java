@@ -0,0 +1,137 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.dto.AuthResponseDTO;
+import in.gov.manipur.rccms.dto.LoginRequestDTO;
+import in.gov.manipur.rccms.entity.User;
+import in.gov.manipur.rccms.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A password login looks the user up once: one SELECT of the credentials
+ * projection, whether the username is an email or a mobile number.
+ * CAPTCHA, BCrypt and JWT are mocked so only the database work is counted.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class UserServiceCredentialsTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private UserService userService;
+    private AuthService authService;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        UserMembershipFilter membershipFilter = mock(UserMembershipFilter.class);
+        when(membershipFilter.mightHaveEmail(anyString())).thenReturn(true);
+        when(membershipFilter.mightHaveMobile(anyString())).thenReturn(true);
+        PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+        when(passwordEncoder.matches("Secret@123", "$2a$10$hash")).thenReturn(true);
+        CryptoExecutor cryptoExecutor = mock(CryptoExecutor.class);
+        when(cryptoExecutor.call(anyString(), any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+        userService = new UserService(userRepository, passwordEncoder, null, null, cryptoExecutor, membershipFilter, null);
+
+        CaptchaService captchaService = mock(CaptchaService.class);
+        when(captchaService.consumeCaptcha(eq("captcha-id"), anyString())).thenReturn(true);
+        JwtService jwtService = mock(JwtService.class);
+        when(jwtService.generateToken(anyLong(), anyString(), anyString())).thenReturn("access-token");
+        when(jwtService.generateRefreshToken(anyLong(), anyString())).thenReturn("refresh-token");
+        LoginAttemptTracker loginAttemptTracker =
+                new LoginAttemptTracker(3, 1000, 60000, 10, 15, 5, 15, 1000, new SimpleMeterRegistry());
+        authService = new AuthService(userService, null, captchaService, jwtService, loginAttemptTracker);
+
+        User user = new User();
+        user.setFirstName("Test");
+        user.setLastName("Citizen");
+        user.setEmail("citizen@example.com");
+        user.setMobileNumber("9876543210");
+        user.setDateOfBirth(LocalDate.of(1990, 1, 1));
+        user.setGender(User.Gender.OTHER);
+        user.setAddress("Thangal Bazar, Imphal");
+        user.setDistrict("Imphal West");
+        user.setPincode("795001");
+        user.setAadharNumber("encrypted");
+        user.setPassword("$2a$10$hash");
+        user.setUserType(User.UserType.CITIZEN);
+        user.setIsActive(true);
+        userRepository.saveAndFlush(user);
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void findsCredentialsByEmailWithOneSelect() {
+        UserRepository.Credentials credentials = userService.findCredentials("Citizen@Example.com");
+
+        assertThat(credentials.getPassword()).isEqualTo("$2a$10$hash");
+        assertThat(credentials.getUserType()).isEqualTo(User.UserType.CITIZEN);
+        assertThat(credentials.getIsActive()).isTrue();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void findsCredentialsByMobileNumberWithOneSelect() {
+        UserRepository.Credentials credentials = userService.findCredentials("9876543210");
+
+        assertThat(credentials.getEmail()).isEqualTo("citizen@example.com");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void passwordLoginByEmailIssuesOneSelect() {
+        AuthResponseDTO response = authService.loginWithPassword(login("Citizen@Example.com", "Secret@123"));
+
+        assertThat(response.getToken()).isEqualTo("access-token");
+        assertThat(response.getMobileNumber()).isEqualTo("9876543210");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void passwordLoginByMobileNumberIssuesOneSelect() {
+        AuthResponseDTO response = authService.loginWithPassword(login("9876543210", "Secret@123"));
+
+        assertThat(response.getEmail()).isEqualTo("citizen@example.com");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    private static LoginRequestDTO login(String username, String password) {
+        return new LoginRequestDTO(username, password, "ABCDE", "captcha-id", User.UserType.CITIZEN);
+    }
+}
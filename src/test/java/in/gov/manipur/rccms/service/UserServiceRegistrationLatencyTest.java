@@ -0,0 +1,216 @@
+package in.gov.manipur.rccms.service;
+
+import in.gov.manipur.rccms.config.EncryptionProperties;
+import in.gov.manipur.rccms.dto.UserRegistrationDTO;
+import in.gov.manipur.rccms.entity.User;
+import in.gov.manipur.rccms.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Latency report: citizen registration before and after the single-insert change.
+ * "Before" is the former path, reimplemented here: existsByEmail, existsByMobileNumber
+ * and an exists query on the Aadhar ciphertext, then save and flush, in one transaction.
+ * "After" is registerCitizen. BCrypt and OTP delivery are mocked so only the database
+ * work is measured; prepared statements are counted with Hibernate statistics. The
+ * former idx_aadhar on the ciphertext is recreated for the run so "before" is not a scan.
+ *
+ * mvn -Pbenchmark test -Dtest=UserServiceRegistrationLatencyTest -Dexec.skip
+ */
+@Tag("benchmark")
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserServiceRegistrationLatencyTest {
+
+    private static final int WARM_UP = 2_000;
+    private static final int SIGNUPS = 10_000;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private EncryptionService encryptionService;
+    private PasswordEncoder passwordEncoder;
+    private UserService userService;
+    private TransactionTemplate transactionTemplate;
+    private Statistics statistics;
+    private int nextUser;
+
+    @BeforeEach
+    void setUp() {
+        encryptionService = new EncryptionService("TestEncryptionKey", "TestBlindIndexKey", new EncryptionProperties());
+        passwordEncoder = mock(PasswordEncoder.class);
+        when(passwordEncoder.encode(anyString())).thenReturn("$2a$10$hash");
+        CryptoExecutor cryptoExecutor = mock(CryptoExecutor.class);
+        when(cryptoExecutor.submit(anyString(), any()))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(invocation.<Supplier<?>>getArgument(1).get()));
+        when(cryptoExecutor.await(any())).thenAnswer(invocation -> invocation.<CompletableFuture<?>>getArgument(0).join());
+        UserMembershipFilter membershipFilter = mock(UserMembershipFilter.class);
+        AadharMigrationService aadharMigrationService = mock(AadharMigrationService.class);
+        when(aadharMigrationService.isComplete()).thenReturn(true);
+        userService = new UserService(userRepository, passwordEncoder, encryptionService, mock(OtpService.class),
+                cryptoExecutor, membershipFilter, aadharMigrationService);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        jdbcTemplate.execute("CREATE INDEX idx_aadhar ON users (aadhar_number)");
+    }
+
+    @AfterEach
+    void tearDown() {
+        encryptionService.stop();
+        userRepository.deleteAllInBatch();
+        jdbcTemplate.execute("DROP INDEX idx_aadhar");
+    }
+
+    @Test
+    void oneInsertPerSignupInsteadOfFourStatements() {
+        for (int i = 0; i < WARM_UP; i++) {
+            registerBefore(registration());
+            userService.registerCitizen(registration());
+        }
+
+        Run before = measure(this::registerBefore);
+        Run after = measure(userService::registerCitizen);
+
+        System.out.printf(Locale.ROOT, "Registration over %d signups each: before p50=%.1f us p99=%.1f us "
+                        + "%.2f statements/signup, after p50=%.1f us p99=%.1f us %.2f statements/signup%n",
+                SIGNUPS, before.percentile(0.5), before.percentile(0.99), before.statementsPerSignup(),
+                after.percentile(0.5), after.percentile(0.99), after.statementsPerSignup());
+        assertThat(before.statementsPerSignup()).isEqualTo(4.0);
+        assertThat(after.statementsPerSignup()).isEqualTo(1.0);
+        assertThat(after.percentile(0.5)).isLessThan(before.percentile(0.5));
+    }
+
+    private Run measure(Consumer<UserRegistrationDTO> register) {
+        UserRegistrationDTO[] registrations = new UserRegistrationDTO[SIGNUPS];
+        for (int i = 0; i < SIGNUPS; i++) {
+            registrations[i] = registration();
+        }
+        long[] nanos = new long[SIGNUPS];
+        statistics.clear();
+        for (int i = 0; i < SIGNUPS; i++) {
+            long start = System.nanoTime();
+            register.accept(registrations[i]);
+            nanos[i] = System.nanoTime() - start;
+        }
+        return new Run(nanos, (double) statistics.getPrepareStatementCount() / SIGNUPS);
+    }
+
+    /**
+     * registerCitizen as it was before the single-insert change (OTP delivery left out, as in the mocked "after")
+     */
+    private void registerBefore(UserRegistrationDTO dto) {
+        String hashedPassword = passwordEncoder.encode(dto.getPassword());
+        transactionTemplate.executeWithoutResult(status -> {
+            if (userRepository.existsByEmail(dto.getEmail())) {
+                throw new IllegalStateException("Email already registered");
+            }
+            if (userRepository.existsByMobileNumber(dto.getMobileNumber())) {
+                throw new IllegalStateException("Mobile number already registered");
+            }
+            String aadhar = dto.getAadharNumber().trim();
+            long aadharMatches = entityManager.createQuery(
+                            "SELECT COUNT(u) FROM User u WHERE u.aadharNumber = :aadharNumber", Long.class)
+                    .setParameter("aadharNumber", encryptionService.encryptLegacy(aadhar))
+                    .getSingleResult();
+            if (aadharMatches > 0) {
+                throw new IllegalStateException("Aadhar number already registered");
+            }
+            User user = new User();
+            user.setFirstName(dto.getFirstName().trim());
+            user.setLastName(dto.getLastName().trim());
+            user.setEmail(dto.getEmail().trim().toLowerCase());
+            user.setMobileNumber(dto.getMobileNumber().trim());
+            user.setDateOfBirth(dto.getDateOfBirth());
+            user.setGender(dto.getGender());
+            user.setAddress(dto.getAddress().trim());
+            user.setDistrict(dto.getDistrict().trim());
+            user.setPincode(dto.getPincode().trim());
+            user.setUserType(User.UserType.CITIZEN);
+            user.setIsActive(false);
+            user.setIsEmailVerified(false);
+            user.setIsMobileVerified(false);
+            user.setAadharNumber(encryptionService.encrypt(aadhar));
+            user.setAadharKeyVersion(encryptionService.activeKeyVersion());
+            user.setAadharHash(encryptionService.blindIndex(aadhar));
+            user.setPassword(hashedPassword);
+            userRepository.save(user);
+            userRepository.flush();
+        });
+    }
+
+    private UserRegistrationDTO registration() {
+        int n = nextUser++;
+        UserRegistrationDTO dto = new UserRegistrationDTO();
+        dto.setFirstName("Test");
+        dto.setLastName("Citizen");
+        dto.setEmail("citizen" + n + "@example.com");
+        dto.setMobileNumber("9" + String.format(Locale.ROOT, "%09d", n));
+        dto.setDateOfBirth(LocalDate.of(1990, 1, 1));
+        dto.setGender(User.Gender.OTHER);
+        dto.setAddress("Thangal Bazar, Imphal");
+        dto.setDistrict("Imphal West");
+        dto.setPincode("795001");
+        dto.setAadharNumber(String.format(Locale.ROOT, "2%011d", n));
+        dto.setPassword("Secret@123");
+        dto.setConfirmPassword("Secret@123");
+        return dto;
+    }
+
+    /**
+     * Per-signup latencies of one path and its prepared statements per signup
+     */
+    private record Run(long[] nanos, double statementsPerSignup) {
+
+        /**
+         * Latency at this quantile in microseconds
+         */
+        double percentile(double quantile) {
+            long[] sorted = nanos.clone();
+            Arrays.sort(sorted);
+            return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)] / 1000.0;
+        }
+    }
+}